@@ -0,0 +1,177 @@
+package com.example.SecureAPI.config;
+
+import com.example.SecureAPI.model.CartItem;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * DatabaseMigrations — идемпотентные правки схемы PostgreSQL, которые не умеет делать
+ * spring.jpa.hibernate.ddl-auto=update (он только создаёт недостающие таблицы, столбцы
+ * и последовательности).
+ *
+ * Выполняется при каждом запуске после того, как Hibernate обновил схему, и до приёма
+ * запросов. Каждый шаг можно безопасно повторять. На других СУБД (например, H2 в тестах)
+ * ничего не делает. Отключается свойством app.db.migrations.enabled=false.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class DatabaseMigrations {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseMigrations.class);
+
+    /**
+     * Таблицы, ID которых выдаются последовательностью &lt;таблица&gt;_seq (см. @SequenceGenerator в model).
+     */
+    private static final List<String> SEQUENCE_TABLES =
+            List.of("users", "products", "carts", "cart_items", "orders", "order_items");
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    /**
+     * Позиции из таблиц переходов триггера: добавленные — со своим количеством, удалённые — с обратным.
+     */
+    private static final String NEW_LINES = "select cart_id, product_id, quantity from new_lines";
+    private static final String OLD_LINES = "select cart_id, product_id, -quantity from old_lines";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final boolean enabled;
+
+    public DatabaseMigrations(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.db.migrations.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    void migrate() {
+        if (!enabled || !isPostgres()) {
+            return;
+        }
+        for (String table : SEQUENCE_TABLES) {
+            syncSequence(table, table + "_seq", ALLOCATION_SIZE);
+        }
+        mergeDuplicateCartItems();
+        installCartTotalsTriggers();
+    }
+
+    /**
+     * Склеивает повторяющиеся позиции корзин (один продукт несколько раз в одной корзине)
+     * и добавляет уникальное ограничение (cart_id, product_id).
+     *
+     * Hibernate пытается создать ограничение сам, но на таблице с дублями молча не может.
+     * Количества суммируются в строку с наименьшим ID, остальные строки удаляются.
+     */
+    void mergeDuplicateCartItems() {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "select exists(select 1 from pg_constraint where conname = ?)", Boolean.class, CartItem.CART_PRODUCT_CONSTRAINT);
+        if (Boolean.TRUE.equals(exists)) {
+            return;
+        }
+        transaction.executeWithoutResult(status -> {
+            jdbcTemplate.execute("lock table cart_items in share row exclusive mode");
+            int merged = jdbcTemplate.update(
+                    "update cart_items ci set quantity = d.total " +
+                    "from (select min(id) as keep_id, sum(quantity) as total from cart_items " +
+                    "group by cart_id, product_id having count(*) > 1) d where ci.id = d.keep_id");
+            int deleted = jdbcTemplate.update(
+                    "delete from cart_items ci using cart_items other " +
+                    "where ci.cart_id = other.cart_id and ci.product_id = other.product_id and ci.id > other.id");
+            jdbcTemplate.execute("alter table cart_items add constraint " + CartItem.CART_PRODUCT_CONSTRAINT
+                    + " unique (cart_id, product_id)");
+            logger.info("Merged {} duplicated cart lines ({} rows removed), added {}",
+                    merged, deleted, CartItem.CART_PRODUCT_CONSTRAINT);
+        });
+    }
+
+    /**
+     * Устанавливает триггеры, которые поддерживают carts.item_count и carts.total_price.
+     *
+     * Триггеры уровня оператора с таблицами переходов: любой INSERT/UPDATE/DELETE позиций
+     * (одиночный upsert, пачка, очистка корзины) одним UPDATE применяет к каждой затронутой корзине
+     * разницу количества и суммы — в том же операторе, что и изменение позиций. Сумма позиции —
+     * round(цена * количество, 2), как в CartService.lineAmount. Цена берётся текущая, поэтому
+     * после смены цены итоги расходятся с позициями; их исправляет CartTotalsReconciler.
+     *
+     * Функция пересоздаётся при каждом запуске. При первой установке итоги всех корзин
+     * пересчитываются под блокировкой cart_items, чтобы между пересчётом и триггером
+     * не потерялось ни одно изменение.
+     */
+    void installCartTotalsTriggers() {
+        jdbcTemplate.execute("create or replace function cart_items_maintain_totals() returns trigger language plpgsql as $$ " +
+                "begin " +
+                "if tg_op = 'INSERT' then " + applyCartTotalsDelta(NEW_LINES) + "; " +
+                "elsif tg_op = 'DELETE' then " + applyCartTotalsDelta(OLD_LINES) + "; " +
+                "else " + applyCartTotalsDelta(NEW_LINES + " union all " + OLD_LINES) + "; " +
+                "end if; " +
+                "return null; " +
+                "end $$");
+        Boolean exists = jdbcTemplate.queryForObject(
+                "select exists(select 1 from pg_trigger where tgname = 'cart_items_totals_insert')", Boolean.class);
+        if (Boolean.TRUE.equals(exists)) {
+            return;
+        }
+        transaction.executeWithoutResult(status -> {
+            jdbcTemplate.execute("lock table cart_items in share row exclusive mode");
+            jdbcTemplate.execute("create trigger cart_items_totals_insert after insert on cart_items " +
+                    "referencing new table as new_lines for each statement execute function cart_items_maintain_totals()");
+            jdbcTemplate.execute("create trigger cart_items_totals_update after update on cart_items " +
+                    "referencing new table as new_lines old table as old_lines " +
+                    "for each statement execute function cart_items_maintain_totals()");
+            jdbcTemplate.execute("create trigger cart_items_totals_delete after delete on cart_items " +
+                    "referencing old table as old_lines for each statement execute function cart_items_maintain_totals()");
+            int carts = jdbcTemplate.update(
+                    "update carts c set item_count = coalesce((select sum(ci.quantity) from cart_items ci where ci.cart_id = c.id), 0), " +
+                    "total_price = coalesce((select sum(round(cast(p.price as numeric(38, 10)) * ci.quantity, 2)) " +
+                    "from cart_items ci join products p on p.id = ci.product_id where ci.cart_id = c.id), 0)");
+            logger.info("Installed cart totals triggers, recalculated totals of {} carts", carts);
+        });
+    }
+
+    /**
+     * UPDATE итогов корзин по строкам (cart_id, product_id, quantity) запроса lines.
+     */
+    private static String applyCartTotalsDelta(String lines) {
+        return "update carts c set item_count = c.item_count + d.item_count, total_price = c.total_price + d.total_price " +
+                "from (select l.cart_id, sum(l.quantity) as item_count, " +
+                "sum(round(cast(p.price as numeric(38, 10)) * l.quantity, 2)) as total_price " +
+                "from (" + lines + ") as l (cart_id, product_id, quantity) join products p on p.id = l.product_id " +
+                "group by l.cart_id) d where c.id = d.cart_id";
+    }
+
+    /**
+     * Сдвигает последовательность за максимальный ID таблицы.
+     *
+     * Строки, вставленные до перехода на последовательность с шагом allocationSize,
+     * получали ID из старой последовательности таблицы (serial или IDENTITY). Старые
+     * последовательности и значения столбцов по умолчанию остаются: Hibernate всегда передаёт
+     * ID явно. Pooled-оптимизатор Hibernate выдаёт ID из диапазона
+     * (значение - allocationSize, значение], поэтому новое значение должно быть больше max(id)
+     * хотя бы на allocationSize. Последовательность никогда не сдвигается назад.
+     */
+    void syncSequence(String table, String sequence, int allocationSize) {
+        Long value = jdbcTemplate.queryForObject(
+                "select setval('" + sequence + "', greatest((select coalesce(max(id), 0) from " + table + ") + " + allocationSize
+                        + ", (select last_value from " + sequence + ")))",
+                Long.class);
+        logger.debug("Sequence {} synchronized with {}.id: {}", sequence, table, value);
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(product);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.SecureAPI.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Включает выполнение фоновых задач по расписанию (@Scheduled).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,6 +1,9 @@
 package com.example.SecureAPI.config;
 
 import com.example.SecureAPI.security.JwtFilter;
+import com.example.SecureAPI.security.RateLimitFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -18,7 +21,7 @@ import org.springframework.security.web.header.writers.ContentSecurityPolicyHead
  * Он настраивает:
  * - Отключение CSRF
  * - Stateless сессии (без сохранения состояния на сервере)
- * - Добавление JWT-фильтра
+ * - Добавление JWT-фильтра и фильтра ограничения частоты запросов
  * - Политики безопасности (Content-Security-Policy, Cache-Control)
  * - Разграничение доступа по URL и ролям
  * - Шифрование паролей через BCrypt
@@ -35,16 +38,18 @@ public class SecurityConfig {
      * - Отключение CSRF
      * - Использование stateless сессий
      * - Настройка заголовков безопасности (CSP, Frame-Options, Cache-Control)
-     * - Добавление кастомного фильтра JWT
+     * - Добавление кастомного фильтра JWT и фильтра ограничения частоты запросов
      * - Разрешение доступа к публичным эндпоинтам
      * - Защита приватных эндпоинтов по ролям
      *
      * @param http   - объект HttpSecurity для настройки фильтров
      * @param jwtFilter - наш кастомный фильтр для обработки JWT
+     * @param rateLimitFilter - фильтр ограничения частоты запросов (429 Too Many Requests)
      * @return готовая цепочка фильтров
      */
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http, JwtFilter jwtFilter) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, JwtFilter jwtFilter,
+                                           RateLimitFilter rateLimitFilter) throws Exception {
         http
                 // Отключаем защиту CSRF, так как мы используем stateless аутентификацию через JWT
                 .csrf(csrf -> csrf.disable())
@@ -65,6 +70,10 @@ public class SecurityConfig {
                 // Добавляем наш фильтр JWT перед стандартным фильтром аутентификации
                 .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
 
+                // Ограничиваем частоту запросов сразу после JWT-фильтра:
+                // так клиент различается по ID пользователя, а анонимный — по IP
+                .addFilterAfter(rateLimitFilter, JwtFilter.class)
+
                 // Настройка политик доступа
                 .authorizeHttpRequests(auth -> auth
                         // Разрешаем доступ без аутентификации к эндпоинтам:
@@ -73,6 +82,7 @@ public class SecurityConfig {
 
                         // Публичный доступ к продуктам
                         .requestMatchers("/products/public").permitAll()
+                        .requestMatchers("/products/search").permitAll()
                         .requestMatchers("/products/public-add").permitAll()
 
                         // Только ADMIN и EMPLOYEE могут работать с /products/**
@@ -81,8 +91,15 @@ public class SecurityConfig {
                         // Разрешаем Swagger UI и документацию API
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
 
+                        // Actuator: health доступен всем, метрики — только администраторам
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+
+                        // Потоковая выгрузка данных — только администраторы
+                        .requestMatchers("/api/export/**").hasRole("ADMIN")
+
                         // Публичные эндпоинты корзины и заказов
-                        .requestMatchers("/api/cart/all", "/api/cart/public-add").permitAll()
+                        .requestMatchers("/api/cart/all", "/api/cart/public-add", "/api/cart/guest").permitAll()
                         .requestMatchers("/api/orders/all", "/api/orders/public-create").permitAll()
 
                         // Все остальные запросы требуют аутентификации
@@ -91,17 +108,51 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Отключает автоматическую регистрацию JwtFilter как обычного сервлет-фильтра.
+     *
+     * JwtFilter — это @Component, поэтому Spring Boot по умолчанию добавляет его ещё и в цепочку
+     * фильтров сервлет-контейнера, и токен проверялся бы дважды на каждый запрос.
+     * Фильтр должен работать только внутри цепочки Spring Security.
+     *
+     * @param jwtFilter наш JWT-фильтр
+     * @return отключённая регистрация фильтра
+     */
+    @Bean
+    public FilterRegistrationBean<JwtFilter> jwtFilterRegistration(JwtFilter jwtFilter) {
+        FilterRegistrationBean<JwtFilter> registration = new FilterRegistrationBean<>(jwtFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    /**
+     * Отключает автоматическую регистрацию RateLimitFilter как сервлет-фильтра
+     * (иначе каждый запрос списывал бы из ведра два токена).
+     *
+     * @param rateLimitFilter фильтр ограничения частоты запросов
+     * @return отключённая регистрация фильтра
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter rateLimitFilter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(rateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     /**
      * Бин для шифрования паролей с использованием BCrypt.
      *
      * BCrypt — это алгоритм хэширования с солью, обеспечивающий высокую степень защиты.
      * Он используется при регистрации новых пользователей и при сравнении паролей при логине.
+     * Стоимость (security.bcrypt.strength) настраивается; хэши с другой стоимостью
+     * пересчитываются при следующем успешном входе.
      *
+     * @param strength стоимость BCrypt (log2 числа раундов, 4..31)
      * @return экземпляр BCryptPasswordEncoder
      */
     @Bean
-    public BCryptPasswordEncoder bCryptPasswordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder bCryptPasswordEncoder(@Value("${security.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 }
 // Не ешьте меня, позязя
@@ -0,0 +1,23 @@
+package com.example.SecureAPI.config;
+
+import com.example.SecureAPI.security.AuthenticatedUserArgumentResolver;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Настройки Spring MVC.
+ *
+ * Регистрирует резолвер, который подставляет текущего пользователя
+ * ({@link com.example.SecureAPI.security.AuthenticatedUser}) в параметры контроллеров.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new AuthenticatedUserArgumentResolver());
+    }
+}
@@ -5,6 +5,7 @@ import com.example.SecureAPI.dto.AuthResponse;
 import com.example.SecureAPI.dto.RegisterRequest;
 import com.example.SecureAPI.dto.UserDTO;
 import com.example.SecureAPI.model.User;
+import com.example.SecureAPI.service.GuestCartService;
 import com.example.SecureAPI.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,11 +13,14 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.springframework.http.HttpStatus.CREATED;
 
@@ -36,6 +40,8 @@ public class AuthController {
     /**
      * Регистрация нового пользователя.
      *
+     * Хэширование пароля выполняется в отдельном пуле, поток Tomcat при этом освобождается.
+     *
      * @param request данные для регистрации (email, пароль, имя)
      * @return ответ с сообщением о регистрации и статусом CREATED
      */
@@ -44,33 +50,65 @@ public class AuthController {
             description = "Создает нового пользователя в системе по предоставленным данным.",
             responses = {
                     @ApiResponse(responseCode = "201", description = "Пользователь успешно зарегистрирован"),
-                    @ApiResponse(responseCode = "400", description = "Невалидные данные запроса")
+                    @ApiResponse(responseCode = "400", description = "Невалидные данные запроса"),
+                    @ApiResponse(responseCode = "503", description = "Сервис перегружен, повторите позже")
             }
     )
     @PostMapping("/register")
-    public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request) {
-        userService.register(request);
-        return ResponseEntity.status(CREATED).body("User registered");
+    public CompletableFuture<ResponseEntity<?>> register(@Valid @RequestBody RegisterRequest request) {
+        return userService.register(request)
+                .thenApply(ignored -> ResponseEntity.status(CREATED).body("User registered"));
     }
 
     /**
      * Аутентификация пользователя (логин).
      *
+     * Проверка пароля выполняется в отдельном пуле, поток Tomcat при этом освобождается.
+     *
+     * Если передан заголовок X-Guest-Token, корзина гостя переносится в корзину пользователя.
+     *
      * @param request содержит email и пароль
+     * @param guestToken токен гостя (необязательный)
      * @return JWT токен и данные пользователя в виде AuthResponse
      */
     @Operation(
             summary = "Вход пользователя в систему",
-            description = "Производит аутентификацию пользователя и возвращает JWT-токен.",
+            description = "Производит аутентификацию пользователя и возвращает JWT-токен. С заголовком X-Guest-Token переносит корзину гостя в корзину пользователя.",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Успешный вход", content = @Content(schema = @Schema(implementation = AuthResponse.class))),
-                    @ApiResponse(responseCode = "401", description = "Неверные учетные данные")
+                    @ApiResponse(responseCode = "401", description = "Неверные учетные данные"),
+                    @ApiResponse(responseCode = "503", description = "Сервис перегружен, повторите позже")
             }
     )
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody AuthRequest request) {
-        AuthResponse response = userService.login(request.getEmail(), request.getPassword());
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@Valid @RequestBody AuthRequest request,
+                                                                 @RequestHeader(value = GuestCartService.TOKEN_HEADER, required = false) String guestToken) {
+        return userService.login(request.getEmail(), request.getPassword(), guestToken)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Выход из системы: отзывает текущий JWT-токен.
+     * После этого запросы с этим токеном отклоняются, даже если срок его действия ещё не истёк.
+     *
+     * @param token JWT-токен из заголовка Authorization
+     * @return 204 при успешном отзыве, 401 если токен невалиден
+     */
+    @Operation(
+            summary = "Выход из системы",
+            description = "Отзывает переданный JWT-токен.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "204", description = "Токен отозван"),
+                    @ApiResponse(responseCode = "401", description = "Токен отсутствует или невалиден")
+            }
+    )
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String token) {
+        if (token == null || !userService.logout(token)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.noContent().build();
     }
 
     /**
@@ -1,23 +1,33 @@
 package com.example.SecureAPI.controller;
 
+import com.example.SecureAPI.dto.CartBatchRequest;
 import com.example.SecureAPI.dto.CartDTO;
 import com.example.SecureAPI.dto.CartItemDTO;
+import com.example.SecureAPI.dto.CartQuantityRequest;
+import com.example.SecureAPI.dto.CheckoutStatusDTO;
 import com.example.SecureAPI.dto.PublicCartItemRequest;
-import com.example.SecureAPI.model.User;
+import com.example.SecureAPI.exception.CheckoutRequestNotFoundException;
+import com.example.SecureAPI.security.AuthenticatedUser;
+import com.example.SecureAPI.service.AsyncCheckoutService;
 import com.example.SecureAPI.service.CartService;
+import com.example.SecureAPI.service.GuestCartService;
+import com.example.SecureAPI.service.IdempotencyService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Контроллер для управления корзиной пользователя.
@@ -29,11 +39,16 @@ import java.util.List;
 @PreAuthorize("hasRole('CLIENT') or hasRole('EMPLOYEE') or hasRole('ADMIN')")
 public class CartController {
 
+    /** Предел ожидания результата оформления в одном запросе состояния, мс */
+    private static final long MAX_STATUS_WAIT_MILLIS = 30_000;
+
     private final CartService cartService;
+    private final GuestCartService guestCartService;
+    private final ObjectProvider<AsyncCheckoutService> asyncCheckout;
 
     /**
      * Получить текущую корзину авторизованного пользователя.
-     * @param userDetails данные аутентифицированного пользователя
+     * @param user текущий пользователь (из JWT-токена)
      * @return DTO корзины пользователя
      */
     @Operation(
@@ -46,14 +61,14 @@ public class CartController {
             }
     )
     @GetMapping
-    public ResponseEntity<CartDTO> getCart(@AuthenticationPrincipal UserDetails userDetails) {
-        Long userId = ((User) userDetails).getId();
+    public ResponseEntity<CartDTO> getCart(@Parameter(hidden = true) AuthenticatedUser user) {
+        Long userId = user.userId();
         return ResponseEntity.ok(cartService.getCartByUserId(userId));
     }
 
     /**
      * Добавить товар в корзину пользователя.
-     * @param userDetails данные аутентифицированного пользователя
+     * @param user текущий пользователь (из JWT-токена)
      * @param request DTO с информацией о товаре (ID и количество)
      * @return обновлённая корзина в виде DTO
      */
@@ -67,33 +82,166 @@ public class CartController {
             }
     )
     @PostMapping("/add")
-    public ResponseEntity<CartDTO> addToCart(@AuthenticationPrincipal UserDetails userDetails,
+    public ResponseEntity<CartDTO> addToCart(@Parameter(hidden = true) AuthenticatedUser user,
                                              @RequestBody CartItemDTO request) {
-        Long userId = ((User) userDetails).getId();
+        Long userId = user.userId();
         return ResponseEntity.ok(cartService.addToCart(userId, request));
     }
 
+    /**
+     * Добавить товар в корзину; если он уже есть, увеличить количество.
+     * @param user текущий пользователь (из JWT-токена)
+     * @param request ID товара и сколько добавить
+     * @return позиция корзины с новым количеством
+     */
+    @Operation(
+            summary = "Добавить товар в корзину (позиция)",
+            description = "Увеличивает количество товара в корзине или добавляет новую позицию. Возвращает только изменённую позицию.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Позиция обновлена", content = @Content(schema = @Schema(implementation = CartItemDTO.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректное количество"),
+                    @ApiResponse(responseCode = "404", description = "Товар не найден")
+            }
+    )
+    @PostMapping("/items")
+    public ResponseEntity<CartItemDTO> addItem(@Parameter(hidden = true) AuthenticatedUser user,
+                                               @RequestBody CartItemDTO request) {
+        return ResponseEntity.ok(cartService.addItem(user.userId(), request.getProductId(), request.getQuantity()));
+    }
+
+    /**
+     * Установить количество товара в корзине.
+     * @param user текущий пользователь (из JWT-токена)
+     * @param productId ID товара
+     * @param request новое количество
+     * @return позиция корзины с новым количеством
+     */
+    @Operation(
+            summary = "Установить количество товара в корзине",
+            description = "Задаёт количество товара в корзине; если товара в корзине нет, добавляет его.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Позиция обновлена", content = @Content(schema = @Schema(implementation = CartItemDTO.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректное количество"),
+                    @ApiResponse(responseCode = "404", description = "Товар не найден")
+            }
+    )
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<CartItemDTO> setItemQuantity(@Parameter(hidden = true) AuthenticatedUser user,
+                                                       @PathVariable Long productId,
+                                                       @RequestBody CartQuantityRequest request) {
+        return ResponseEntity.ok(cartService.setItemQuantity(user.userId(), productId, request.quantity()));
+    }
+
+    /**
+     * Удалить товар из корзины.
+     * @param user текущий пользователь (из JWT-токена)
+     * @param productId ID товара
+     * @return пустой ответ
+     */
+    @Operation(
+            summary = "Удалить товар из корзины",
+            description = "Удаляет позицию товара из корзины. Повторный запрос тоже возвращает 204.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "204", description = "Позиции больше нет в корзине")
+            }
+    )
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<Void> removeItem(@Parameter(hidden = true) AuthenticatedUser user,
+                                           @PathVariable Long productId) {
+        cartService.removeItem(user.userId(), productId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Применить к корзине пакет операций (добавление, установка количества, удаление) за один запрос.
+     * @param user текущий пользователь (из JWT-токена)
+     * @param request операции в порядке применения
+     * @return корзина после всех изменений
+     */
+    @Operation(
+            summary = "Пакетное изменение корзины",
+            description = "Применяет операции ADD, SET и REMOVE в одной транзакции: либо все, либо ни одной. Возвращает итоговую корзину.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Корзина обновлена", content = @Content(schema = @Schema(implementation = CartDTO.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректные операции"),
+                    @ApiResponse(responseCode = "404", description = "Товар не найден")
+            }
+    )
+    @PostMapping("/batch")
+    public ResponseEntity<CartDTO> applyBatch(@Parameter(hidden = true) AuthenticatedUser user,
+                                              @RequestBody CartBatchRequest request) {
+        return ResponseEntity.ok(cartService.applyBatch(user.userId(), request.operations()));
+    }
+
     /**
      * Оформление заказа на основе содержимого корзины.
-     * @param userDetails данные аутентифицированного пользователя
-     * @return сообщение об успешном создании заказа
+     * При включённом асинхронном оформлении (cart.checkout.async.enabled) запрос ставится
+     * в очередь и сразу возвращается 202 с состоянием запроса и ссылкой на него в Location.
+     * @param user текущий пользователь (из JWT-токена)
+     * @param idempotencyKey ключ идемпотентности (необязательный)
+     * @return сообщение об успешном создании заказа или состояние поставленного в очередь запроса
      */
     @Operation(
             summary = "Оформить заказ из корзины",
-            description = "Создаёт заказ на основе товаров, находящихся в корзине пользователя.",
+            description = "Создаёт заказ на основе товаров, находящихся в корзине пользователя. "
+                    + "С заголовком Idempotency-Key повтор запроса не создаёт второй заказ. "
+                    + "При асинхронном оформлении возвращает 202 и ID запроса, результат — GET /api/cart/checkout/{requestId}.",
             security = @SecurityRequirement(name = "BearerAuth"),
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Заказ успешно создан"),
-                    @ApiResponse(responseCode = "400", description = "Корзина пуста")
+                    @ApiResponse(responseCode = "200", description = "Заказ успешно создан (или уже был создан по этому ключу)"),
+                    @ApiResponse(responseCode = "202", description = "Запрос поставлен в очередь", content = @Content(schema = @Schema(implementation = CheckoutStatusDTO.class))),
+                    @ApiResponse(responseCode = "400", description = "Корзина пуста или некорректный Idempotency-Key"),
+                    @ApiResponse(responseCode = "409", description = "Недостаточно товара на складе"),
+                    @ApiResponse(responseCode = "503", description = "Очередь оформления заказов заполнена")
             }
     )
     @PostMapping("/checkout")
-    public ResponseEntity<String> checkout(@AuthenticationPrincipal UserDetails userDetails) {
-        Long userId = ((User) userDetails).getId();
-        cartService.createOrderFromCart(userId);
+    public ResponseEntity<?> checkout(@Parameter(hidden = true) AuthenticatedUser user,
+                                      @RequestHeader(value = IdempotencyService.KEY_HEADER, required = false) String idempotencyKey) {
+        Long userId = user.userId();
+        AsyncCheckoutService async = asyncCheckout.getIfAvailable();
+        if (async != null) {
+            CheckoutStatusDTO status = async.submit(userId, idempotencyKey);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/cart/checkout/" + status.getRequestId()))
+                    .body(status);
+        }
+        cartService.createOrderFromCart(userId, idempotencyKey);
         return ResponseEntity.ok("Order created successfully");
     }
 
+    /**
+     * Состояние асинхронного оформления заказа.
+     * @param user текущий пользователь (из JWT-токена)
+     * @param requestId ID запроса из ответа на оформление
+     * @param waitMs сколько ждать завершения незавершённого запроса, мс (0 — ответить сразу)
+     * @return состояние запроса: QUEUED, COMPLETED с заказом или FAILED с причиной
+     */
+    @Operation(
+            summary = "Состояние асинхронного оформления заказа",
+            description = "Возвращает состояние запроса на оформление. С waitMs ждёт завершения запроса не дольше указанного времени.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Состояние запроса", content = @Content(schema = @Schema(implementation = CheckoutStatusDTO.class))),
+                    @ApiResponse(responseCode = "404", description = "Запрос не найден")
+            }
+    )
+    @GetMapping("/checkout/{requestId}")
+    public CompletableFuture<ResponseEntity<CheckoutStatusDTO>> checkoutStatus(@Parameter(hidden = true) AuthenticatedUser user,
+                                                                              @PathVariable String requestId,
+                                                                              @RequestParam(defaultValue = "0") long waitMs) {
+        AsyncCheckoutService async = asyncCheckout.getIfAvailable();
+        if (async == null) {
+            throw new CheckoutRequestNotFoundException(requestId);
+        }
+        Duration wait = Duration.ofMillis(Math.min(Math.max(waitMs, 0), MAX_STATUS_WAIT_MILLIS));
+        return async.status(user.userId(), requestId, wait).thenApply(ResponseEntity::ok);
+    }
+
     /**
      * Публичный тестовый эндпоинт для получения всех корзин (для тестирования).
      * @return список всех корзин в виде DTO
@@ -112,22 +260,49 @@ public class CartController {
     }
 
     /**
-     * Тестовый эндпоинт добавления товара в корзину гостевого пользователя.
+     * Добавить товар в корзину гостя (анонимного покупателя).
+     * Гость определяется токеном из заголовка X-Guest-Token; если токена нет или он истёк,
+     * выдаётся новый. Актуальный токен всегда возвращается в том же заголовке ответа.
+     * @param guestToken токен гостя (необязательный)
      * @param request DTO с информацией о товаре
-     * @return обновлённая корзина
+     * @return корзина гостя
      */
     @Operation(
-            summary = "Добавить товар в гостевую корзину (тестовый)",
-            description = "Тестовая функция для добавления товара в корзину гостевого пользователя.",
+            summary = "Добавить товар в гостевую корзину",
+            description = "Добавляет товар в корзину гостя. Токен гостя передаётся и возвращается в заголовке X-Guest-Token; "
+                    + "при входе в систему с этим заголовком корзина гостя переносится в корзину пользователя.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Корзина обновлена", content = @Content(schema = @Schema(implementation = CartDTO.class)))
+                    @ApiResponse(responseCode = "200", description = "Корзина обновлена", content = @Content(schema = @Schema(implementation = CartDTO.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректное количество"),
+                    @ApiResponse(responseCode = "404", description = "Товар не найден")
             }
     )
     @PostMapping("/public-add")
     @PreAuthorize("permitAll")
-    public ResponseEntity<CartDTO> publicAddToCart(@RequestBody PublicCartItemRequest request) {
-        Long userId = 1L; // Можно заменить на логику поиска гостевой корзины
-        CartItemDTO itemDTO = new CartItemDTO(request.productId(), request.quantity());
-        return ResponseEntity.ok(cartService.addToCart(userId, itemDTO));
+    public ResponseEntity<CartDTO> publicAddToCart(@RequestHeader(value = GuestCartService.TOKEN_HEADER, required = false) String guestToken,
+                                                   @RequestBody PublicCartItemRequest request) {
+        String token = guestCartService.resolveToken(guestToken);
+        return ResponseEntity.ok()
+                .header(GuestCartService.TOKEN_HEADER, token)
+                .body(guestCartService.addItem(token, request.productId(), request.quantity()));
+    }
+
+    /**
+     * Получить корзину гостя.
+     * @param guestToken токен гостя
+     * @return корзина гостя
+     */
+    @Operation(
+            summary = "Получить гостевую корзину",
+            description = "Возвращает корзину гостя по токену из заголовка X-Guest-Token.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Корзина гостя", content = @Content(schema = @Schema(implementation = CartDTO.class))),
+                    @ApiResponse(responseCode = "401", description = "Токен гостя отсутствует или истёк")
+            }
+    )
+    @GetMapping("/guest")
+    @PreAuthorize("permitAll")
+    public ResponseEntity<CartDTO> getGuestCart(@RequestHeader(value = GuestCartService.TOKEN_HEADER, required = false) String guestToken) {
+        return ResponseEntity.ok(guestCartService.getCart(guestToken));
     }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.example.SecureAPI.controller;
+
+import com.example.SecureAPI.dto.ExportFormat;
+import com.example.SecureAPI.service.ExportService;
+import com.example.SecureAPI.service.ProductResponseCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Контроллер потоковой выгрузки данных (только для администраторов).
+ * Ответ пишется по мере чтения из базы и не собирается целиком в памяти.
+ */
+@RestController
+@RequestMapping("/api/export")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportController {
+
+    private final ExportService exportService;
+
+    /**
+     * Выгрузка продуктов.
+     * @param format формат (NDJSON или CSV)
+     * @param since ID, после которого начинается выгрузка
+     * @param acceptEncoding заголовок Accept-Encoding (gzip сжимает выгрузку на лету)
+     * @return поток строк выгрузки
+     */
+    @Operation(
+            summary = "Выгрузить продукты",
+            description = "Потоковая выгрузка продуктов в NDJSON или CSV.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Выгрузка"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещён")
+            }
+    )
+    @GetMapping("/products")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @Parameter(description = "Формат выгрузки") @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @Parameter(description = "Выгрузить только строки с ID больше указанного") @RequestParam(defaultValue = "0") long since,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return stream("products", format, since, acceptEncoding, exportService::exportProducts);
+    }
+
+    /**
+     * Выгрузка заказов с позициями.
+     * @param format формат (NDJSON — заказ на строку, CSV — позиция на строку)
+     * @param since ID заказа, после которого начинается выгрузка
+     * @param acceptEncoding заголовок Accept-Encoding (gzip сжимает выгрузку на лету)
+     * @return поток строк выгрузки
+     */
+    @Operation(
+            summary = "Выгрузить заказы",
+            description = "Потоковая выгрузка заказов с позициями в NDJSON (заказ на строку) или CSV (позиция на строку).",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Выгрузка"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещён")
+            }
+    )
+    @GetMapping("/orders")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @Parameter(description = "Формат выгрузки") @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @Parameter(description = "Выгрузить только заказы с ID больше указанного") @RequestParam(defaultValue = "0") long since,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return stream("orders", format, since, acceptEncoding, exportService::exportOrders);
+    }
+
+    /**
+     * Выгрузка пользователей (без хэшей паролей).
+     * @param format формат (NDJSON или CSV)
+     * @param since ID, после которого начинается выгрузка
+     * @param acceptEncoding заголовок Accept-Encoding (gzip сжимает выгрузку на лету)
+     * @return поток строк выгрузки
+     */
+    @Operation(
+            summary = "Выгрузить пользователей",
+            description = "Потоковая выгрузка пользователей (ID, email, имя, роль) в NDJSON или CSV.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Выгрузка"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещён")
+            }
+    )
+    @GetMapping("/users")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @Parameter(description = "Формат выгрузки") @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @Parameter(description = "Выгрузить только строки с ID больше указанного") @RequestParam(defaultValue = "0") long since,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return stream("users", format, since, acceptEncoding, exportService::exportUsers);
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String name, ExportFormat format, long since, String acceptEncoding,
+                                                         ExportCall export) {
+        boolean gzip = ProductResponseCache.acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = gzip
+                ? out -> {
+                    GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                    export.run(since, format, compressed);
+                    compressed.finish();
+                }
+                : out -> export.run(since, format, out);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(name + "." + format.getExtension()).build().toString())
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @FunctionalInterface
+    private interface ExportCall {
+        void run(long since, ExportFormat format, OutputStream out);
+    }
+}
@@ -1,8 +1,16 @@
 package com.example.SecureAPI.controller;
 
 import com.example.SecureAPI.dto.OrderDTO;
+import com.example.SecureAPI.dto.OrderPageDTO;
+import com.example.SecureAPI.dto.OrderSummaryDTO;
+import com.example.SecureAPI.security.AuthenticatedUser;
+import com.example.SecureAPI.service.GuestCartService;
+import com.example.SecureAPI.service.IdempotencyService;
 import com.example.SecureAPI.service.OrderService;
+import com.example.SecureAPI.service.OrderSummaryRebuilder;
+import com.example.SecureAPI.service.OrderSummaryService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -10,11 +18,12 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -30,29 +39,89 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final GuestCartService guestCartService;
+    private final OrderSummaryService orderSummaryService;
+    private final OrderSummaryRebuilder orderSummaryRebuilder;
 
     /**
-     * Получить список заказов текущего пользователя.
-     * @param userDetails данные аутентифицированного пользователя
-     * @return список DTO заказов пользователя
+     * Получить историю заказов текущего пользователя (постранично, новые заказы первыми).
+     * @param user текущий пользователь (из JWT-токена)
+     * @param limit размер страницы (ограничен максимумом сервиса)
+     * @param after курсор из nextCursor предыдущей страницы
+     * @return страница заказов пользователя
      */
     @Operation(
-            summary = "Получить список заказов текущего пользователя",
-            description = "Возвращает список всех заказов авторизованного пользователя.",
+            summary = "Получить историю заказов текущего пользователя",
+            description = "Возвращает страницу заказов авторизованного пользователя, новые заказы первыми. "
+                    + "Следующая страница запрашивается с параметром after=nextCursor.",
             security = @SecurityRequirement(name = "BearerAuth"),
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Список заказов", content = @Content(schema = @Schema(implementation = OrderDTO.class))),
-                    @ApiResponse(responseCode = "404", description = "Заказы не найдены")
+                    @ApiResponse(responseCode = "200", description = "Страница заказов", content = @Content(schema = @Schema(implementation = OrderPageDTO.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректный курсор")
             }
     )
     @GetMapping
-    public ResponseEntity<List<OrderDTO>> getOrders(@AuthenticationPrincipal UserDetails userDetails) {
-        Long userId = ((com.example.SecureAPI.model.User) userDetails).getId();
-        List<OrderDTO> dtos = orderService.getAllOrdersByUserId(userId)
-                .stream()
-                .map(orderService::convertToDTO)
-                .toList();
-        return ResponseEntity.ok(dtos);
+    public ResponseEntity<OrderPageDTO> getOrders(@Parameter(hidden = true) AuthenticatedUser user,
+                                                  @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "0") int limit,
+                                                  @Parameter(description = "Курсор следующей страницы") @RequestParam(required = false) String after) {
+        return ResponseEntity.ok(orderService.getOrderHistory(user.userId(), after, limit));
+    }
+
+    /**
+     * Получить сводку заказов текущего пользователя.
+     * @param user текущий пользователь (из JWT-токена)
+     * @return число заказов, сумма покупок и дата последнего заказа
+     */
+    @Operation(
+            summary = "Сводка заказов текущего пользователя",
+            description = "Возвращает число заказов, сумму всех покупок и дату последнего заказа. "
+                    + "Сводка обновляется при оформлении заказа и не пересчитывается при чтении.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Сводка заказов", content = @Content(schema = @Schema(implementation = OrderSummaryDTO.class)))
+            }
+    )
+    @GetMapping("/summary")
+    public ResponseEntity<OrderSummaryDTO> getSummary(@Parameter(hidden = true) AuthenticatedUser user) {
+        return ResponseEntity.ok(orderSummaryService.getSummary(user.userId()));
+    }
+
+    /**
+     * Получить сводку заказов пользователя (для сотрудников и администраторов).
+     * @param userId ID пользователя
+     * @return число заказов, сумма покупок и дата последнего заказа
+     */
+    @Operation(
+            summary = "Сводка заказов пользователя",
+            description = "Возвращает сводку заказов указанного пользователя.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Сводка заказов", content = @Content(schema = @Schema(implementation = OrderSummaryDTO.class)))
+            }
+    )
+    @GetMapping("/summary/{userId:\\d+}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    public ResponseEntity<OrderSummaryDTO> getUserSummary(@PathVariable Long userId) {
+        return ResponseEntity.ok(orderSummaryService.getSummary(userId));
+    }
+
+    /**
+     * Пересчитать сводки заказов всех пользователей из таблицы заказов.
+     * @return число записанных сводок
+     */
+    @Operation(
+            summary = "Пересчитать сводки заказов",
+            description = "Пересчитывает сводки заказов всех пользователей из таблицы заказов параллельными диапазонами. "
+                    + "Оформление заказов во время пересчёта не останавливается.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Число пересчитанных сводок")
+            }
+    )
+    @PostMapping("/summary/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Integer> rebuildSummaries() {
+        return ResponseEntity.ok(orderSummaryRebuilder.rebuild());
     }
 
     /**
@@ -73,20 +142,26 @@ public class OrderController {
     }
 
     /**
-     * Тестовый эндпоинт для создания заказа от имени гостя.
+     * Создать заказ из корзины гостя.
+     * @param guestToken токен гостя из заголовка X-Guest-Token
+     * @param idempotencyKey ключ идемпотентности (необязательный)
      * @return DTO созданного заказа
      */
     @Operation(
-            summary = "Создать заказ от имени гостя (тестовый)",
-            description = "Тестовая функция для создания заказа из корзины гостевого пользователя.",
+            summary = "Создать заказ из гостевой корзины",
+            description = "Оформляет заказ из корзины гостя, определённого токеном X-Guest-Token, и очищает эту корзину. "
+                    + "С заголовком Idempotency-Key повтор запроса возвращает ранее созданный заказ.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Заказ успешно создан", content = @Content(schema = @Schema(implementation = OrderDTO.class)))
+                    @ApiResponse(responseCode = "200", description = "Заказ успешно создан", content = @Content(schema = @Schema(implementation = OrderDTO.class))),
+                    @ApiResponse(responseCode = "400", description = "Корзина пуста или некорректный Idempotency-Key"),
+                    @ApiResponse(responseCode = "401", description = "Токен гостя отсутствует или истёк"),
+                    @ApiResponse(responseCode = "409", description = "Недостаточно товара на складе")
             }
     )
     @PostMapping("/public-create")
     @PreAuthorize("permitAll")
-    public ResponseEntity<OrderDTO> publicCreateOrder() {
-        Long userId = 1L; // Можно использовать гостевого пользователя
-        return ResponseEntity.ok(orderService.createOrderFromCart(userId));
+    public ResponseEntity<OrderDTO> publicCreateOrder(@RequestHeader(value = GuestCartService.TOKEN_HEADER, required = false) String guestToken,
+                                                      @RequestHeader(value = IdempotencyService.KEY_HEADER, required = false) String idempotencyKey) {
+        return ResponseEntity.ok(guestCartService.checkout(guestToken, idempotencyKey));
     }
 }
\ No newline at end of file
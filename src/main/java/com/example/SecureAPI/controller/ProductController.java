@@ -1,20 +1,34 @@
 package com.example.SecureAPI.controller;
 
 import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.dto.ImportReport;
 import com.example.SecureAPI.dto.ProductDTO;
+import com.example.SecureAPI.dto.ProductPageDTO;
+import com.example.SecureAPI.dto.ProductSort;
+import com.example.SecureAPI.service.ProductImportService;
+import com.example.SecureAPI.service.ProductResponseCache;
 import com.example.SecureAPI.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Контроллер для управления продуктами.
@@ -26,30 +40,94 @@ public class ProductController {
 
     private final ProductService productService;
 
+    /**
+     * Старый режим: без параметров пагинации отдаётся весь каталог одним списком.
+     * Оставлен только для обратной совместимости клиентов, по умолчанию выключен.
+     */
+    @Value("${products.listing.unpaged-enabled:false}")
+    private boolean unpagedListingEnabled;
+
+    /**
+     * Готовые сериализованные ответы; null, если каталог в памяти выключен.
+     */
+    @Autowired(required = false)
+    private ProductResponseCache responseCache;
+
+    @Autowired
+    private ProductImportService importService;
+
     public ProductController(ProductService productService) {
         this.productService = productService;
     }
 
     /**
-     * Получить список всех продуктов.
-     * @return список продуктов
+     * Получить страницу продуктов.
+     * @param limit размер страницы (ограничен максимумом сервиса)
+     * @param after курсор из nextCursor предыдущей страницы
+     * @param sort порядок сортировки
+     * @param total посчитать ли общее количество продуктов
+     * @return страница продуктов (или весь список в старом режиме)
      */
     @Operation(
-            summary = "Получить список всех продуктов",
-            description = "Возвращает список всех продуктов в системе.",
+            summary = "Получить список продуктов",
+            description = "Возвращает страницу продуктов. Следующая страница запрашивается с параметром after=nextCursor.",
             security = @SecurityRequirement(name = "BearerAuth"),
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Список продуктов", content = @Content(schema = @Schema(implementation = Product.class)))
+                    @ApiResponse(responseCode = "200", description = "Страница продуктов", content = @Content(schema = @Schema(implementation = ProductPageDTO.class))),
+                    @ApiResponse(responseCode = "304", description = "Каталог не изменился (If-None-Match)"),
+                    @ApiResponse(responseCode = "400", description = "Некорректный курсор")
             }
     )
     @GetMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
-    public ResponseEntity<List<Product>> getAllProducts() {
-        List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok()
-                .header("Cache-Control", "no-store")
-                .header("Pragma", "no-cache")
-                .body(products);
+    public ResponseEntity<?> getAllProducts(
+            @Parameter(description = "Размер страницы") @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Курсор следующей страницы") @RequestParam(required = false) String after,
+            @Parameter(description = "Порядок сортировки") @RequestParam(required = false) ProductSort sort,
+            @Parameter(description = "Вернуть общее количество продуктов") @RequestParam(defaultValue = "false") boolean total,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return listProducts(limit, after, sort, total, ifNoneMatch, acceptEncoding, CacheControl.noCache().cachePrivate());
+    }
+
+    /**
+     * Поиск продуктов по названию.
+     * @param q строка поиска (слова названия в любом регистре)
+     * @param limit максимальное число результатов
+     * @return продукты, в названии которых есть все слова запроса
+     */
+    @Operation(
+            summary = "Поиск продуктов по названию",
+            description = "Возвращает продукты, в названии которых встречаются все слова запроса. Короткие названия выше.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Найденные продукты", content = @Content(schema = @Schema(implementation = Product.class)))
+            }
+    )
+    @GetMapping("/search")
+    public ResponseEntity<List<Product>> searchProducts(
+            @Parameter(description = "Строка поиска", example = "ноутбук lenovo") @RequestParam String q,
+            @Parameter(description = "Максимальное число результатов") @RequestParam(defaultValue = "0") int limit) {
+        return ResponseEntity.ok(productService.searchProducts(q, limit));
+    }
+
+    /**
+     * Получить продукт по ID.
+     * @param id ID продукта
+     * @return продукт или 404
+     */
+    @Operation(
+            summary = "Получить продукт по ID",
+            description = "Возвращает информацию о продукте.",
+            security = @SecurityRequirement(name = "BearerAuth"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Продукт", content = @Content(schema = @Schema(implementation = Product.class))),
+                    @ApiResponse(responseCode = "404", description = "Продукт не найден")
+            }
+    )
+    @GetMapping("/{id:\\d+}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    public ResponseEntity<Product> getProduct(@PathVariable Long id) {
+        return ResponseEntity.of(productService.getProductById(id));
     }
 
     /**
@@ -74,23 +152,57 @@ public class ProductController {
     }
 
     /**
-     * Публичный тестовый эндпоинт для получения всех продуктов.
-     * @return список всех продуктов
+     * Массовый импорт продуктов из JSON-массива или CSV.
+     * @param contentType тип тела запроса (application/json или text/csv)
+     * @param batchSize размер пачки вставки
+     * @param body тело запроса, читается потоком
+     * @return отчёт об импорте с ошибками по строкам
      */
     @Operation(
-            summary = "Получить все продукты (публичный)",
-            description = "Тестовый эндпоинт для получения списка всех продуктов в системе.",
+            summary = "Массовый импорт продуктов",
+            description = "Принимает JSON-массив объектов {name, price, stock} или CSV с заголовком name,price[,stock] " +
+                    "(stock необязателен: без него остаток не учитывается). " +
+                    "Строки проверяются по мере чтения и вставляются пачками; некорректные строки попадают в отчёт и не прерывают импорт.",
+            security = @SecurityRequirement(name = "BearerAuth"),
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Список продуктов", content = @Content(schema = @Schema(implementation = Product.class)))
+                    @ApiResponse(responseCode = "200", description = "Импорт завершён", content = @Content(schema = @Schema(implementation = ImportReport.class))),
+                    @ApiResponse(responseCode = "400", description = "Файл не разобран (не массив или нет заголовка)")
+            }
+    )
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    public ResponseEntity<ImportReport> importProducts(
+            @Parameter(hidden = true) @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            @Parameter(description = "Размер пачки вставки") @RequestParam(required = false) Integer batchSize,
+            @Parameter(hidden = true) InputStream body) throws IOException {
+        ImportReport report = contentType.isCompatibleWith(MediaType.APPLICATION_JSON)
+                ? importService.importJson(body, batchSize)
+                : importService.importCsv(body, batchSize);
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Публичный тестовый эндпоинт для получения страницы продуктов.
+     * @return страница продуктов (или весь список в старом режиме)
+     */
+    @Operation(
+            summary = "Получить продукты (публичный)",
+            description = "Тестовый эндпоинт для постраничного получения продуктов.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Страница продуктов", content = @Content(schema = @Schema(implementation = ProductPageDTO.class))),
+                    @ApiResponse(responseCode = "304", description = "Каталог не изменился (If-None-Match)"),
+                    @ApiResponse(responseCode = "400", description = "Некорректный курсор")
             }
     )
     @GetMapping("/public")
-    public ResponseEntity<List<Product>> getAllProductsPublic() {
-        List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok()
-                .header("Cache-Control", "no-store")
-                .header("Pragma", "no-cache")
-                .body(products);
+    public ResponseEntity<?> getAllProductsPublic(
+            @Parameter(description = "Размер страницы") @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Курсор следующей страницы") @RequestParam(required = false) String after,
+            @Parameter(description = "Порядок сортировки") @RequestParam(required = false) ProductSort sort,
+            @Parameter(description = "Вернуть общее количество продуктов") @RequestParam(defaultValue = "false") boolean total,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return listProducts(limit, after, sort, total, ifNoneMatch, acceptEncoding, CacheControl.noCache().cachePublic());
     }
 
     /**
@@ -111,6 +223,53 @@ public class ProductController {
         Product product = productService.createProduct(dto);
         return ResponseEntity.status(HttpStatus.CREATED).body(product);
     }
+
+    /**
+     * Отдаёт список продуктов. Если каталог в памяти включён, ответ берётся готовыми байтами
+     * из {@link ProductResponseCache} и сопровождается ETag, а совпадающий If-None-Match
+     * даёт 304 без обращения к сервису. Клиент, как и прежде, обязан перепроверять ответ
+     * при каждом запросе (no-cache), но повторно скачивать его ему не нужно.
+     */
+    private ResponseEntity<?> listProducts(Integer limit, String after, ProductSort sort, boolean total,
+                                           String ifNoneMatch, String acceptEncoding, CacheControl cacheControl) {
+        boolean unpaged = unpagedListingEnabled && limit == null && after == null && sort == null && !total;
+        Supplier<Object> body = unpaged
+                ? productService::getAllProducts
+                : () -> productService.getProductPage(sort != null ? sort : ProductSort.ID,
+                        after, limit != null ? limit : 0, total);
+
+        if (responseCache == null) {
+            return ResponseEntity.ok()
+                    .header("Cache-Control", "no-store")
+                    .header("Pragma", "no-cache")
+                    .body(body.get());
+        }
+
+        String key = unpaged ? "all" : sort + "|" + after + "|" + limit + "|" + total;
+        ProductResponseCache.Rendered rendered = responseCache.get(key, body);
+        boolean gzip = ProductResponseCache.acceptsGzip(acceptEncoding);
+        String etag = gzip ? rendered.gzipEtag() : rendered.etag();
+
+        if (rendered.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .contentLength(rendered.gzip().length)
+                    .body(rendered.gzip());
+        }
+        return response.contentLength(rendered.identity().length).body(rendered.identity());
+    }
 }
 
 /**
@@ -0,0 +1,12 @@
+package com.example.SecureAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Пакет операций над корзиной, применяемых в одной транзакции в порядке следования.
+ */
+@Schema(description = "Пакетное изменение корзины")
+public record CartBatchRequest(
+        @Schema(description = "Операции в порядке применения") List<CartOperation> operations) {}
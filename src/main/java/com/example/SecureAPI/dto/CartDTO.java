@@ -4,11 +4,12 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 /**
  * DTO для передачи данных о корзине пользователя.
- * Включает ID корзины, ID пользователя и список товаров в корзине.
+ * Включает ID корзины, ID пользователя, список товаров в корзине и итоги (количество и сумму).
  */
 @Data
 @AllArgsConstructor
@@ -22,6 +23,12 @@ public class CartDTO {
 
     @Schema(description = "Список товаров в корзине")
     private List<CartItemDTO> items;
+
+    @Schema(description = "Количество единиц товара в корзине", example = "3")
+    private Integer itemCount;
+
+    @Schema(description = "Сумма корзины по текущим ценам", example = "1499.97")
+    private BigDecimal totalPrice;
 }
 
 /**
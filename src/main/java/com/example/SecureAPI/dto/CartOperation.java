@@ -0,0 +1,12 @@
+package com.example.SecureAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Одна операция пакетного изменения корзины.
+ */
+@Schema(description = "Операция над позицией корзины")
+public record CartOperation(
+        @Schema(description = "Вид операции", example = "ADD") CartOperationType type,
+        @Schema(description = "ID продукта", example = "1001") Long productId,
+        @Schema(description = "Количество (для ADD и SET)", example = "2") Integer quantity) {}
@@ -0,0 +1,13 @@
+package com.example.SecureAPI.dto;
+
+/**
+ * Вид операции в пакетном изменении корзины.
+ */
+public enum CartOperationType {
+    /** Увеличить количество товара (добавить позицию, если её нет). */
+    ADD,
+    /** Установить количество товара. */
+    SET,
+    /** Удалить товар из корзины. */
+    REMOVE
+}
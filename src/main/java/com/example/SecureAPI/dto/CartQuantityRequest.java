@@ -0,0 +1,10 @@
+package com.example.SecureAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Запрос на установку количества товара в корзине.
+ */
+@Schema(description = "Новое количество товара в корзине")
+public record CartQuantityRequest(
+        @Schema(description = "Количество", example = "3") Integer quantity) {}
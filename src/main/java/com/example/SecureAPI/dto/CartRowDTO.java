@@ -0,0 +1,22 @@
+package com.example.SecureAPI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Строка DTO-проекции корзины: корзина и одна её позиция.
+ * Для пустой корзины productId и quantity равны null. Итоги корзины повторяются в каждой строке.
+ * Из таких строк собирается CartDTO.
+ */
+@Data
+@AllArgsConstructor
+public class CartRowDTO {
+    private Long cartId;
+    private Long userId;
+    private Long productId;
+    private Integer quantity;
+    private Integer itemCount;
+    private BigDecimal totalPrice;
+}
@@ -0,0 +1,13 @@
+package com.example.SecureAPI.dto;
+
+/**
+ * Состояние асинхронного оформления заказа.
+ */
+public enum CheckoutStatus {
+    /** Запрос ждёт в очереди. */
+    QUEUED,
+    /** Заказ создан. */
+    COMPLETED,
+    /** Заказ не создан (например, корзина пуста или товара не хватает). */
+    FAILED
+}
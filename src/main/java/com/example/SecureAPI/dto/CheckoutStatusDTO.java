@@ -0,0 +1,26 @@
+package com.example.SecureAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * DTO состояния асинхронного оформления заказа.
+ * Содержит ID запроса, состояние и, после завершения, заказ или причину ошибки.
+ */
+@Data
+@AllArgsConstructor
+@Schema(description = "Состояние асинхронного оформления заказа")
+public class CheckoutStatusDTO {
+    @Schema(description = "ID запроса на оформление", example = "0f8b5c7e-2d4a-4e1b-9c3f-7a6d5e4c3b2a")
+    private String requestId;
+
+    @Schema(description = "Состояние", example = "COMPLETED")
+    private CheckoutStatus status;
+
+    @Schema(description = "Созданный заказ (для COMPLETED)")
+    private OrderDTO order;
+
+    @Schema(description = "Причина ошибки (для FAILED)", example = "Not enough stock for products [1001]")
+    private String error;
+}
@@ -0,0 +1,25 @@
+package com.example.SecureAPI.dto;
+
+/**
+ * Формат выгрузки данных: NDJSON (один JSON-объект на строку) или CSV с заголовком.
+ */
+public enum ExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv;charset=UTF-8", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.SecureAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO результата массового импорта.
+ * Содержит счётчики строк и ошибки по отдельным строкам (их число ограничено).
+ */
+@Data
+@AllArgsConstructor
+@Schema(description = "Результат массового импорта")
+public class ImportReport {
+    @Schema(description = "Получено строк", example = "100000")
+    private long received;
+
+    @Schema(description = "Импортировано строк", example = "99998")
+    private long imported;
+
+    @Schema(description = "Строк с ошибками", example = "2")
+    private long failed;
+
+    @Schema(description = "Ошибки по строкам (первые N)")
+    private List<RowError> errors;
+
+    @Schema(description = "Время импорта в миллисекундах", example = "5321")
+    private long durationMillis;
+
+    /**
+     * Ошибка в одной строке импорта.
+     *
+     * @param row     номер строки (для CSV — номер строки данных без заголовка, для JSON — номер элемента массива), с 1
+     * @param message описание ошибки
+     */
+    @Schema(description = "Ошибка в строке импорта")
+    public record RowError(
+            @Schema(description = "Номер строки, с 1", example = "42") long row,
+            @Schema(description = "Описание ошибки", example = "price: Price must be greater than zero") String message) {}
+}
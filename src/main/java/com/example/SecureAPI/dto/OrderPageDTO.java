@@ -0,0 +1,23 @@
+package com.example.SecureAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO страницы истории заказов (keyset-пагинация, новые заказы первыми).
+ * Содержит заказы страницы и курсор следующей страницы.
+ */
+@Data
+@AllArgsConstructor
+@Schema(description = "Страница истории заказов")
+public class OrderPageDTO {
+    @Schema(description = "Заказы на странице")
+    private List<OrderDTO> items;
+
+    @Schema(description = "Курсор для запроса следующей страницы (параметр after); null, если страница последняя",
+            example = "NTAwMToyMDI1LTA0LTA1VDEyOjM0OjU2")
+    private String nextCursor;
+}
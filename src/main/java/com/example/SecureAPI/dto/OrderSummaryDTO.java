@@ -0,0 +1,29 @@
+package com.example.SecureAPI.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * DTO сводки заказов пользователя.
+ * Содержит ID пользователя, число заказов, сумму покупок и дату последнего заказа.
+ */
+@Data
+@AllArgsConstructor
+@Schema(description = "Сводка заказов пользователя")
+public class OrderSummaryDTO {
+    @Schema(description = "ID пользователя", example = "1")
+    private Long userId;
+
+    @Schema(description = "Количество заказов", example = "12")
+    private long orderCount;
+
+    @Schema(description = "Сумма всех заказов", example = "15999.90")
+    private BigDecimal totalSpent;
+
+    @Schema(description = "Дата и время последнего заказа (null, если заказов нет)", example = "2025-04-05T12:34:56")
+    private LocalDateTime lastOrderDate;
+}
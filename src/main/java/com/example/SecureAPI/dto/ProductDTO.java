@@ -3,11 +3,12 @@ package com.example.SecureAPI.dto;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
 
 /**
  * DTO для создания/обновления продукта.
- * Содержит название и цену продукта с валидацией.
+ * Содержит название, цену и остаток продукта с валидацией.
  */
 @Data
 @Schema(description = "Данные для создания или обновления продукта")
@@ -20,6 +21,10 @@ public class ProductDTO {
     @Positive(message = "Price must be greater than zero")
     @Schema(description = "Цена продукта", example = "999.99")
     private double price;
+
+    @PositiveOrZero(message = "Stock must not be negative")
+    @Schema(description = "Остаток на складе (не указан — не учитывается)", example = "25")
+    private Integer stock;
 }
 
 /**
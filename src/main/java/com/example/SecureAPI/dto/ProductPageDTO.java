@@ -0,0 +1,27 @@
+package com.example.SecureAPI.dto;
+
+import com.example.SecureAPI.model.Product;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO страницы списка продуктов (keyset-пагинация).
+ * Содержит продукты страницы, курсор следующей страницы и (по запросу) общее количество.
+ */
+@Data
+@AllArgsConstructor
+@Schema(description = "Страница списка продуктов")
+public class ProductPageDTO {
+    @Schema(description = "Продукты на странице")
+    private List<Product> items;
+
+    @Schema(description = "Курсор для запроса следующей страницы (параметр after); null, если страница последняя",
+            example = "MTAwMQ")
+    private String nextCursor;
+
+    @Schema(description = "Общее количество продуктов (только при total=true)", example = "1250")
+    private Long total;
+}
@@ -0,0 +1,11 @@
+package com.example.SecureAPI.dto;
+
+/**
+ * Порядок сортировки при постраничном выводе продуктов.
+ * Внутри одинаковых значений продукты всегда упорядочены по ID, чтобы курсор был однозначным.
+ */
+public enum ProductSort {
+    ID,
+    NAME,
+    PRICE
+}
@@ -3,7 +3,7 @@ package com.example.SecureAPI.dto;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
- * DTO для тестового добавления товара в корзину гостя.
+ * DTO для добавления товара в корзину гостя.
  * Использует record-синтаксис (Java 16+).
  */
 @Schema(description = "Запрос на добавление товара в гостевую корзину")
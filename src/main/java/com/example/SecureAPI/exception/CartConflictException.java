@@ -0,0 +1,15 @@
+package com.example.SecureAPI.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, выбрасываемое, если корзину не удалось изменить из-за параллельных изменений
+ * даже после нескольких повторов.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class CartConflictException extends RuntimeException {
+    public CartConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
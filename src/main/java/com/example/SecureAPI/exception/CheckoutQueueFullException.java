@@ -0,0 +1,15 @@
+package com.example.SecureAPI.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, выбрасываемое, когда очередь асинхронного оформления заказов переполнена.
+ * Клиент сразу получает 503 и может повторить запрос позже.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CheckoutQueueFullException extends RuntimeException {
+    public CheckoutQueueFullException(String message) {
+        super(message);
+    }
+}
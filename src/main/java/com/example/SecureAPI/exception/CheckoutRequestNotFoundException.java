@@ -0,0 +1,15 @@
+package com.example.SecureAPI.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, выбрасываемое, если запрос на оформление заказа не найден
+ * (неизвестный ID, чужой запрос или результат уже удалён по сроку хранения).
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class CheckoutRequestNotFoundException extends RuntimeException {
+    public CheckoutRequestNotFoundException(String requestId) {
+        super("Checkout request not found: " + requestId);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.SecureAPI.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, выбрасываемое при некорректном изменении корзины
+ * (например, неположительное количество).
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCartRequestException extends RuntimeException {
+    public InvalidCartRequestException(String message) {
+        super(message);
+    }
+}
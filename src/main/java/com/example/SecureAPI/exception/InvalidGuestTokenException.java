@@ -0,0 +1,14 @@
+package com.example.SecureAPI.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, выбрасываемое, если токен гостя отсутствует, подделан или истёк.
+ */
+@ResponseStatus(HttpStatus.UNAUTHORIZED)
+public class InvalidGuestTokenException extends RuntimeException {
+    public InvalidGuestTokenException(String message) {
+        super(message);
+    }
+}
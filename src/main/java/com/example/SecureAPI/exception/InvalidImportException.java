@@ -0,0 +1,15 @@
+package com.example.SecureAPI.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, выбрасываемое, если файл импорта нельзя разобрать целиком
+ * (например, JSON не является массивом или в CSV нет заголовка).
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidImportException extends RuntimeException {
+    public InvalidImportException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.SecureAPI.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+/**
+ * Исключение, выбрасываемое, если остатка продуктов не хватает для оформления заказа.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class OutOfStockException extends RuntimeException {
+    public OutOfStockException(List<Long> productIds) {
+        super("Not enough stock for products " + productIds);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.SecureAPI.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, выбрасываемое, когда очередь хэширования паролей переполнена.
+ * Клиент сразу получает 503 вместо ожидания свободного потока.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingOverloadedException extends RuntimeException {
+    public PasswordHashingOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -4,6 +4,11 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,22 +17,59 @@ import java.util.List;
  * Хранит список товаров, которые пользователь собирается купить.
  */
 @Entity
-@Table(name = "carts")
+@Table(name = "carts", indexes = @Index(name = "idx_carts_updated_at", columnList = "updated_at"))
 @Getter
 @Setter
 @Schema(description = "Модель корзины пользователя")
 public class Cart {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carts_seq")
+    @SequenceGenerator(name = "carts_seq", sequenceName = "carts_seq", allocationSize = 50)
     @Schema(description = "Уникальный ID корзины", example = "101")
     private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false, unique = true)
     @Schema(description = "Пользователь, которому принадлежит корзина")
     private User user;
 
+    /**
+     * Версия корзины для оптимистичной блокировки: увеличивается при каждом изменении позиций.
+     * Оформление заказа проверяет, что корзина не менялась с момента чтения.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @Schema(description = "Версия корзины", example = "3")
+    private Long version;
+
+    /**
+     * Время последнего изменения корзины. Обновляется теми же запросами, что и версия
+     * (без отдельного UPDATE); по нему фоновая очистка находит брошенные корзины.
+     */
+    @UpdateTimestamp
+    @ColumnDefault("current_timestamp")
+    @Column(name = "updated_at", nullable = false)
+    @Schema(description = "Время последнего изменения корзины", example = "2025-04-05T12:34:56Z")
+    private Instant updatedAt;
+
+    /**
+     * Количество единиц товара в корзине (сумма quantity позиций) и сумма корзины по ценам продуктов.
+     * Поддерживаются в базе триггером на cart_items тем же запросом, что меняет позицию
+     * (см. DatabaseMigrations), поэтому Hibernate их только вставляет и никогда не перезаписывает.
+     * Расхождения (например, после смены цены) исправляет {@code CartTotalsReconciler}.
+     */
+    @ColumnDefault("0")
+    @Column(name = "item_count", nullable = false, updatable = false)
+    @Schema(description = "Количество единиц товара в корзине", example = "3")
+    private Integer itemCount = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "total_price", nullable = false, updatable = false, precision = 19, scale = 2)
+    @Schema(description = "Сумма корзины", example = "1499.97")
+    private BigDecimal totalPrice = BigDecimal.ZERO;
+
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
     @Schema(description = "Список товаров в корзине")
     private List<CartItem> items = new ArrayList<>();
@@ -12,14 +12,21 @@ import org.hibernate.annotations.OnDeleteAction;
  * Представляет один товар с количеством, добавленный в корзину.
  */
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = @UniqueConstraint(
+        name = CartItem.CART_PRODUCT_CONSTRAINT, columnNames = {"cart_id", "product_id"}))
 @Getter
 @Setter
 @Schema(description = "Элемент корзины с информацией о товаре и его количестве")
 public class CartItem {
 
+    /**
+     * Одна строка на продукт в корзине: на это ограничение опирается INSERT ... ON CONFLICT.
+     */
+    public static final String CART_PRODUCT_CONSTRAINT = "uk_cart_items_cart_product";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_items_seq")
+    @SequenceGenerator(name = "cart_items_seq", sequenceName = "cart_items_seq", allocationSize = 50)
     @Schema(description = "ID элемента корзины", example = "201")
     private Long id;
 
@@ -29,7 +36,7 @@ public class CartItem {
     @Schema(description = "Корзина, к которой относится этот элемент")
     private Cart cart;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.RESTRICT)
     @JoinColumn(name = "product_id", nullable = false)
     @Schema(description = "Продукт, добавленный в корзину")
@@ -0,0 +1,40 @@
+package com.example.SecureAPI.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Сущность ключа идемпотентности оформления заказа.
+ * Хранит хэш ключа (вместе с владельцем) и ID созданного заказа до истечения срока хранения.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@Schema(description = "Ключ идемпотентности оформления заказа")
+public class IdempotencyKey {
+
+    /**
+     * Длина хэша: SHA-256 в Base64url без дополнения.
+     */
+    public static final int HASH_LENGTH = 43;
+
+    @Id
+    @Column(name = "key_hash", length = HASH_LENGTH)
+    @Schema(description = "SHA-256 от владельца и ключа Idempotency-Key", example = "q8Jm0m7oVbJ0bqkq3bXfDkzP0l7L2Wq6pWv1gN0yR5c")
+    private String keyHash;
+
+    @Column(name = "order_id", nullable = false)
+    @Schema(description = "ID заказа, созданного по этому ключу", example = "5001")
+    private Long orderId;
+
+    @Column(name = "expires_at", nullable = false)
+    @Schema(description = "Момент, после которого ключ можно использовать повторно", example = "2025-04-06T12:34:56Z")
+    private Instant expiresAt;
+}
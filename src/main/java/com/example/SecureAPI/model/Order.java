@@ -17,14 +17,15 @@ import java.util.List;
  * Представляет собой оформленный заказ пользователя с датой, общей суммой и списком товаров.
  */
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_user_id_order_date", columnList = "user_id, order_date desc, id desc"))
 @Getter
 @Setter
 @Schema(description = "Информация о заказе пользователя")
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     @Schema(description = "Уникальный ID заказа", example = "5001")
     private Long id;
 
@@ -0,0 +1,41 @@
+package com.example.SecureAPI.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Сущность сводки заказов пользователя: число заказов, сумма покупок и дата последнего заказа.
+ * Обновляется в транзакции каждого заказа и пересчитывается из orders командой перестроения
+ * (см. OrderSummaryService, OrderSummaryRebuilder). Строка появляется с первым заказом пользователя.
+ */
+@Entity
+@Table(name = "order_summaries")
+@Getter
+@Setter
+@NoArgsConstructor
+@Schema(description = "Сводка заказов пользователя")
+public class OrderSummary {
+
+    @Id
+    @Column(name = "user_id")
+    @Schema(description = "ID пользователя", example = "1")
+    private Long userId;
+
+    @Column(name = "order_count", nullable = false)
+    @Schema(description = "Количество заказов", example = "12")
+    private long orderCount;
+
+    @Column(name = "total_spent", nullable = false)
+    @Schema(description = "Сумма всех заказов", example = "15999.90")
+    private BigDecimal totalSpent;
+
+    @Column(name = "last_order_date")
+    @Schema(description = "Дата и время последнего заказа", example = "2025-04-05T12:34:56")
+    private LocalDateTime lastOrderDate;
+}
@@ -7,7 +7,7 @@ import lombok.Setter;
 
 /**
  * Сущность продукта.
- * Хранит информацию о товаре: название и цена.
+ * Хранит информацию о товаре: название, цена и остаток на складе.
  */
 @Entity
 @Table(name = "products")
@@ -16,8 +16,13 @@ import lombok.Setter;
 @Schema(description = "Информация о товаре")
 public class Product {
 
+    /**
+     * ID из последовательности products_seq с шагом 50: Hibernate резервирует 50 значений
+     * за один запрос к последовательности, поэтому вставки можно отправлять пачками (JDBC batch).
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     @Schema(description = "Уникальный ID продукта", example = "1001")
     private Long id;
 
@@ -26,6 +31,15 @@ public class Product {
 
     @Schema(description = "Цена продукта", example = "999.99")
     private double price;
+
+    /**
+     * Остаток на складе; null — остаток не учитывается (продукты, созданные до учёта остатков).
+     * Списывается при оформлении заказа условным UPDATE (см. ProductRepositoryCustom.reserveStock),
+     * поэтому не уходит в минус. Каталог в памяти получает списанный остаток с задержкой
+     * до products.catalog.stock-sync-interval-ms (см. ProductCatalog).
+     */
+    @Schema(description = "Остаток на складе (null — не учитывается); после заказа обновляется с задержкой до секунды", example = "25")
+    private Integer stock;
 }
 
 /**
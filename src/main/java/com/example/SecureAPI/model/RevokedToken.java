@@ -0,0 +1,36 @@
+package com.example.SecureAPI.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Сущность отозванного JWT-токена.
+ * Хранит ID токена (jti) до момента его истечения — после этого токен и так недействителен.
+ */
+@Entity
+@Table(name = "revoked_tokens", indexes = @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@Schema(description = "Отозванный JWT-токен")
+public class RevokedToken {
+
+    @Id
+    @Column(name = "token_id", length = 64)
+    @Schema(description = "ID токена (claim jti)", example = "5f0c8a4e-3b7d-4a51-9d0e-1c2b3a4d5e6f")
+    private String tokenId;
+
+    @Column(name = "expires_at", nullable = false)
+    @Schema(description = "Момент истечения токена", example = "2025-04-06T12:34:56Z")
+    private Instant expiresAt;
+
+    public RevokedToken(String tokenId, Instant expiresAt) {
+        this.tokenId = tokenId;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -11,14 +11,15 @@ import lombok.Setter;
  * Имеет связь с корзиной (One-to-One).
  */
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = @UniqueConstraint(name = "uk_users_email", columnNames = "email"))
 @Getter
 @Setter
 @Schema(description = "Информация о пользователе системы")
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     @Schema(description = "Уникальный ID пользователя", example = "1")
     private Long id;
 
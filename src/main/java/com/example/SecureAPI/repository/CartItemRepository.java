@@ -2,11 +2,51 @@ package com.example.SecureAPI.repository;
 
 import com.example.SecureAPI.model.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Репозиторий для работы с элементами корзины.
  */
-public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+public interface CartItemRepository extends JpaRepository<CartItem, Long>, CartItemRepositoryCustom {
     List<CartItem> findByCartId(Long cartId);
-}
\ No newline at end of file
+
+    /**
+     * Удаляет позицию с продуктом из корзины пользователя, не загружая корзину.
+     * @return количество удалённых строк (0 или 1)
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from CartItem i where i.product.id = :productId and i.cart.id in (select c.id from Cart c where c.user.id = :userId)")
+    int deleteByUserIdAndProductId(@Param("userId") Long userId, @Param("productId") Long productId);
+
+    /**
+     * Удаляет из корзины пользователя позиции с указанными продуктами одним запросом.
+     * @return количество удалённых строк
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from CartItem i where i.product.id in :productIds and i.cart.id in (select c.id from Cart c where c.user.id = :userId)")
+    int deleteByUserIdAndProductIdIn(@Param("userId") Long userId, @Param("productIds") Collection<Long> productIds);
+
+    /**
+     * Удаляет все позиции корзины одним запросом.
+     * @return количество удалённых строк
+     */
+    @Modifying
+    @Query("delete from CartItem i where i.cart.id = :cartId")
+    int deleteByCartId(@Param("cartId") Long cartId);
+
+    /**
+     * Удаляет все позиции корзины пользователя, не загружая корзину.
+     * @return количество удалённых строк
+     */
+    @Modifying
+    @Query("delete from CartItem i where i.cart.id in (select c.id from Cart c where c.user.id = :userId)")
+    int deleteByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,49 @@
+package com.example.SecureAPI.repository;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Атомарные изменения позиций корзины одним SQL-запросом, без загрузки корзины.
+ * Реализация — CartItemRepositoryImpl (только PostgreSQL: INSERT ... ON CONFLICT).
+ */
+public interface CartItemRepositoryCustom {
+
+    /**
+     * Прибавляет количество к позиции корзины пользователя, создавая позицию при её отсутствии.
+     * @return новое количество или пусто, если у пользователя нет корзины
+     */
+    Optional<Integer> addQuantity(Long userId, Long productId, int quantity);
+
+    /**
+     * Устанавливает количество в позиции корзины пользователя, создавая позицию при её отсутствии.
+     * @return новое количество или пусто, если у пользователя нет корзины
+     */
+    Optional<Integer> setQuantity(Long userId, Long productId, int quantity);
+
+    /**
+     * Пакетный вариант addQuantity: одна пачка JDBC batch на все продукты.
+     * Корзина пользователя должна уже существовать.
+     * @param quantities количество к добавлению по ID продукта
+     */
+    void addQuantities(Long userId, Map<Long, Integer> quantities);
+
+    /**
+     * Пакетный вариант setQuantity: одна пачка JDBC batch на все продукты.
+     * Корзина пользователя должна уже существовать.
+     * @param quantities новое количество по ID продукта
+     */
+    void setQuantities(Long userId, Map<Long, Integer> quantities);
+
+    /**
+     * Заменяет содержимое корзин целиком, создавая недостающие корзины.
+     * Три пачки JDBC batch в одной транзакции независимо от числа корзин.
+     * @param carts позиции (ID продукта → количество) по ID пользователя
+     */
+    void replaceCarts(Map<Long, Map<Long, Integer>> carts);
+
+    /**
+     * Создаёт пустую корзину пользователя, если её ещё нет (и если пользователь существует).
+     */
+    void createCartIfAbsent(Long userId);
+}
@@ -0,0 +1,124 @@
+package com.example.SecureAPI.repository;
+
+import com.example.SecureAPI.model.Cart;
+import com.example.SecureAPI.model.CartItem;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Реализация CartItemRepositoryCustom на JdbcTemplate.
+ *
+ * ID новых строк берутся из генератора Hibernate, а не прямым nextval: последовательности
+ * выдают блоки по 50 ID, и запрос в обход пула мог бы занять ID из блока, уже выданного Hibernate.
+ * Если позиция уже есть, взятый ID просто пропускается.
+ */
+class CartItemRepositoryImpl implements CartItemRepositoryCustom {
+
+    /**
+     * Версия и время изменения корзины обновляются тем же запросом: UPDATE сначала блокирует строку
+     * корзины, поэтому порядок блокировок (корзина, затем позиции) совпадает с оформлением заказа.
+     */
+    private static final String BUMP_VERSION =
+            "with c as (update carts set version = version + 1, updated_at = now() where user_id = ? returning id) ";
+    private static final String UPSERT = BUMP_VERSION +
+            "insert into cart_items (id, cart_id, product_id, quantity) " +
+            "select ?, c.id, ?, ? from c " +
+            "on conflict (cart_id, product_id) do update set quantity = %s";
+
+    private static final String ADD_QUANTITY = UPSERT.formatted("cart_items.quantity + excluded.quantity");
+    private static final String SET_QUANTITY = UPSERT.formatted("excluded.quantity");
+    private static final String RETURNING = " returning quantity";
+    private static final String CREATE_CART =
+            "insert into carts (id, user_id) select ?, u.id from users u where u.id = ? on conflict (user_id) do nothing";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    CartItemRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public Optional<Integer> addQuantity(Long userId, Long productId, int quantity) {
+        return upsert(ADD_QUANTITY, userId, productId, quantity);
+    }
+
+    @Override
+    @Transactional
+    public Optional<Integer> setQuantity(Long userId, Long productId, int quantity) {
+        return upsert(SET_QUANTITY, userId, productId, quantity);
+    }
+
+    @Override
+    @Transactional
+    public void addQuantities(Long userId, Map<Long, Integer> quantities) {
+        upsertAll(ADD_QUANTITY, userId, quantities);
+    }
+
+    @Override
+    @Transactional
+    public void setQuantities(Long userId, Map<Long, Integer> quantities) {
+        upsertAll(SET_QUANTITY, userId, quantities);
+    }
+
+    @Override
+    @Transactional
+    public void createCartIfAbsent(Long userId) {
+        jdbcTemplate.update(CREATE_CART, nextId(Cart.class), userId);
+    }
+
+    @Override
+    @Transactional
+    public void replaceCarts(Map<Long, Map<Long, Integer>> carts) {
+        if (carts.isEmpty()) {
+            return;
+        }
+        List<Object[]> owners = new ArrayList<>(carts.size());
+        List<Object[]> users = new ArrayList<>(carts.size());
+        List<Object[]> lines = new ArrayList<>();
+        carts.forEach((userId, items) -> {
+            owners.add(new Object[]{nextId(Cart.class), userId});
+            users.add(new Object[]{userId});
+            items.forEach((productId, quantity) -> lines.add(new Object[]{userId, nextId(CartItem.class), productId, quantity}));
+        });
+        jdbcTemplate.batchUpdate(CREATE_CART, owners);
+        jdbcTemplate.batchUpdate(BUMP_VERSION + "delete from cart_items where cart_id in (select id from c)", users);
+        if (!lines.isEmpty()) {
+            jdbcTemplate.batchUpdate(SET_QUANTITY, lines);
+        }
+    }
+
+    private Optional<Integer> upsert(String sql, Long userId, Long productId, int quantity) {
+        List<Integer> result = jdbcTemplate.queryForList(sql + RETURNING, Integer.class,
+                userId, nextId(CartItem.class), productId, quantity);
+        return result.stream().findFirst();
+    }
+
+    private void upsertAll(String sql, Long userId, Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> rows.add(new Object[]{userId, nextId(CartItem.class), productId, quantity}));
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    private long nextId(Class<?> entityClass) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator generator = (IdentifierGenerator) session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(entityClass).getGenerator();
+        return (Long) generator.generate(session, null);
+    }
+}
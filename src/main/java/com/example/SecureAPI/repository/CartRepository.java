@@ -1,13 +1,57 @@
 package com.example.SecureAPI.repository;
 
+import com.example.SecureAPI.dto.CartRowDTO;
 import com.example.SecureAPI.model.Cart;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Репозиторий для работы с корзинами пользователей.
  */
-public interface CartRepository extends JpaRepository<Cart, Long> {
+public interface CartRepository extends JpaRepository<Cart, Long>, CartRepositoryCustom {
     Optional<Cart> findByUserId(Long userId);
-}
\ No newline at end of file
+
+    /**
+     * Загружает корзину вместе с позициями и их продуктами одним запросом (для оформления заказа).
+     */
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    @Query("select c from Cart c where c.user.id = :userId")
+    Optional<Cart> findWithItemsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Читает корзину пользователя сразу в строки DTO, без загрузки сущностей.
+     */
+    @Query("select new com.example.SecureAPI.dto.CartRowDTO(c.id, c.user.id, i.product.id, i.quantity, c.itemCount, c.totalPrice) " +
+            "from Cart c left join c.items i where c.user.id = :userId order by i.id")
+    List<CartRowDTO> findRowsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Читает все корзины сразу в строки DTO; строки одной корзины идут подряд.
+     */
+    @Query("select new com.example.SecureAPI.dto.CartRowDTO(c.id, c.user.id, i.product.id, i.quantity, c.itemCount, c.totalPrice) " +
+            "from Cart c left join c.items i order by c.id, i.id")
+    List<CartRowDTO> findAllRows();
+
+    /**
+     * Увеличивает версию корзины пользователя и обновляет время изменения
+     * (перед изменением позиций в той же транзакции).
+     * @return 1, если корзина есть, иначе 0
+     */
+    @Modifying
+    @Query("update Cart c set c.version = c.version + 1, c.updatedAt = current_instant where c.user.id = :userId")
+    int incrementVersionByUserId(@Param("userId") Long userId);
+
+    /**
+     * Увеличивает версию корзины, только если она не менялась с момента чтения (оптимистичная блокировка).
+     * @return 1 при успехе, 0 если корзину успели изменить
+     */
+    @Modifying
+    @Query("update Cart c set c.version = c.version + 1, c.updatedAt = current_instant where c.id = :id and c.version = :version")
+    int incrementVersion(@Param("id") Long id, @Param("version") Long version);
+}
@@ -0,0 +1,52 @@
+package com.example.SecureAPI.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Обслуживание таблицы корзин запросами, которые не выражаются через JPQL.
+ * Реализация — CartRepositoryImpl (удаление брошенных корзин — только PostgreSQL).
+ */
+public interface CartRepositoryCustom {
+
+    /**
+     * Удаляет не более limit корзин, не изменявшихся с момента cutoff, вместе с их позициями.
+     * Корзины, которые сейчас изменяются (строка заблокирована), пропускаются.
+     * @param cutoff корзины с updated_at раньше этого момента считаются брошенными
+     * @param limit максимум корзин за один вызов
+     * @return число удалённых корзин и позиций
+     */
+    ReclaimedRows deleteIdleCarts(Instant cutoff, int limit);
+
+    /**
+     * Сверяет хранимые итоги (item_count, total_price) не более чем limit корзин с ID больше afterId
+     * с их позициями по текущим ценам.
+     * @param afterId ID последней проверенной корзины (0 — с начала)
+     * @param limit размер страницы
+     * @return проверенная страница и корзины с расхождениями
+     */
+    TotalsCheck checkTotals(long afterId, int limit);
+
+    /**
+     * Пересчитывает итоги корзин по позициям. Корзины блокируются в порядке ID,
+     * поэтому параллельные изменения позиций (они блокируют строку корзины первыми) дожидаются пересчёта.
+     * @param cartIds ID корзин
+     * @return число корзин, итоги которых действительно изменились
+     */
+    int repairTotals(List<Long> cartIds);
+
+    /**
+     * Результат одной пачки очистки.
+     * @param carts удалено корзин
+     * @param items удалено позиций корзин
+     */
+    record ReclaimedRows(long carts, long items) {}
+
+    /**
+     * Результат проверки одной страницы корзин.
+     * @param scanned проверено корзин
+     * @param lastId ID последней проверенной корзины (продолжение проверки — со следующей)
+     * @param drifted ID корзин, итоги которых расходятся с позициями
+     */
+    record TotalsCheck(int scanned, long lastId, List<Long> drifted) {}
+}
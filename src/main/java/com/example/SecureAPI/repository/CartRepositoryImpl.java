@@ -0,0 +1,87 @@
+package com.example.SecureAPI.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Реализация CartRepositoryCustom на JdbcTemplate.
+ */
+class CartRepositoryImpl implements CartRepositoryCustom {
+
+    /**
+     * Одна короткая транзакция на пачку: DELETE ... WHERE id IN (SELECT ... LIMIT n).
+     * FOR UPDATE SKIP LOCKED не ждёт корзины, которые сейчас изменяются; корзину, изменённую
+     * после начала запроса, PostgreSQL перепроверяет по updated_at и не удаляет.
+     */
+    private static final String DELETE_IDLE_CARTS =
+            "with idle as (select id from carts where updated_at < ? order by updated_at limit ? for update skip locked), " +
+            "items as (delete from cart_items where cart_id in (select id from idle) returning 1), " +
+            "removed as (delete from carts where id in (select id from idle) returning 1) " +
+            "select (select count(*) from removed), (select count(*) from items)";
+
+    /**
+     * Итоги корзины c.id по её позициям; сумма позиции округляется так же, как в триггере (см. DatabaseMigrations).
+     */
+    private static final String ACTUAL_ITEM_COUNT =
+            "coalesce((select sum(ci.quantity) from cart_items ci where ci.cart_id = c.id), 0)";
+    private static final String ACTUAL_TOTAL_PRICE =
+            "coalesce((select sum(round(cast(p.price as numeric(38, 10)) * ci.quantity, 2)) " +
+            "from cart_items ci join products p on p.id = ci.product_id where ci.cart_id = c.id), 0)";
+    private static final String DRIFTED =
+            "(c.item_count <> " + ACTUAL_ITEM_COUNT + " or c.total_price <> " + ACTUAL_TOTAL_PRICE + ")";
+
+    /**
+     * Страница корзин по ключу id, без блокировок: расхождение потом перепроверяется под блокировкой.
+     */
+    private static final String CHECK_TOTALS =
+            "select c.id, case when " + DRIFTED + " then 1 else 0 end from carts c where c.id > ? order by c.id limit ?";
+    private static final String LOCK_CARTS = "select id from carts where id in (%s) order by id for update";
+    /**
+     * updated_at не меняется: пересчёт не делает корзину «активной» для фоновой очистки.
+     */
+    private static final String REPAIR_TOTALS =
+            "update carts c set item_count = " + ACTUAL_ITEM_COUNT + ", total_price = " + ACTUAL_TOTAL_PRICE +
+            " where c.id in (%s) and " + DRIFTED;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    CartRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public ReclaimedRows deleteIdleCarts(Instant cutoff, int limit) {
+        return jdbcTemplate.queryForObject(DELETE_IDLE_CARTS,
+                (rs, row) -> new ReclaimedRows(rs.getLong(1), rs.getLong(2)),
+                Timestamp.from(cutoff), limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TotalsCheck checkTotals(long afterId, int limit) {
+        // Строка страницы: {ID корзины, 1 — итоги расходятся}
+        List<long[]> rows = jdbcTemplate.query(CHECK_TOTALS,
+                (rs, row) -> new long[]{rs.getLong(1), rs.getInt(2)}, afterId, limit);
+        List<Long> drifted = rows.stream().filter(row -> row[1] == 1).map(row -> row[0]).toList();
+        long lastId = rows.isEmpty() ? afterId : rows.get(rows.size() - 1)[0];
+        return new TotalsCheck(rows.size(), lastId, drifted);
+    }
+
+    @Override
+    @Transactional
+    public int repairTotals(List<Long> cartIds) {
+        if (cartIds.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(cartIds.size(), "?"));
+        Object[] ids = cartIds.toArray();
+        jdbcTemplate.queryForList(LOCK_CARTS.formatted(placeholders), Long.class, ids);
+        return jdbcTemplate.update(REPAIR_TOTALS.formatted(placeholders), ids);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.SecureAPI.repository;
+
+import com.example.SecureAPI.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с ключами идемпотентности.
+ */
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    /**
+     * ID заказа, созданного по ключу, если срок хранения ключа не истёк.
+     */
+    @Query("select k.orderId from IdempotencyKey k where k.keyHash = :keyHash and k.expiresAt > :now")
+    Optional<Long> findOrderId(@Param("keyHash") String keyHash, @Param("now") Instant now);
+
+    /**
+     * Записывает ключ одним INSERT (save() сначала искал бы строку по ID). Повторный ключ
+     * нарушает первичный ключ — DataIntegrityViolationException в транзакции заказа.
+     */
+    @Modifying
+    @Query(value = "insert into idempotency_keys (key_hash, order_id, expires_at) values (:keyHash, :orderId, :expiresAt)",
+            nativeQuery = true)
+    void insert(@Param("keyHash") String keyHash, @Param("orderId") Long orderId, @Param("expiresAt") Instant expiresAt);
+
+    /**
+     * Удаляет ключ, если срок его хранения истёк, но очистка его ещё не удалила. Вызывается
+     * в транзакции заказа перед {@link #insert}: иначе повтор ключа после срока хранения
+     * упирался бы в первичный ключ старой строки. Действующий ключ не удаляется.
+     * @return 1, если строка удалена, иначе 0
+     */
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.keyHash = :keyHash and k.expiresAt <= :now")
+    int deleteExpired(@Param("keyHash") String keyHash, @Param("now") Instant now);
+
+    /**
+     * Удаляет ключи с истёкшим сроком хранения.
+     * @return количество удалённых ключей
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyKey k where k.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -1,14 +1,63 @@
 package com.example.SecureAPI.repository;
 
 import com.example.SecureAPI.model.Order;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с заказами.
+ * Методы истории заказов пользователя (keyset-пагинация, новые первыми) читают страницу заказов
+ * без позиций; позиции страницы читаются отдельным запросом по списку ID заказов.
  */
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserId(Long userId);
+
+    /**
+     * Первая страница истории заказов пользователя. Столбцы: id заказа, сумма, дата.
+     */
+    @Query("select o.id, o.totalPrice, o.orderDate from Order o where o.user.id = :userId " +
+            "order by o.orderDate desc, o.id desc")
+    List<Object[]> findHistoryPage(@Param("userId") Long userId, Limit limit);
+
+    /**
+     * Страница истории заказов пользователя, начинающаяся строго после заказа (orderDate, id).
+     * Столбцы: id заказа, сумма, дата.
+     */
+    @Query("select o.id, o.totalPrice, o.orderDate from Order o where o.user.id = :userId " +
+            "and (o.orderDate < :orderDate or (o.orderDate = :orderDate and o.id < :id)) " +
+            "order by o.orderDate desc, o.id desc")
+    List<Object[]> findHistoryPageAfter(@Param("userId") Long userId,
+                                        @Param("orderDate") LocalDateTime orderDate,
+                                        @Param("id") Long id,
+                                        Limit limit);
+
+    /**
+     * Позиции заказов одним запросом. Столбцы: id заказа, id продукта, количество, цена на момент заказа.
+     * Строки одного заказа идут подряд.
+     */
+    @Query("select i.order.id, i.product.id, i.quantity, i.priceAtTime from OrderItem i " +
+            "where i.order.id in :orderIds order by i.order.id, i.id")
+    List<Object[]> findItemRows(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * Читает заказы с позициями курсором: одна строка на позицию (заказ без позиций — одна строка с null).
+     * Столбцы: id заказа, id пользователя, сумма, дата, id продукта, количество, цена на момент заказа.
+     * Строки одного заказа идут подряд. Вызывается внутри транзакции; поток нужно закрыть.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ProductRepository.EXPORT_FETCH_SIZE))
+    @Query("select o.id, o.user.id, o.totalPrice, o.orderDate, i.product.id, i.quantity, i.priceAtTime " +
+            "from Order o left join o.items i where o.id > :since order by o.id, i.id")
+    Stream<Object[]> streamRowsByIdGreaterThan(@Param("since") long since);
 }
 
 /**
@@ -0,0 +1,10 @@
+package com.example.SecureAPI.repository;
+
+import com.example.SecureAPI.model.OrderSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Репозиторий сводок заказов пользователей.
+ */
+public interface OrderSummaryRepository extends JpaRepository<OrderSummary, Long>, OrderSummaryRepositoryCustom {
+}
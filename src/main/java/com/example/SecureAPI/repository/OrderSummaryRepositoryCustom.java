@@ -0,0 +1,34 @@
+package com.example.SecureAPI.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Запись сводок заказов (order_summaries) запросами, которые не выражаются через JPA.
+ */
+public interface OrderSummaryRepositoryCustom {
+
+    /**
+     * Добавляет заказ в сводку пользователя (создаёт сводку, если её ещё нет).
+     * Вызывается в транзакции заказа; строка сводки остаётся заблокированной до её фиксации.
+     *
+     * @param userId     ID пользователя
+     * @param totalPrice сумма заказа
+     * @param orderDate  дата заказа
+     */
+    void addOrder(Long userId, BigDecimal totalPrice, LocalDateTime orderDate);
+
+    /**
+     * Пересчитывает из orders сводки пользователей с ID в диапазоне [fromUserId, toUserId]
+     * одной транзакцией: удаляет сводки диапазона и вставляет их заново.
+     *
+     * @param excludedUserId пользователь, сводка которого не ведётся (служебный пользователь гостевых заказов)
+     * @return число записанных сводок
+     */
+    int rebuildRange(long fromUserId, long toUserId, long excludedUserId);
+
+    /**
+     * @return наибольший ID пользователя (0, если пользователей нет)
+     */
+    long maxUserId();
+}
@@ -0,0 +1,79 @@
+package com.example.SecureAPI.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Реализация OrderSummaryRepositoryCustom на JdbcTemplate.
+ *
+ * На PostgreSQL заказ добавляется в сводку одним INSERT ... ON CONFLICT: первые заказы одного
+ * пользователя в параллельных транзакциях не упираются в первичный ключ, а пересчёт диапазона,
+ * который удалил и заново вставил сводку, не теряет заказ, ждавший блокировки её строки.
+ * На других СУБД (H2 в тестах) — UPDATE, а если сводки ещё нет, INSERT.
+ *
+ * Пересчёт диапазона вставляет сводки обычным INSERT: если параллельный заказ успел вставить
+ * сводку пользователя из диапазона, вставка нарушает первичный ключ и диапазон пересчитывается
+ * заново ({@code OrderSummaryRebuilder}).
+ */
+class OrderSummaryRepositoryImpl implements OrderSummaryRepositoryCustom {
+
+    private static final String UPSERT =
+            "insert into order_summaries (user_id, order_count, total_spent, last_order_date) values (?, 1, ?, ?) " +
+            "on conflict (user_id) do update set order_count = order_summaries.order_count + 1, " +
+            "total_spent = order_summaries.total_spent + excluded.total_spent, " +
+            "last_order_date = greatest(order_summaries.last_order_date, excluded.last_order_date)";
+    private static final String ADD =
+            "update order_summaries set order_count = order_count + 1, total_spent = total_spent + ?, " +
+            "last_order_date = greatest(last_order_date, ?) where user_id = ?";
+    private static final String INSERT =
+            "insert into order_summaries (user_id, order_count, total_spent, last_order_date) values (?, 1, ?, ?)";
+    private static final String REBUILD =
+            "insert into order_summaries (user_id, order_count, total_spent, last_order_date) " +
+            "select user_id, count(*), sum(total_price), max(order_date) from orders " +
+            "where user_id between ? and ? and user_id <> ? group by user_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    OrderSummaryRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void addOrder(Long userId, BigDecimal totalPrice, LocalDateTime orderDate) {
+        if (isPostgres()) {
+            jdbcTemplate.update(UPSERT, userId, totalPrice, orderDate);
+        } else if (jdbcTemplate.update(ADD, totalPrice, orderDate, userId) == 0) {
+            jdbcTemplate.update(INSERT, userId, totalPrice, orderDate);
+        }
+    }
+
+    @Override
+    @Transactional
+    public int rebuildRange(long fromUserId, long toUserId, long excludedUserId) {
+        jdbcTemplate.update("delete from order_summaries where user_id between ? and ?", fromUserId, toUserId);
+        return jdbcTemplate.update(REBUILD, fromUserId, toUserId, excludedUserId);
+    }
+
+    @Override
+    public long maxUserId() {
+        Long max = jdbcTemplate.queryForObject("select max(id) from users", Long.class);
+        return max != null ? max : 0;
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = result;
+        }
+        return result;
+    }
+}
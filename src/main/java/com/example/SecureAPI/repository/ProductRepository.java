@@ -1,12 +1,46 @@
 package com.example.SecureAPI.repository;
 
 import com.example.SecureAPI.model.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с продуктами.
+ * Методы keyset-пагинации возвращают страницу, начинающуюся строго после переданного ключа.
+ * Методы stream* читают таблицу курсором порциями по {@link #EXPORT_FETCH_SIZE} строк
+ * и должны вызываться внутри транзакции; поток нужно закрыть.
  */
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
+    String EXPORT_FETCH_SIZE = "500";
+
     List<Product> findAll();
+
+    List<Product> findAllByOrderByIdAsc(Limit limit);
+
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<Product> findAllByOrderByNameAscIdAsc(Limit limit);
+
+    @Query("select p from Product p where p.name > :name or (p.name = :name and p.id > :id) order by p.name, p.id")
+    List<Product> findPageAfterName(@Param("name") String name, @Param("id") Long id, Limit limit);
+
+    List<Product> findAllByOrderByPriceAscIdAsc(Limit limit);
+
+    @Query("select p from Product p where p.price > :price or (p.price = :price and p.id > :id) order by p.price, p.id")
+    List<Product> findPageAfterPrice(@Param("price") double price, @Param("id") Long id, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Product p where p.id > :since order by p.id")
+    Stream<Product> streamByIdGreaterThan(@Param("since") long since);
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.example.SecureAPI.repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Списание остатков продуктов условными UPDATE без чтения остатка.
+ * Реализация — ProductRepositoryImpl.
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * Списывает остатки одной пачкой JDBC batch: по одному UPDATE ... WHERE stock >= ? на продукт,
+     * в порядке ID продуктов (параллельные заказы блокируют строки в одном порядке и не взаимоблокируются).
+     * Строки продуктов остаются заблокированными до конца транзакции, поэтому вызывать списание
+     * нужно последним изменением перед фиксацией. Если вернулись непустые ID, транзакцию нужно откатить:
+     * остальные продукты пачки уже списаны.
+     * @param quantities количество к списанию по ID продукта (только продукты с учётом остатка)
+     * @return ID продуктов, остатка которых не хватило (пусто — всё списано)
+     */
+    List<Long> reserveStock(Map<Long, Integer> quantities);
+}
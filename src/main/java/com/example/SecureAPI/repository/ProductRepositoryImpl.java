@@ -0,0 +1,49 @@
+package com.example.SecureAPI.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Реализация ProductRepositoryCustom на JdbcTemplate.
+ */
+class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    /**
+     * Проверка и списание — один оператор: строка блокируется только на время UPDATE и до фиксации,
+     * а не с момента чтения остатка, и конкурирующий заказ проверяет условие уже по новому значению.
+     */
+    private static final String RESERVE_STOCK = "update products set stock = stock - ? where id = ? and stock >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    ProductRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> reserveStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = new ArrayList<>(quantities.size());
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        new TreeMap<>(quantities).forEach((productId, quantity) -> {
+            ids.add(productId);
+            rows.add(new Object[]{quantity, productId, quantity});
+        });
+        int[] updated = jdbcTemplate.batchUpdate(RESERVE_STOCK, rows);
+        List<Long> insufficient = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                insufficient.add(ids.get(i));
+            }
+        }
+        return insufficient;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.SecureAPI.repository;
+
+import com.example.SecureAPI.model.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Репозиторий для работы с отозванными токенами.
+ */
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    /**
+     * ID всех отозванных токенов, срок действия которых ещё не истёк.
+     */
+    @Query("select r.tokenId from RevokedToken r where r.expiresAt > :now")
+    List<String> findActiveTokenIds(@Param("now") Instant now);
+
+    /**
+     * Удаляет записи об уже истёкших токенах.
+     * @return количество удалённых записей
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from RevokedToken r where r.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -1,11 +1,19 @@
 package com.example.SecureAPI.repository;
 
-import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.dto.UserDTO;
 import com.example.SecureAPI.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с пользователями.
@@ -13,4 +21,21 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findAll();
     Optional<User> findByEmail(String email);
+
+    /**
+     * Заменяет хэш пароля, только если он не изменился с момента чтения.
+     * @return количество обновлённых строк (0 или 1)
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.passwordHash = :newHash where u.id = :id and u.passwordHash = :oldHash")
+    int updatePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
+
+    /**
+     * Читает пользователей курсором сразу в DTO (без хэшей паролей и без загрузки корзин).
+     * Вызывается внутри транзакции; поток нужно закрыть.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ProductRepository.EXPORT_FETCH_SIZE))
+    @Query("select new com.example.SecureAPI.dto.UserDTO(u.id, u.email, u.name, u.role) from User u where u.id > :since order by u.id")
+    Stream<UserDTO> streamByIdGreaterThan(@Param("since") long since);
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.example.SecureAPI.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AuthenticatedUser — лёгкий неизменяемый principal, который JwtFilter кладёт в SecurityContext.
+ *
+ * Создаётся из уже проверенного токена ({@link JwtClaims}), поэтому чтобы узнать,
+ * кто делает запрос, не нужно обращаться к UserRepository.
+ * Списки прав (authorities) заранее созданы и переиспользуются для каждой роли,
+ * так что на каждый запрос не создаётся новый SimpleGrantedAuthority.
+ *
+ * В контроллерах principal получают параметром метода — его подставляет
+ * {@link AuthenticatedUserArgumentResolver}.
+ *
+ * @param userId      ID пользователя
+ * @param role        роль пользователя (ADMIN, EMPLOYEE, CLIENT)
+ * @param authorities неизменяемый список прав для этой роли (ROLE_...)
+ */
+public record AuthenticatedUser(Long userId, String role, List<GrantedAuthority> authorities)
+        implements AuthenticatedPrincipal {
+
+    /**
+     * Общие для всех запросов списки прав по ролям.
+     */
+    private static final Map<String, List<GrantedAuthority>> AUTHORITIES_BY_ROLE = new ConcurrentHashMap<>();
+
+    static {
+        for (String role : List.of("ADMIN", "EMPLOYEE", "CLIENT", "USER")) {
+            authoritiesFor(role);
+        }
+    }
+
+    /**
+     * Создаёт principal из проверенных данных токена.
+     *
+     * @param claims данные JWT-токена
+     * @return principal текущего пользователя
+     */
+    public static AuthenticatedUser from(JwtClaims claims) {
+        return new AuthenticatedUser(claims.userId(), claims.role(), authoritiesFor(claims.role()));
+    }
+
+    /**
+     * Возвращает заранее созданный список прав для роли.
+     *
+     * @param role роль пользователя
+     * @return неизменяемый список из одного ROLE_{role}
+     */
+    public static List<GrantedAuthority> authoritiesFor(String role) {
+        return AUTHORITIES_BY_ROLE.computeIfAbsent(role,
+                r -> List.of(new SimpleGrantedAuthority("ROLE_" + r)));
+    }
+
+    /**
+     * Имя principal для Spring Security — строковый ID пользователя.
+     */
+    @Override
+    public String getName() {
+        return String.valueOf(userId);
+    }
+}
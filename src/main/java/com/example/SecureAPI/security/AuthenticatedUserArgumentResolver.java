@@ -0,0 +1,37 @@
+package com.example.SecureAPI.security;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Подставляет {@link AuthenticatedUser} в параметры методов контроллеров.
+ *
+ * Principal берётся из SecurityContext, куда его положил JwtFilter,
+ * поэтому никаких обращений к базе данных не происходит.
+ */
+public class AuthenticatedUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return AuthenticatedUser.class.equals(parameter.getParameterType());
+    }
+
+    /**
+     * @throws AuthenticationCredentialsNotFoundException если запрос не аутентифицирован через JWT
+     */
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user;
+        }
+        throw new AuthenticationCredentialsNotFoundException("JWT authentication required");
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.SecureAPI.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * BloomFilter — компактное вероятностное множество строк.
+ *
+ * mightContain() может ошибочно ответить «да» (с заданной вероятностью),
+ * но никогда не ответит «нет» для добавленного элемента. Поэтому отрицательный ответ
+ * позволяет пропустить точную проверку в базе данных.
+ * Добавление и проверка потокобезопасны и не используют блокировок.
+ */
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions        ожидаемое количество элементов
+     * @param falsePositiveProbability  допустимая вероятность ложного срабатывания (0..1)
+     */
+    BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+        int n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, m);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+    /**
+     * Добавляет элемент в фильтр.
+     */
+    void add(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = bits.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    /**
+     * Проверяет, мог ли элемент быть добавлен в фильтр.
+     *
+     * @return false — элемента точно нет; true — элемент, вероятно, есть
+     */
+    boolean mightContain(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-битный FNV-1a с финальным перемешиванием (как в MurmurHash3 fmix64).
+     */
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.SecureAPI.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * GuestTokenService — выпуск и проверка токенов гостя (анонимного покупателя).
+ *
+ * Токен — это «ID гостя + момент истечения», подписанные HMAC-SHA256:
+ * base64url(msb, lsb, expiresAt).base64url(hmac). Проверка не обращается ни к базе,
+ * ни к памяти, поэтому подделать чужой ID гостя или продлить токен нельзя без ключа.
+ *
+ * Ключ задаётся в security.guest-token.secret (Base64). Если он не задан, ключ
+ * генерируется при запуске: гостевые корзины и так хранятся в памяти и после
+ * перезапуска теряются, вместе с ними становятся недействительными и токены.
+ */
+@Component
+public class GuestTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int PAYLOAD_BYTES = 3 * Long.BYTES;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+    private final long ttlMillis;
+
+    /**
+     * @param secret ключ подписи в Base64 (пусто — случайный ключ на время работы приложения)
+     * @param ttl    срок действия токена
+     */
+    public GuestTokenService(@Value("${security.guest-token.secret:}") String secret,
+                             @Value("${cart.guest.ttl:7d}") Duration ttl) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = Base64.getDecoder().decode(secret);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /**
+     * Выпускает токен для нового гостя.
+     *
+     * @return ID гостя и токен
+     */
+    public GuestToken issue() {
+        return issue(UUID.randomUUID(), System.currentTimeMillis());
+    }
+
+    /**
+     * Проверяет подпись и срок действия токена.
+     *
+     * @param token токен гостя
+     * @return ID гостя или пустой Optional, если токен невалиден или истёк
+     */
+    public Optional<UUID> verify(String token) {
+        return verify(token, System.currentTimeMillis());
+    }
+
+    GuestToken issue(UUID guestId, long nowMillis) {
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+                .putLong(guestId.getMostSignificantBits())
+                .putLong(guestId.getLeastSignificantBits())
+                .putLong(nowMillis + ttlMillis)
+                .array();
+        String token = ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+        return new GuestToken(guestId, token);
+    }
+
+    Optional<UUID> verify(String token, long nowMillis) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (payload.length != PAYLOAD_BYTES || !MessageDigest.isEqual(sign(payload), signature)) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        UUID guestId = new UUID(buffer.getLong(), buffer.getLong());
+        if (buffer.getLong() <= nowMillis) {
+            return Optional.empty();
+        }
+        return Optional.of(guestId);
+    }
+
+    private byte[] sign(byte[] payload) {
+        return mac.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * Выпущенный токен гостя.
+     *
+     * @param guestId ID гостя
+     * @param token   подписанный токен для заголовка X-Guest-Token
+     */
+    public record GuestToken(UUID guestId, String token) {}
+}
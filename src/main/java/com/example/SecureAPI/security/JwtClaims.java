@@ -0,0 +1,25 @@
+package com.example.SecureAPI.security;
+
+/**
+ * JwtClaims — неизменяемый набор данных, извлечённых из уже проверенного JWT-токена.
+ *
+ * Объект создаётся один раз при проверке подписи и дальше переиспользуется
+ * (в том числе из кэша проверенных токенов), поэтому повторно разбирать токен не нужно.
+ *
+ * @param userId          ID пользователя (subject токена)
+ * @param role            роль пользователя (ADMIN, EMPLOYEE, CLIENT)
+ * @param tokenId         уникальный ID токена (claim jti); null для старых токенов без jti
+ * @param expiresAtMillis момент истечения токена в миллисекундах (epoch)
+ */
+public record JwtClaims(Long userId, String role, String tokenId, long expiresAtMillis) {
+
+    /**
+     * Проверяет, истёк ли токен к указанному моменту времени.
+     *
+     * @param nowMillis текущее время в миллисекундах
+     * @return true, если срок действия токена закончился
+     */
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+}
@@ -4,11 +4,9 @@ import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import java.io.IOException;
-import java.util.List;
 
 /**
  * JwtFilter — это фильтр Spring Security, который отвечает за обработку JWT-токенов в каждом запросе.
@@ -24,13 +22,16 @@ public class JwtFilter implements Filter {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     /**
      * Метод doFilter выполняется для каждого HTTP-запроса приложения.
      *
      * Логика:
      * 1. Проверяем URI запроса — если он начинается с "/auth/", пропускаем фильтр (не требуем токен).
      * 2. Извлекаем токен из заголовка "Authorization".
-     * 3. Если токен валиден, извлекаем из него userId и роль.
+     * 3. Проверяем токен одним вызовом verify() и получаем userId и роль; отозванные токены отклоняем.
      * 4. Создаем объект UsernamePasswordAuthenticationToken — это Spring Security-объект аутентификации.
      * 5. Устанавливаем аутентификацию в SecurityContextHolder.
      * 6. Добавляем userId в атрибуты запроса, чтобы использовать его в логах через MDC.
@@ -67,21 +68,26 @@ public class JwtFilter implements Filter {
         // Извлекаем токен из заголовка Authorization
         String token = httpRequest.getHeader("Authorization");
 
-        // Проверяем, есть ли токен и валиден ли он
-        if (token != null && jwtUtils.validateToken(token)) {
-            // Извлекаем ID пользователя из токена
-            String userId = jwtUtils.extractUserId(token);
+        // Проверяем токен один раз: подпись, срок действия, userId и роль извлекаются за один разбор
+        // (или берутся из кэша проверенных токенов)
+        JwtClaims claims = token != null ? jwtUtils.verify(token).orElse(null) : null;
+
+        // Отозванный токен (logout) считается невалидным. Bloom-фильтр отвечает без обращения к БД,
+        // точная проверка по таблице выполняется только при возможном попадании.
+        if (claims != null && tokenRevocationService.isRevoked(claims)) {
+            claims = null;
+        }
 
-            // Извлекаем роль пользователя из токена
-            String role = jwtUtils.extractRole(token);
+        if (claims != null) {
+            // Principal строится из проверенного токена, без обращения к базе данных
+            AuthenticatedUser user = AuthenticatedUser.from(claims);
 
             // Создаем объект аутентификации Spring Security:
-            // - principal — идентификатор пользователя (userId)
+            // - principal — текущий пользователь (AuthenticatedUser: userId и роль)
             // - credentials — обычно пароль, но здесь не используется
-            // - authorities — список прав доступа, ROLE_ADMIN / ROLE_CLIENT и т.д.
+            // - authorities — заранее созданный список прав для роли (ROLE_ADMIN / ROLE_CLIENT и т.д.)
             UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                    userId, null,
-                    List.of(new SimpleGrantedAuthority("ROLE_" + role))
+                    user, null, user.authorities()
             );
 
             // Устанавливаем аутентификацию в контекст Spring Security.
@@ -89,7 +95,7 @@ public class JwtFilter implements Filter {
             SecurityContextHolder.getContext().setAuthentication(authentication);
 
             // Записываем userId в атрибуты запроса, чтобы использовать его в логах (через MDC).
-            request.setAttribute("userId", userId);
+            request.setAttribute("userId", user.getName());
         }
 
         // После обработки токена (или его отсутствия) передаем запрос дальше по цепочке фильтров.
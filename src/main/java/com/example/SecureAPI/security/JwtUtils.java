@@ -1,22 +1,28 @@
 package com.example.SecureAPI.security;
 
 import io.jsonwebtoken.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import java.security.Key;
 import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
 
 /**
  * JwtUtils — это вспомогательный класс для работы с JWT-токенами.
  *
  * Он предоставляет методы:
  * - Генерация токена
+ * - Проверка токена с извлечением всех данных за один разбор ({@link #verify(String)})
  * - Извлечение данных из токена (userId, роль)
  * - Валидация токена
  *
  * Все операции производятся с использованием секретного ключа и алгоритма HS512.
+ * Парсер создаётся один раз (он потокобезопасен), а уже проверенные токены
+ * хранятся в ограниченном кэше до момента своего истечения.
  */
 @Component
 public class JwtUtils {
@@ -44,11 +50,31 @@ public class JwtUtils {
      */
     private final long EXPIRATION = 86400000; // 24 часа
 
+    /**
+     * Парсер токенов. Собирается один раз: JwtParser неизменяем и потокобезопасен.
+     */
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(SIGNING_KEY)
+            .build();
+
+    /**
+     * Кэш уже проверенных токенов (ключ — SHA-256 токена).
+     */
+    private final VerifiedTokenCache verifiedTokens;
+
+    /**
+     * @param cacheMaxSize максимальное количество проверенных токенов в кэше (0 — без кэша)
+     */
+    public JwtUtils(@Value("${security.jwt.cache.max-size:10000}") int cacheMaxSize) {
+        this.verifiedTokens = new VerifiedTokenCache(cacheMaxSize);
+    }
+
     /**
      * Генерирует JWT-токен для пользователя.
      *
      * Токен содержит:
      * - subject (ID пользователя)
+     * - jti (уникальный ID токена, нужен для отзыва токена)
      * - claim "role" (роль пользователя)
      * - время истечения
      * - подпись с использованием HS512
@@ -60,12 +86,46 @@ public class JwtUtils {
     public String generateToken(Long userId, String role) {
         return Jwts.builder()
                 .setSubject(userId.toString())
+                .setId(UUID.randomUUID().toString())
                 .claim("role", role)
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION))
                 .signWith(SIGNING_KEY, SignatureAlgorithm.HS512)
                 .compact();
     }
 
+    /**
+     * Проверяет токен и возвращает все нужные данные за один разбор.
+     *
+     * Сначала токен ищется в кэше проверенных токенов: при попадании подпись
+     * повторно не проверяется. Иначе токен разбирается, подпись HS512 проверяется,
+     * а результат кладётся в кэш до момента истечения токена.
+     *
+     * @param token JWT-токен
+     * @return проверенные данные токена или пустой Optional, если токен невалиден
+     */
+    public Optional<JwtClaims> verify(String token) {
+        long now = System.currentTimeMillis();
+        JwtClaims cached = verifiedTokens.get(token, now);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        try {
+            Claims body = parseClaims(token);
+            Date expiration = body.getExpiration();
+            JwtClaims claims = new JwtClaims(
+                    Long.valueOf(body.getSubject()),
+                    body.get("role", String.class),
+                    body.getId(),
+                    expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+            if (expiration != null) {
+                verifiedTokens.put(token, claims, now);
+            }
+            return Optional.of(claims);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
     /**
      * Извлекает ID пользователя из JWT-токена.
      *
@@ -73,12 +133,7 @@ public class JwtUtils {
      * @return ID пользователя
      */
     public String extractUserId(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SIGNING_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
 
     /**
@@ -88,12 +143,7 @@ public class JwtUtils {
      * @return роль пользователя
      */
     public String extractRole(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SIGNING_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("role", String.class);
+        return parseClaims(token).get("role", String.class);
     }
 
     /**
@@ -104,10 +154,21 @@ public class JwtUtils {
      */
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(SIGNING_KEY).build().parseClaimsJws(token);
+            parseClaims(token);
             return true;
-        } catch (JwtException e) {
+        } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Полностью разбирает токен и проверяет его подпись (без кэша).
+     *
+     * @param token JWT-токен
+     * @return тело токена
+     * @throws JwtException если токен невалиден или истёк
+     */
+    Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.SecureAPI.security;
+
+import com.example.SecureAPI.exception.PasswordHashingOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * PasswordHasher — выполняет BCrypt-хэширование и проверку паролей в отдельном пуле потоков.
+ *
+ * BCrypt специально медленный, поэтому выполнять его в потоках Tomcat нельзя:
+ * всплеск логинов занял бы все потоки и остановил бы запросы к каталогу и корзине.
+ * Пул ограничен числом ядер, очередь — настраиваемым размером. Если очередь заполнена,
+ * задача сразу отклоняется с {@link PasswordHashingOverloadedException} (HTTP 503).
+ *
+ * Метрики:
+ * - auth.password.hashing.queue — количество задач в очереди
+ * - auth.password.hashing.active — количество выполняющихся задач
+ * - auth.password.hashing.latency — время от постановки в очередь до результата (тег operation)
+ * - auth.password.hashing.rejected — количество отклонённых задач
+ */
+@Component
+public class PasswordHasher {
+
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    /**
+     * @param passwordEncoder BCrypt-кодировщик с настроенной стоимостью
+     * @param meterRegistry   реестр метрик
+     * @param strength        стоимость BCrypt (log2 числа раундов)
+     * @param threads         число потоков (0 — по числу ядер)
+     * @param queueCapacity   максимальное число задач в очереди
+     */
+    public PasswordHasher(BCryptPasswordEncoder passwordEncoder,
+                          MeterRegistry meterRegistry,
+                          @Value("${security.bcrypt.strength:10}") int strength,
+                          @Value("${security.bcrypt.executor.threads:0}") int threads,
+                          @Value("${security.bcrypt.executor.queue-capacity:100}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        this.strength = strength;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.password.hashing.queue", executor, e -> e.getQueue().size())
+                .description("Password hashing tasks waiting in the queue")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing tasks currently running")
+                .register(meterRegistry);
+        this.encodeTimer = Timer.builder("auth.password.hashing.latency")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("auth.password.hashing.latency")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("auth.password.hashing.rejected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Асинхронно хэширует пароль.
+     *
+     * @param rawPassword пароль в открытом виде
+     * @return future с BCrypt-хэшем
+     * @throws PasswordHashingOverloadedException если очередь хэширования заполнена
+     */
+    public CompletableFuture<String> encode(CharSequence rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword), encodeTimer);
+    }
+
+    /**
+     * Асинхронно сравнивает пароль с сохранённым хэшем.
+     *
+     * @param rawPassword     пароль в открытом виде
+     * @param encodedPassword сохранённый BCrypt-хэш
+     * @return future с результатом сравнения
+     * @throws PasswordHashingOverloadedException если очередь хэширования заполнена
+     */
+    public CompletableFuture<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword), matchesTimer);
+    }
+
+    /**
+     * Проверяет, отличается ли стоимость сохранённого хэша от настроенной.
+     * Такой хэш нужно пересчитать после успешного входа.
+     *
+     * @param encodedPassword сохранённый BCrypt-хэш вида $2a$10$...
+     * @return true, если хэш нужно пересчитать
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return false;
+        }
+        int costStart = encodedPassword.indexOf('$', 1) + 1;
+        try {
+            return Integer.parseInt(encodedPassword.substring(costStart, costStart + 2)) != strength;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task, Timer timer) {
+        long startedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(task, executor)
+                    .whenComplete((result, error) -> timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingOverloadedException("Password hashing queue is full, try again later");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.SecureAPI.security;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimitFilter — ограничивает частоту запросов каждого клиента (token bucket).
+ *
+ * Стоит в цепочке Spring Security сразу после JwtFilter, поэтому аутентифицированные
+ * клиенты различаются по ID пользователя, а анонимные — по IP-адресу.
+ * Лимиты задаются по шаблонам URL (см. {@link RateLimitProperties}).
+ * При превышении лимита возвращается 429 Too Many Requests с заголовком Retry-After.
+ *
+ * За обратным прокси IP клиента берётся из X-Forwarded-For только при
+ * включённом server.forward-headers-strategy.
+ */
+@Component
+public class RateLimitFilter implements Filter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final boolean enabled;
+    private final long idleNanos;
+    private final List<RoutePolicy> policies;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public RateLimitFilter(RateLimitProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.idleNanos = properties.getIdleTimeout().toNanos();
+        this.policies = properties.getRoutes().stream()
+                .map(route -> new RoutePolicy(route.getPattern(),
+                        new RateLimiter(route.getCapacity(), route.getRefillPerSecond(), properties.getStripes())))
+                .toList();
+    }
+
+    /**
+     * Находит первое правило для пути запроса и списывает токен из ведра клиента.
+     *
+     * @param request  - входящий запрос
+     * @param response - исходящий ответ
+     * @param chain    - цепочка фильтров Spring Security
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        // Асинхронные и ERROR-диспетчеризации — продолжение уже учтённого запроса
+        if (!enabled || request.getDispatcherType() != DispatcherType.REQUEST) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        RateLimiter limiter = findLimiter(httpRequest.getRequestURI());
+        if (limiter == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = limiter.tryAcquire(clientKey(httpRequest), System.nanoTime());
+        if (waitNanos > 0) {
+            reject((HttpServletResponse) response, waitNanos);
+            return;
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Периодически удаляет записи клиентов, простаивающих дольше idle-timeout.
+     */
+    @Scheduled(fixedDelayString = "${security.rate-limit.sweep-interval-ms:60000}")
+    public void evictIdleClients() {
+        long now = System.nanoTime();
+        int removed = 0;
+        for (RoutePolicy policy : policies) {
+            removed += policy.limiter().evictIdle(now, idleNanos);
+        }
+        if (removed > 0) {
+            logger.debug("Rate limiter evicted {} idle clients", removed);
+        }
+    }
+
+    private RateLimiter findLimiter(String path) {
+        for (RoutePolicy policy : policies) {
+            if (pathMatcher.match(policy.pattern(), path)) {
+                return policy.limiter();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ключ клиента: ID пользователя (Long) для запросов с JWT, иначе IP-адрес (String).
+     * Типы ключей разные, поэтому пользователь и IP никогда не попадут в одно ведро.
+     */
+    private Object clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user.userId();
+        }
+        return request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1L, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many requests\"}");
+    }
+
+    /**
+     * Правило: шаблон URL и набор вёдер клиентов для него.
+     */
+    private record RoutePolicy(String pattern, RateLimiter limiter) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.SecureAPI.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки ограничения частоты запросов (security.rate-limit.*).
+ *
+ * Для каждого шаблона URL задаётся свой token bucket: ёмкость (сколько запросов
+ * можно сделать подряд) и скорость пополнения (запросов в секунду).
+ * Применяется первое правило, шаблон которого совпал с путём запроса; запросы,
+ * не подходящие ни под одно правило, не ограничиваются.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "security.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * Включено ли ограничение частоты запросов.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Через сколько времени простоя (полное ведро) запись клиента удаляется из памяти.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    /**
+     * Количество сегментов (stripes) карты клиентов для каждого правила.
+     */
+    private int stripes = 16;
+
+    /**
+     * Правила по шаблонам URL, в порядке приоритета.
+     */
+    private List<Route> routes = new ArrayList<>();
+
+    /**
+     * Правило ограничения для одного шаблона URL.
+     */
+    @Data
+    public static class Route {
+
+        /**
+         * Шаблон пути в стиле Ant, например /auth/**.
+         */
+        private String pattern;
+
+        /**
+         * Ёмкость ведра — максимальное число запросов подряд.
+         */
+        private int capacity;
+
+        /**
+         * Скорость пополнения ведра, запросов в секунду.
+         */
+        private double refillPerSecond;
+    }
+}
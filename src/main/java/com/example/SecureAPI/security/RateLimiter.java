@@ -0,0 +1,115 @@
+package com.example.SecureAPI.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RateLimiter — набор token bucket'ов одного правила, по одному на клиента.
+ *
+ * Ведро хранит единственное число — «теоретическое время прибытия» следующего запроса
+ * (алгоритм GCRA, эквивалентный token bucket), и обновляется через CAS без блокировок.
+ * Клиенты распределены по нескольким ConcurrentHashMap (stripes), чтобы очистка
+ * простаивающих записей проходила по сегментам и не мешала основному трафику.
+ */
+class RateLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final ConcurrentHashMap<Object, Bucket>[] stripes;
+
+    /**
+     * @param capacity        ёмкость ведра (запросов подряд)
+     * @param refillPerSecond скорость пополнения (запросов в секунду)
+     * @param stripeCount     количество сегментов карты клиентов
+     */
+    @SuppressWarnings("unchecked")
+    RateLimiter(int capacity, double refillPerSecond, int stripeCount) {
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate limit capacity and refill rate must be positive");
+        }
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond));
+        this.burstNanos = intervalNanos * capacity;
+        this.stripes = new ConcurrentHashMap[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Пытается взять один токен из ведра клиента.
+     *
+     * @param clientKey ключ клиента (ID пользователя или IP-адрес)
+     * @param nowNanos  текущее время, System.nanoTime()
+     * @return 0, если запрос разрешён, иначе сколько наносекунд ждать до следующей попытки
+     */
+    long tryAcquire(Object clientKey, long nowNanos) {
+        ConcurrentHashMap<Object, Bucket> stripe = stripeFor(clientKey);
+        Bucket bucket = stripe.get(clientKey);
+        if (bucket == null) {
+            bucket = stripe.computeIfAbsent(clientKey, key -> new Bucket(nowNanos));
+        }
+        return bucket.tryAcquire(nowNanos, intervalNanos, burstNanos);
+    }
+
+    /**
+     * Удаляет вёдра клиентов, которые не делали запросов дольше idleNanos
+     * (такие вёдра уже полностью пополнены, их состояние можно не хранить).
+     *
+     * @param nowNanos  текущее время, System.nanoTime()
+     * @param idleNanos время простоя
+     * @return количество удалённых записей
+     */
+    int evictIdle(long nowNanos, long idleNanos) {
+        int removed = 0;
+        for (ConcurrentHashMap<Object, Bucket> stripe : stripes) {
+            int before = stripe.size();
+            stripe.values().removeIf(bucket -> nowNanos - bucket.theoreticalArrival.get() > idleNanos);
+            removed += before - stripe.size();
+        }
+        return removed;
+    }
+
+    /**
+     * Общее количество отслеживаемых клиентов.
+     */
+    int size() {
+        int size = 0;
+        for (ConcurrentHashMap<Object, Bucket> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private ConcurrentHashMap<Object, Bucket> stripeFor(Object clientKey) {
+        int hash = clientKey.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+
+    /**
+     * Ведро одного клиента: теоретическое время прибытия следующего запроса (TAT).
+     */
+    private static final class Bucket {
+
+        private final AtomicLong theoreticalArrival;
+
+        Bucket(long nowNanos) {
+            this.theoreticalArrival = new AtomicLong(nowNanos);
+        }
+
+        long tryAcquire(long nowNanos, long intervalNanos, long burstNanos) {
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long newTat = Math.max(tat, nowNanos) + intervalNanos;
+                long overflow = newTat - nowNanos - burstNanos;
+                if (overflow > 0) {
+                    return overflow;
+                }
+                if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.SecureAPI.security;
+
+import com.example.SecureAPI.model.RevokedToken;
+import com.example.SecureAPI.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * TokenRevocationService — отзыв JWT-токенов до истечения их срока (выход из системы, смена прав).
+ *
+ * ID отозванных токенов (jti) хранятся в таблице revoked_tokens и дублируются
+ * в Bloom-фильтре в памяти. JwtFilter сначала спрашивает фильтр: если токена в нём нет
+ * (а это почти всегда так), база данных не запрашивается. Только при возможном
+ * попадании выполняется точная проверка по таблице.
+ *
+ * Фильтр строится заново при запуске и при периодической очистке: истёкшие записи
+ * удаляются из таблицы, поэтому фильтр остаётся маленьким. Пересборка также подтягивает
+ * токены, отозванные на других экземплярах приложения: такой отзыв этот экземпляр видит
+ * только после своей следующей очистки (pruneExpired), то есть с задержкой до
+ * security.jwt.revocation.prune-interval-ms (по умолчанию 5 минут). До тех пор токен,
+ * отозванный на другом экземпляре, здесь ещё принимается.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final int expectedRevocations;
+    private final double falsePositiveProbability;
+
+    private volatile BloomFilter revokedTokenIds;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${security.jwt.revocation.expected-revocations:100000}") int expectedRevocations,
+                                  @Value("${security.jwt.revocation.false-positive-probability:0.001}") double falsePositiveProbability) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.revokedTokenIds = new BloomFilter(expectedRevocations, falsePositiveProbability);
+    }
+
+    /**
+     * Строит Bloom-фильтр из таблицы при запуске, до приёма запросов.
+     */
+    @PostConstruct
+    void init() {
+        rebuild();
+    }
+
+    /**
+     * Отзывает токен: сохраняет его jti в таблицу и добавляет в Bloom-фильтр.
+     *
+     * @param claims данные проверенного токена
+     * @return false, если токен выпущен без jti и не может быть отозван
+     */
+    public boolean revoke(JwtClaims claims) {
+        if (claims.tokenId() == null) {
+            return false;
+        }
+        revokedTokenRepository.save(new RevokedToken(claims.tokenId(), Instant.ofEpochMilli(claims.expiresAtMillis())));
+        // Под той же блокировкой, что и пересборка: иначе jti мог бы попасть в старый фильтр уже после загрузки нового
+        synchronized (this) {
+            revokedTokenIds.add(claims.tokenId());
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, отозван ли токен.
+     *
+     * @param claims данные проверенного токена
+     * @return true, если токен отозван
+     */
+    public boolean isRevoked(JwtClaims claims) {
+        String tokenId = claims.tokenId();
+        if (tokenId == null || !revokedTokenIds.mightContain(tokenId)) {
+            return false;
+        }
+        return revokedTokenRepository.existsById(tokenId);
+    }
+
+    /**
+     * Удаляет истёкшие записи и пересобирает Bloom-фильтр.
+     */
+    @Scheduled(fixedDelayString = "${security.jwt.revocation.prune-interval-ms:300000}",
+            initialDelayString = "${security.jwt.revocation.prune-interval-ms:300000}")
+    public void pruneExpired() {
+        int removed = revokedTokenRepository.deleteExpired(Instant.now());
+        if (removed > 0) {
+            logger.info("Pruned {} expired revoked tokens", removed);
+        }
+        rebuild();
+    }
+
+    private synchronized void rebuild() {
+        List<String> active = revokedTokenRepository.findActiveTokenIds(Instant.now());
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, active.size() * 2), falsePositiveProbability);
+        active.forEach(rebuilt::add);
+        revokedTokenIds = rebuilt;
+    }
+}
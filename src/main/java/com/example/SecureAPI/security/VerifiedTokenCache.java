@@ -0,0 +1,111 @@
+package com.example.SecureAPI.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * VerifiedTokenCache — ограниченный по размеру кэш уже проверенных JWT-токенов.
+ *
+ * Ключом служит SHA-256 дайджест токена (сам токен в памяти не хранится),
+ * значением — неизменяемый {@link JwtClaims}. Запись считается недействительной,
+ * как только наступает момент {@code exp} токена, и удаляется при следующем обращении
+ * или при очистке кэша.
+ *
+ * Повторный запрос с тем же токеном обходится одним SHA-256 вместо разбора токена
+ * и проверки подписи HS512.
+ */
+class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final int maxSize;
+    private final Map<TokenDigest, JwtClaims> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSize максимальное количество токенов в кэше (0 — кэш отключён)
+     */
+    VerifiedTokenCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+    }
+
+    /**
+     * Возвращает проверенные данные токена из кэша.
+     *
+     * @param token     JWT-токен
+     * @param nowMillis текущее время в миллисекундах
+     * @return данные токена или null, если токена нет в кэше или он истёк
+     */
+    JwtClaims get(String token, long nowMillis) {
+        if (maxSize == 0) {
+            return null;
+        }
+        TokenDigest key = TokenDigest.of(token);
+        JwtClaims claims = entries.get(key);
+        if (claims != null && claims.isExpired(nowMillis)) {
+            entries.remove(key, claims);
+            return null;
+        }
+        return claims;
+    }
+
+    /**
+     * Кладёт проверенные данные токена в кэш.
+     * Если кэш заполнен, сначала удаляются истёкшие записи, а при необходимости — произвольные.
+     *
+     * @param token     JWT-токен
+     * @param claims    данные токена после проверки подписи
+     * @param nowMillis текущее время в миллисекундах
+     */
+    void put(String token, JwtClaims claims, long nowMillis) {
+        if (maxSize == 0 || claims.isExpired(nowMillis)) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict(nowMillis);
+        }
+        entries.put(TokenDigest.of(token), claims);
+    }
+
+    /**
+     * Текущее количество записей в кэше.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Удаляет истёкшие записи; если этого недостаточно, освобождает ~10% кэша.
+     */
+    private void evict(long nowMillis) {
+        entries.values().removeIf(claims -> claims.isExpired(nowMillis));
+        int target = maxSize - Math.max(1, maxSize / 10);
+        Iterator<TokenDigest> iterator = entries.keySet().iterator();
+        while (entries.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * SHA-256 дайджест токена, упакованный в четыре long.
+     */
+    private record TokenDigest(long a, long b, long c, long d) {
+
+        static TokenDigest of(String token) {
+            MessageDigest digest = SHA_256.get();
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+            return new TokenDigest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.CheckoutStatus;
+import com.example.SecureAPI.dto.CheckoutStatusDTO;
+import com.example.SecureAPI.dto.OrderDTO;
+import com.example.SecureAPI.exception.CheckoutQueueFullException;
+import com.example.SecureAPI.exception.CheckoutRequestNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * AsyncCheckoutService — асинхронное оформление заказов с групповой фиксацией.
+ *
+ * Запрос на оформление ставится в ограниченную очередь, клиент сразу получает ID запроса
+ * (HTTP 202) и узнаёт результат по нему. Если очередь заполнена, запрос отклоняется
+ * с {@link CheckoutQueueFullException} (HTTP 503).
+ *
+ * Рабочий поток забирает из очереди до max-batch запросов, подождав не дольше batch-wait,
+ * и оформляет их в одной транзакции — один COMMIT (и одна запись журнала на диск) на пачку
+ * вместо одного на заказ. Каждый заказ оформляется в своей точке сохранения: ошибка одного
+ * заказа (пустая корзина, нехватка остатка) откатывает только его. Результаты отдаются клиентам
+ * только после фиксации пачки; если не удалась сама фиксация, запросы пачки оформляются по одному.
+ *
+ * Конфликт версий корзины внутри пачки не повторяется на месте: пауза перед повтором
+ * ({@link ConflictRetryPolicy}) держала бы заблокированными строки продуктов, уже списанных
+ * другими заказами пачки. Такой заказ откатывается к своей точке сохранения и после фиксации
+ * пачки оформляется отдельной транзакцией с обычными повторами.
+ *
+ * Пачка держит строки списанных продуктов заблокированными до своей фиксации, поэтому
+ * по умолчанию поток один: пачки разных потоков с общими продуктами ждали бы друг друга.
+ *
+ * С Idempotency-Key ID запроса — хэш владельца и ключа: повтор возвращает тот же запрос,
+ * а ключ записывается в транзакции заказа, как и при синхронном оформлении.
+ *
+ * Не совместим с write-behind корзин (cart.write-behind.enabled): заказ собирается по данным
+ * базы, а рабочий поток не видит несохранённых изменений корзины.
+ *
+ * Метрики:
+ * - checkout.async.queue — запросов в очереди
+ * - checkout.async.batch.size — размер зафиксированных пачек
+ * - checkout.async.latency — время от постановки в очередь до результата
+ * - checkout.async.rejected — отклонённых запросов
+ */
+@Service
+@ConditionalOnProperty(name = "cart.checkout.async.enabled", havingValue = "true")
+public class AsyncCheckoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncCheckoutService.class);
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final OrderService orderService;
+    private final IdempotencyService idempotency;
+    private final ConflictRetryPolicy conflictRetry;
+    private final TransactionTemplate batchTransaction;
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<CheckoutRequest> queue;
+    private final Map<String, CheckoutRequest> requests = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final int workerCount;
+    private final int maxBatch;
+    private final long batchWaitNanos;
+    private final long resultTtlMillis;
+    private final Duration shutdownTimeout;
+    private final DistributionSummary batchSize;
+    private final Timer latency;
+    private final Counter rejected;
+    private volatile boolean running = true;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param queueCapacity  максимальное число запросов в очереди
+     * @param workers        число рабочих потоков
+     * @param maxBatch       максимальное число заказов в одной транзакции
+     * @param batchWait      сколько ждать запросов для неполной пачки
+     * @param resultTtl      сколько хранить результат после завершения
+     * @param shutdownTimeout сколько ждать обработки очереди при остановке
+     */
+    public AsyncCheckoutService(OrderService orderService,
+                                IdempotencyService idempotency,
+                                ConflictRetryPolicy conflictRetry,
+                                PlatformTransactionManager transactionManager,
+                                JdbcTemplate jdbcTemplate,
+                                ObjectProvider<CartWriteBehindStore> writeBehind,
+                                MeterRegistry meterRegistry,
+                                @Value("${cart.checkout.async.queue-capacity:1000}") int queueCapacity,
+                                @Value("${cart.checkout.async.workers:1}") int workers,
+                                @Value("${cart.checkout.async.max-batch:50}") int maxBatch,
+                                @Value("${cart.checkout.async.batch-wait:5ms}") Duration batchWait,
+                                @Value("${cart.checkout.async.result-ttl:10m}") Duration resultTtl,
+                                @Value("${cart.checkout.async.shutdown-timeout:10s}") Duration shutdownTimeout) {
+        if (writeBehind.getIfAvailable() != null) {
+            throw new IllegalStateException("cart.checkout.async.enabled cannot be combined with cart.write-behind.enabled");
+        }
+        this.orderService = orderService;
+        this.idempotency = idempotency;
+        this.conflictRetry = conflictRetry;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.workerCount = Math.max(1, workers);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.batchWaitNanos = batchWait.toNanos();
+        this.resultTtlMillis = resultTtl.toMillis();
+        this.shutdownTimeout = shutdownTimeout;
+
+        Gauge.builder("checkout.async.queue", queue, BlockingQueue::size)
+                .description("Checkout requests waiting in the queue")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("checkout.async.batch.size")
+                .description("Orders committed in one transaction")
+                .register(meterRegistry);
+        this.latency = Timer.builder("checkout.async.latency")
+                .description("Time from enqueueing a checkout to its result")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("checkout.async.rejected")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        for (int i = 1; i <= workerCount; i++) {
+            Thread worker = new Thread(this::work, "checkout-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Ставит оформление заказа из корзины пользователя в очередь.
+     *
+     * @param userId         ID пользователя
+     * @param idempotencyKey значение заголовка Idempotency-Key (null — без ключа)
+     * @return состояние запроса (для повтора по ключу — исходного запроса)
+     * @throws CheckoutQueueFullException если очередь заполнена
+     */
+    public CheckoutStatusDTO submit(Long userId, String idempotencyKey) {
+        IdempotencyService.Claim claim = idempotency.claim("user:" + userId, idempotencyKey);
+        String requestId = claim != null ? claim.keyHash() : UUID.randomUUID().toString();
+        CheckoutRequest existing = requests.get(requestId);
+        if (existing != null) {
+            return existing.status();
+        }
+        CheckoutRequest request = new CheckoutRequest(requestId, userId, claim);
+        if (claim != null) {
+            // Заказ по ключу уже создан (до перезапуска или синхронным оформлением)
+            Optional<OrderDTO> order = idempotency.findOrder(claim);
+            if (order.isPresent()) {
+                request.result.complete(order.get());
+                request.completedAtMillis = System.currentTimeMillis();
+                CheckoutRequest raced = requests.putIfAbsent(requestId, request);
+                return (raced != null ? raced : request).status();
+            }
+        }
+        CheckoutRequest raced = requests.putIfAbsent(requestId, request);
+        if (raced != null) {
+            return raced.status();
+        }
+        if (!running || !queue.offer(request)) {
+            requests.remove(requestId, request);
+            rejected.increment();
+            throw new CheckoutQueueFullException("Checkout queue is full, try again later");
+        }
+        return request.status();
+    }
+
+    /**
+     * Возвращает состояние запроса; для незавершённого запроса ждёт результата не дольше wait.
+     *
+     * @param userId    ID пользователя — владельца запроса
+     * @param requestId ID запроса
+     * @param wait      сколько ждать завершения (0 — ответить сразу)
+     * @return future с состоянием запроса
+     * @throws CheckoutRequestNotFoundException если запроса нет или он чужой
+     */
+    public CompletableFuture<CheckoutStatusDTO> status(Long userId, String requestId, Duration wait) {
+        CheckoutRequest request = requests.get(requestId);
+        if (request == null || !request.userId.equals(userId)) {
+            throw new CheckoutRequestNotFoundException(requestId);
+        }
+        CheckoutStatusDTO current = request.status();
+        if (current.getStatus() != CheckoutStatus.QUEUED || wait.isZero() || wait.isNegative()) {
+            return CompletableFuture.completedFuture(current);
+        }
+        return request.result
+                .handle((order, error) -> request.status())
+                .completeOnTimeout(current, wait.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Удаляет результаты, хранящиеся дольше result-ttl.
+     */
+    @Scheduled(fixedDelayString = "${cart.checkout.async.evict-interval-ms:60000}")
+    public void evictCompleted() {
+        long expiredBefore = System.currentTimeMillis() - resultTtlMillis;
+        requests.values().removeIf(request -> request.result.isDone() && request.completedAtMillis < expiredBefore);
+    }
+
+    /**
+     * Цикл рабочего потока: собирает пачки из очереди, пока сервис не остановлен и очередь не пуста.
+     */
+    private void work() {
+        List<CheckoutRequest> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                CheckoutRequest first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Checkout batch of {} requests failed", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Добирает пачку до max-batch, ожидая новые запросы не дольше batch-wait с момента первого.
+     */
+    private void collect(List<CheckoutRequest> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + batchWaitNanos;
+        while (batch.size() < maxBatch) {
+            queue.drainTo(batch, maxBatch - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatch || remaining <= 0) {
+                return;
+            }
+            CheckoutRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Оформляет пачку в одной транзакции и после фиксации отдаёт результаты.
+     * Одиночный запрос оформляется обычной транзакцией заказа.
+     */
+    void process(List<CheckoutRequest> batch) {
+        if (batch.size() == 1) {
+            checkoutAlone(batch.get(0));
+            return;
+        }
+        List<Runnable> completions = new ArrayList<>(batch.size());
+        try {
+            batchTransaction.executeWithoutResult(status -> {
+                for (CheckoutRequest request : batch) {
+                    completions.add(checkoutInBatch(request));
+                }
+            });
+        } catch (RuntimeException e) {
+            // Например, ошибка базы внутри заказа пометила всю транзакцию rollback-only
+            logger.warn("Commit of {} checkouts failed, retrying them one by one", batch.size(), e);
+            batch.forEach(this::checkoutAlone);
+            return;
+        }
+        batchSize.record(batch.size());
+        completions.forEach(Runnable::run);
+    }
+
+    private void checkoutAlone(CheckoutRequest request) {
+        OrderDTO order;
+        try {
+            order = checkout(request, () -> conflictRetry.execute("checkout",
+                    () -> orderService.createOrderFromCart(request.userId, request.claim)));
+        } catch (RuntimeException e) {
+            complete(request, null, e);
+            return;
+        }
+        batchSize.record(1);
+        complete(request, order, null);
+    }
+
+    /**
+     * Оформляет один заказ внутри транзакции пачки, в своей точке сохранения.
+     * После конфликта версий корзины заказ оформляется заново отдельно, уже после фиксации пачки.
+     *
+     * @return действие, которое отдаёт результат клиенту (выполняется после фиксации)
+     */
+    private Runnable checkoutInBatch(CheckoutRequest request) {
+        try {
+            OrderDTO order = checkout(request, () -> inSavepoint(
+                    () -> orderService.createOrderFromCartInCurrentTransaction(request.userId, request.claim)));
+            return () -> complete(request, order, null);
+        } catch (OptimisticLockingFailureException e) {
+            return () -> checkoutAlone(request);
+        } catch (RuntimeException e) {
+            return () -> complete(request, null, e);
+        }
+    }
+
+    /**
+     * Оформляет заказ. Если ключ идемпотентности уже записан (синхронным оформлением
+     * или другим экземпляром приложения), возвращает его заказ.
+     */
+    private OrderDTO checkout(CheckoutRequest request, Supplier<OrderDTO> action) {
+        try {
+            return action.get();
+        } catch (DataIntegrityViolationException e) {
+            if (request.claim == null) {
+                throw e;
+            }
+            return idempotency.findOrder(request.claim).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Выполняет действие в точке сохранения JDBC-соединения транзакции пачки: при ошибке
+     * откатывается только оно. Контекст JPA очищается, чтобы не копить сущности всей пачки
+     * и не оставлять в нём откаченные изменения.
+     */
+    private <T> T inSavepoint(Supplier<T> action) {
+        Savepoint savepoint = jdbcTemplate.execute((ConnectionCallback<Savepoint>) Connection::setSavepoint);
+        try {
+            T result = action.get();
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                connection.releaseSavepoint(savepoint);
+                return null;
+            });
+            return result;
+        } catch (RuntimeException e) {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                connection.rollback(savepoint);
+                return null;
+            });
+            throw e;
+        } finally {
+            entityManager.clear();
+        }
+    }
+
+    private void complete(CheckoutRequest request, OrderDTO order, RuntimeException error) {
+        request.completedAtMillis = System.currentTimeMillis();
+        latency.record(System.nanoTime() - request.submittedAtNanos, TimeUnit.NANOSECONDS);
+        if (error != null) {
+            logger.debug("Checkout {} failed", request.id, error);
+            request.result.completeExceptionally(error);
+        } else {
+            request.result.complete(order);
+        }
+    }
+
+    /**
+     * Останавливает приём запросов и ждёт, пока рабочие потоки оформят уже принятые.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+        if (!queue.isEmpty()) {
+            logger.warn("{} checkout requests were not processed before shutdown", queue.size());
+        }
+    }
+
+    /**
+     * Запрос на оформление: результат появляется после фиксации транзакции пачки.
+     */
+    static final class CheckoutRequest {
+        private final String id;
+        private final Long userId;
+        private final IdempotencyService.Claim claim;
+        private final long submittedAtNanos = System.nanoTime();
+        private final CompletableFuture<OrderDTO> result = new CompletableFuture<>();
+        private volatile long completedAtMillis;
+
+        CheckoutRequest(String id, Long userId, IdempotencyService.Claim claim) {
+            this.id = id;
+            this.userId = userId;
+            this.claim = claim;
+        }
+
+        CheckoutStatusDTO status() {
+            if (!result.isDone()) {
+                return new CheckoutStatusDTO(id, CheckoutStatus.QUEUED, null, null);
+            }
+            try {
+                return new CheckoutStatusDTO(id, CheckoutStatus.COMPLETED, result.join(), null);
+            } catch (CompletionException e) {
+                return new CheckoutStatusDTO(id, CheckoutStatus.FAILED, null, describe(e.getCause()));
+            }
+        }
+
+        /**
+         * Клиенту отдаётся сообщение только прикладных ошибок (с HTTP-статусом),
+         * а не внутренних ошибок базы.
+         */
+        private static String describe(Throwable error) {
+            if (error != null && AnnotatedElementUtils.hasAnnotation(error.getClass(), ResponseStatus.class)) {
+                return error.getMessage();
+            }
+            return "Checkout failed";
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.SecureAPI.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * CartJournal — журнал изменений корзин на локальном диске (только дописывание).
+ *
+ * Журнал состоит из сегментов segment-&lt;номер&gt;.log; запись идёт в последний. Каждая запись —
+ * строка с итоговым состоянием позиции: «userId productId quantity» (0 — позиция удалена)
+ * или «userId *» (корзина очищена). Поскольку записываются значения, а не приращения,
+ * повторное применение записи ничего не меняет — это позволяет хранить сегменты, пока их
+ * содержимое не записано в базу, и проигрывать их после сбоя в любом количестве.
+ *
+ * Недописанная при сбое последняя строка (без перевода строки) при чтении пропускается.
+ */
+class CartJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartJournal.class);
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    private FileChannel active;
+    private Path activePath;
+    private long nextSegment;
+
+    /**
+     * @param directory каталог сегментов (создаётся при необходимости)
+     * @param fsync     сбрасывать ли каждую запись на диск (иначе — в кэш ОС)
+     */
+    CartJournal(Path directory, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        List<Path> existing = segments();
+        nextSegment = existing.isEmpty() ? 1 : number(existing.get(existing.size() - 1)) + 1;
+        openNext();
+    }
+
+    /**
+     * Записывает изменение позиции корзины.
+     */
+    void appendItem(long userId, long productId, int quantity) {
+        append(userId + " " + productId + " " + quantity + "\n");
+    }
+
+    /**
+     * Записывает очистку корзины.
+     */
+    void appendClear(long userId) {
+        append(userId + " *\n");
+    }
+
+    private synchronized void append(String record) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record.getBytes(StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining()) {
+                active.write(buffer);
+            }
+            if (fsync) {
+                active.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cart journal write failed", e);
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает новый.
+     *
+     * @return все закрытые сегменты: их записи попадут в базу при ближайшей успешной записи
+     * корзин, помеченных изменёнными до этого момента
+     */
+    synchronized List<Path> rotate() throws IOException {
+        active.force(false);
+        active.close();
+        openNext();
+        List<Path> closed = segments();
+        closed.remove(activePath);
+        return closed;
+    }
+
+    /**
+     * Удаляет сегменты, содержимое которых уже записано в базу.
+     */
+    void delete(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    /**
+     * Читает записи всех сегментов по порядку (для восстановления после перезапуска).
+     *
+     * @param consumer обработчик записи: userId, productId (null — очистка корзины), quantity
+     * @return количество прочитанных записей
+     */
+    long replay(Consumer<Record> consumer) throws IOException {
+        long records = 0;
+        for (Path segment : segments()) {
+            String content = Files.readString(segment, StandardCharsets.US_ASCII);
+            // Строка без завершающего перевода строки не дописана (сбой во время записи)
+            int end = content.lastIndexOf('\n') + 1;
+            if (end < content.length()) {
+                logger.warn("Ignoring incomplete cart journal record at the end of {}", segment.getFileName());
+            }
+            for (String line : content.substring(0, end).split("\n")) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Record record = Record.parse(line);
+                if (record == null) {
+                    logger.warn("Skipping malformed cart journal record in {}: '{}'", segment.getFileName(), line);
+                    continue;
+                }
+                consumer.accept(record);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.force(false);
+        active.close();
+    }
+
+    private void openNext() throws IOException {
+        activePath = directory.resolve(PREFIX + String.format("%012d", nextSegment++) + SUFFIX);
+        active = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(path -> path.getFileName().toString().startsWith(PREFIX)
+                            && path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparingLong(CartJournal::number))
+                    .toList());
+        }
+    }
+
+    private static long number(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Запись журнала. productId == null означает очистку корзины.
+     */
+    record Record(long userId, Long productId, int quantity) {
+
+        static Record parse(String line) {
+            String[] parts = line.split(" ");
+            try {
+                if (parts.length == 2 && parts[1].equals("*")) {
+                    return new Record(Long.parseLong(parts[0]), null, 0);
+                }
+                if (parts.length == 3) {
+                    return new Record(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            return null;
+        }
+    }
+}
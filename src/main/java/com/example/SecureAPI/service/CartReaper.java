@@ -0,0 +1,117 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.repository.CartRepository;
+import com.example.SecureAPI.repository.CartRepositoryCustom.ReclaimedRows;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CartReaper — фоновое удаление брошенных корзин.
+ *
+ * Корзина считается брошенной, если не менялась дольше cart.reaper.ttl (по carts.updated_at).
+ * Корзины удаляются пачками по batch-size, каждая пачка — отдельная короткая транзакция,
+ * между пачками выдерживается пауза pause, чтобы очистка не забирала ресурсы базы у запросов.
+ * За один запуск удаляется не больше max-batches пачек; остаток — при следующем запуске.
+ *
+ * Метрики:
+ * - carts.reaper.reclaimed (тег table=carts|cart_items) — удалено строк
+ */
+@Component
+@ConditionalOnProperty(name = "cart.reaper.enabled", havingValue = "true", matchIfMissing = true)
+public class CartReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartReaper.class);
+
+    private final CartRepository cartRepository;
+    private final Duration ttl;
+    private final int batchSize;
+    private final long pauseNanos;
+    private final int maxBatches;
+    private final Counter reclaimedCarts;
+    private final Counter reclaimedItems;
+
+    public CartReaper(CartRepository cartRepository,
+                      MeterRegistry meterRegistry,
+                      @Value("${cart.reaper.ttl:30d}") Duration ttl,
+                      @Value("${cart.reaper.batch-size:500}") int batchSize,
+                      @Value("${cart.reaper.pause:100ms}") Duration pause,
+                      @Value("${cart.reaper.max-batches:1000}") int maxBatches) {
+        this.cartRepository = cartRepository;
+        this.ttl = ttl;
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseNanos = pause.toNanos();
+        this.maxBatches = Math.max(1, maxBatches);
+        this.reclaimedCarts = Counter.builder("carts.reaper.reclaimed").tag("table", "carts").register(meterRegistry);
+        this.reclaimedItems = Counter.builder("carts.reaper.reclaimed").tag("table", "cart_items").register(meterRegistry);
+    }
+
+    /**
+     * Плановый запуск очистки.
+     */
+    @Scheduled(fixedDelayString = "${cart.reaper.interval-ms:3600000}", initialDelayString = "${cart.reaper.initial-delay-ms:60000}")
+    public void scheduledRun() {
+        try {
+            run(Instant.now());
+        } catch (RuntimeException e) {
+            logger.warn("Abandoned cart cleanup failed", e);
+        }
+    }
+
+    /**
+     * Удаляет корзины, не менявшиеся с момента now − ttl.
+     *
+     * @param now текущее время
+     * @return всего удалено корзин и позиций за запуск
+     */
+    ReclaimedRows run(Instant now) {
+        Instant cutoff = now.minus(ttl);
+        long startedAt = System.nanoTime();
+        long carts = 0;
+        long items = 0;
+        int batches = 0;
+        while (batches < maxBatches) {
+            ReclaimedRows batch = cartRepository.deleteIdleCarts(cutoff, batchSize);
+            batches++;
+            carts += batch.carts();
+            items += batch.items();
+            reclaimedCarts.increment(batch.carts());
+            reclaimedItems.increment(batch.items());
+            if (batch.carts() < batchSize || !pause()) {
+                break;
+            }
+        }
+        if (carts > 0) {
+            logger.info("Reclaimed {} abandoned carts and {} cart items in {} batches ({} ms)",
+                    carts, items, batches, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        }
+        return new ReclaimedRows(carts, items);
+    }
+
+    /**
+     * Пауза между пачками.
+     *
+     * @return false, если поток прерван (остановка приложения) и очистку нужно прекратить
+     */
+    private boolean pause() {
+        if (pauseNanos <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(pauseNanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
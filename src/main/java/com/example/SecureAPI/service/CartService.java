@@ -2,31 +2,63 @@ package com.example.SecureAPI.service;
 
 import com.example.SecureAPI.dto.CartDTO;
 import com.example.SecureAPI.dto.CartItemDTO;
+import com.example.SecureAPI.dto.CartOperation;
+import com.example.SecureAPI.dto.CartOperationType;
+import com.example.SecureAPI.dto.CartRowDTO;
 import com.example.SecureAPI.dto.OrderDTO;
-import com.example.SecureAPI.model.Cart;
+import com.example.SecureAPI.exception.InvalidCartRequestException;
+import com.example.SecureAPI.exception.ProductNotFoundException;
 import com.example.SecureAPI.model.CartItem;
-import com.example.SecureAPI.model.Product;
-import com.example.SecureAPI.model.User;
+import com.example.SecureAPI.repository.CartItemRepository;
 import com.example.SecureAPI.repository.CartRepository;
-import com.example.SecureAPI.repository.ProductRepository;
-import com.example.SecureAPI.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Сервис для управления корзиной пользователя.
  * Реализует операции добавления товаров, получения данных и оформления заказа.
+ *
+ * Если включён режим write-behind ({@link CartWriteBehindStore}), корзины читаются и изменяются
+ * в памяти, а в базу записываются в фоне; иначе каждая операция сразу идёт в базу.
  */
 @Service
-@RequiredArgsConstructor
 public class CartService {
 
+    /**
+     * Максимум операций в одном пакетном запросе.
+     */
+    private static final int MAX_BATCH_OPERATIONS = 500;
+
     private final CartRepository cartRepository;
-    private final UserRepository userRepository;
-    private final ProductRepository productRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductService productService;
     private final OrderService orderService;
+    private final CartWriteBehindStore writeBehind;
+    private final ConflictRetryPolicy conflictRetry;
+    private final IdempotencyService idempotency;
+
+    public CartService(CartRepository cartRepository,
+                       CartItemRepository cartItemRepository,
+                       ProductService productService,
+                       OrderService orderService,
+                       ObjectProvider<CartWriteBehindStore> writeBehind,
+                       ConflictRetryPolicy conflictRetry,
+                       IdempotencyService idempotency) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productService = productService;
+        this.orderService = orderService;
+        this.conflictRetry = conflictRetry;
+        this.idempotency = idempotency;
+        this.writeBehind = writeBehind.getIfAvailable();
+    }
 
     /**
      * Получает корзину текущего пользователя и конвертирует её в DTO.
@@ -34,8 +66,14 @@ public class CartService {
      * @return DTO корзины
      */
     public CartDTO getCartByUserId(Long userId) {
-        Cart cart = cartRepository.findByUserId(userId).orElseThrow(() -> new RuntimeException("Cart not found"));
-        return convertToDTO(cart);
+        if (writeBehind != null) {
+            return withTotals(writeBehind.getCart(userId), productService);
+        }
+        List<CartDTO> carts = toCarts(cartRepository.findRowsByUserId(userId));
+        if (carts.isEmpty()) {
+            throw new RuntimeException("Cart not found");
+        }
+        return carts.get(0);
     }
 
     /**
@@ -43,9 +81,10 @@ public class CartService {
      * @return список DTO всех корзин
      */
     public List<CartDTO> getAllCarts() {
-        return cartRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .toList();
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+        return toCarts(cartRepository.findAllRows());
     }
 
     /**
@@ -56,58 +95,284 @@ public class CartService {
      * @return обновлённая корзина в виде DTO
      */
     public CartDTO addToCart(Long userId, CartItemDTO request) {
-        User user = userRepository.findById(userId).orElseThrow();
-        Product product = productRepository.findById(request.getProductId()).orElseThrow();
+        addItem(userId, request.getProductId(), request.getQuantity());
+        return getCartByUserId(userId);
+    }
+
+    /**
+     * Добавляет товар в корзину: если продукт уже в корзине, количество увеличивается.
+     * Выполняется одним INSERT ... ON CONFLICT, корзина не загружается.
+     * @param userId ID пользователя
+     * @param productId ID продукта
+     * @param quantity сколько добавить
+     * @return позиция корзины с новым количеством
+     */
+    public CartItemDTO addItem(Long userId, Long productId, Integer quantity) {
+        requireValid(productId, quantity);
+        if (writeBehind != null) {
+            return new CartItemDTO(productId, writeBehind.add(userId, productId, quantity));
+        }
+        Integer updated = upsert(userId, () -> cartItemRepository.addQuantity(userId, productId, quantity));
+        return new CartItemDTO(productId, updated);
+    }
+
+    /**
+     * Устанавливает количество товара в корзине (добавляет позицию, если её нет).
+     * @param userId ID пользователя
+     * @param productId ID продукта
+     * @param quantity новое количество
+     * @return позиция корзины с новым количеством
+     */
+    public CartItemDTO setItemQuantity(Long userId, Long productId, Integer quantity) {
+        requireValid(productId, quantity);
+        if (writeBehind != null) {
+            return new CartItemDTO(productId, writeBehind.set(userId, productId, quantity));
+        }
+        Integer updated = upsert(userId, () -> cartItemRepository.setQuantity(userId, productId, quantity));
+        return new CartItemDTO(productId, updated);
+    }
+
+    /**
+     * Удаляет товар из корзины. Повторное удаление ничего не делает.
+     * @param userId ID пользователя
+     * @param productId ID продукта
+     * @return true, если позиция была в корзине
+     */
+    @Transactional
+    public boolean removeItem(Long userId, Long productId) {
+        if (writeBehind != null) {
+            return writeBehind.remove(userId, productId);
+        }
+        // Версия увеличивается до DELETE: строка корзины блокируется раньше позиций, как и в upsert
+        cartRepository.incrementVersionByUserId(userId);
+        return cartItemRepository.deleteByUserIdAndProductId(userId, productId) > 0;
+    }
+
+    /**
+     * Применяет пакет операций к корзине в одной транзакции и возвращает итоговую корзину.
+     *
+     * Операции над одним продуктом сначала сворачиваются в одну (например, ADD 1, ADD 2 — в ADD 3,
+     * REMOVE и затем ADD 2 — в SET 2). Все продукты проверяются одним обращением к каталогу
+     * до любых изменений, затем выполняются одна пачка DELETE и по одной пачке upsert для SET и ADD.
+     * @param userId ID пользователя
+     * @param operations операции в порядке применения
+     * @return корзина после изменений
+     */
+    @Transactional
+    public CartDTO applyBatch(Long userId, List<CartOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new InvalidCartRequestException("Operations must not be empty");
+        }
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new InvalidCartRequestException("At most " + MAX_BATCH_OPERATIONS + " operations are allowed");
+        }
+        Map<Long, CartOperation> net = netOperations(operations);
+
+        Set<Long> missing = net.values().stream()
+                .filter(operation -> operation.type() != CartOperationType.REMOVE)
+                .map(CartOperation::productId)
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!missing.isEmpty()) {
+            productService.getProductsByIds(missing).forEach(product -> missing.remove(product.getId()));
+            if (!missing.isEmpty()) {
+                throw new ProductNotFoundException(missing.iterator().next());
+            }
+        }
+        if (writeBehind != null) {
+            return withTotals(writeBehind.apply(userId, net.values()), productService);
+        }
+        applyNet(userId, net.values());
+        return getCartByUserId(userId);
+    }
+
+    /**
+     * Добавляет в корзину пользователя позиции гостевой корзины (при входе в систему) одним пакетом.
+     * Количества складываются с уже имеющимися; продукты, которых больше нет в каталоге, пропускаются.
+     * @param userId ID пользователя
+     * @param items количество по ID продукта
+     */
+    @Transactional
+    public void mergeItems(Long userId, Map<Long, Integer> items) {
+        Map<Long, CartOperation> net = new LinkedHashMap<>();
+        productService.getProductsByIds(items.keySet()).forEach(product -> net.put(product.getId(),
+                new CartOperation(CartOperationType.ADD, product.getId(), items.get(product.getId()))));
+        if (net.isEmpty()) {
+            return;
+        }
+        if (writeBehind != null) {
+            writeBehind.apply(userId, net.values());
+            return;
+        }
+        applyNet(userId, net.values());
+    }
+
+    /**
+     * Выполняет свёрнутые операции: одна пачка DELETE и по одной пачке upsert для SET и ADD.
+     */
+    private void applyNet(Long userId, Collection<CartOperation> operations) {
+        Map<CartOperationType, Map<Long, Integer>> byType = new EnumMap<>(CartOperationType.class);
+        operations.forEach(operation -> byType
+                .computeIfAbsent(operation.type(), type -> new LinkedHashMap<>())
+                .put(operation.productId(), operation.quantity()));
+
+        if (byType.containsKey(CartOperationType.REMOVE)) {
+            cartRepository.incrementVersionByUserId(userId);
+            cartItemRepository.deleteByUserIdAndProductIdIn(userId, byType.get(CartOperationType.REMOVE).keySet());
+        }
+        if (byType.containsKey(CartOperationType.SET) || byType.containsKey(CartOperationType.ADD)) {
+            cartItemRepository.createCartIfAbsent(userId);
+            cartItemRepository.setQuantities(userId, byType.getOrDefault(CartOperationType.SET, Map.of()));
+            cartItemRepository.addQuantities(userId, byType.getOrDefault(CartOperationType.ADD, Map.of()));
+        }
+    }
 
-        Cart cart = user.getCart();
-        if (cart == null) {
-            cart = new Cart();
-            cart.setUser(user);
-            cart = cartRepository.save(cart);
+    /**
+     * Проверяет операции и сворачивает их в одну итоговую операцию на продукт.
+     * @param operations операции в порядке применения
+     * @return итоговая операция по ID продукта (в порядке первого появления продукта)
+     */
+    static Map<Long, CartOperation> netOperations(List<CartOperation> operations) {
+        Map<Long, CartOperation> net = new LinkedHashMap<>();
+        for (CartOperation operation : operations) {
+            if (operation == null || operation.type() == null || operation.productId() == null) {
+                throw new InvalidCartRequestException("Each operation needs a type and a productId");
+            }
+            if (operation.type() != CartOperationType.REMOVE && (operation.quantity() == null || operation.quantity() <= 0)) {
+                throw new InvalidCartRequestException("Quantity must be positive");
+            }
+            net.merge(operation.productId(), operation, CartService::combine);
         }
+        return net;
+    }
 
-        CartItem item = new CartItem();
-        item.setProduct(product);
-        item.setQuantity(request.getQuantity());
-        item.setCart(cart);
-        cart.getItems().add(item);
+    private static CartOperation combine(CartOperation previous, CartOperation next) {
+        if (next.type() != CartOperationType.ADD) {
+            return next;
+        }
+        return switch (previous.type()) {
+            case ADD -> new CartOperation(CartOperationType.ADD, next.productId(), Math.addExact(previous.quantity(), next.quantity()));
+            case SET -> new CartOperation(CartOperationType.SET, next.productId(), Math.addExact(previous.quantity(), next.quantity()));
+            case REMOVE -> new CartOperation(CartOperationType.SET, next.productId(), next.quantity());
+        };
+    }
 
-        cartRepository.save(cart);
+    /**
+     * Выполняет upsert позиции; если у пользователя ещё нет корзины, создаёт её и повторяет.
+     */
+    private Integer upsert(Long userId, Supplier<Optional<Integer>> operation) {
+        return operation.get().orElseGet(() -> {
+            cartItemRepository.createCartIfAbsent(userId);
+            return operation.get().orElseThrow(() -> new RuntimeException("User not found"));
+        });
+    }
 
-        return convertToDTO(cart);
+    private void requireValid(Long productId, Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new InvalidCartRequestException("Quantity must be positive");
+        }
+        // Существование проверяется по каталогу в памяти, без SELECT
+        if (productId == null || productService.getProductById(productId).isEmpty()) {
+            throw new ProductNotFoundException(productId);
+        }
     }
 
     /**
      * Очищает корзину пользователя.
      * @param userId ID пользователя
      */
+    @Transactional
     public void clearCart(Long userId) {
-        Cart cart = cartRepository.findByUserId(userId).orElseThrow();
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        if (writeBehind != null) {
+            writeBehind.clear(userId);
+            return;
+        }
+        if (cartRepository.incrementVersionByUserId(userId) == 0) {
+            throw new NoSuchElementException("Cart not found");
+        }
+        cartItemRepository.deleteByUserId(userId);
     }
 
     /**
      * Создаёт заказ на основе содержимого корзины.
+     * Если корзину изменили параллельно (другое устройство добавило товар), оформление
+     * повторяется в новой транзакции с перечитанной корзиной ({@link ConflictRetryPolicy}).
      * @param userId ID пользователя
      * @return DTO созданного заказа
      */
     public OrderDTO createOrderFromCart(Long userId) {
-        return orderService.createOrderFromCart(userId); // ✅ Теперь работает
+        return createOrderFromCart(userId, null);
     }
 
     /**
-     * Конвертирует модель корзины в DTO.
-     * @param cart объект корзины
-     * @return DTO корзины
+     * Создаёт заказ на основе содержимого корзины не более одного раза на ключ идемпотентности:
+     * повтор с тем же ключом возвращает ранее созданный заказ ({@link IdempotencyService}).
+     * @param userId ID пользователя
+     * @param idempotencyKey значение заголовка Idempotency-Key (null — без ключа)
+     * @return DTO созданного (или ранее созданного по ключу) заказа
+     */
+    public OrderDTO createOrderFromCart(Long userId, String idempotencyKey) {
+        return idempotency.execute("user:" + userId, idempotencyKey, claim -> {
+            Supplier<OrderDTO> checkout = () -> conflictRetry.execute("checkout", () -> orderService.createOrderFromCart(userId, claim));
+            if (writeBehind != null) {
+                // Сначала корзина записывается в базу: заказ собирается по данным базы
+                return writeBehind.checkout(userId, checkout);
+            }
+            return checkout.get();
+        });
+    }
+
+    /**
+     * Заполняет итоги корзины, собранной в памяти (write-behind, гостевые корзины), по ценам каталога.
+     * Корзины из базы приходят с итогами, которые хранятся в строке корзины.
+     * @param cart корзина без итогов
+     * @param productService источник цен
+     * @return та же корзина с количеством единиц и суммой
+     */
+    static CartDTO withTotals(CartDTO cart, ProductService productService) {
+        Map<Long, Double> prices = new HashMap<>();
+        if (!cart.getItems().isEmpty()) {
+            productService.getProductsByIds(cart.getItems().stream().map(CartItemDTO::getProductId).toList())
+                    .forEach(product -> prices.put(product.getId(), product.getPrice()));
+        }
+        int itemCount = 0;
+        BigDecimal totalPrice = BigDecimal.ZERO.setScale(2);
+        for (CartItemDTO item : cart.getItems()) {
+            itemCount += item.getQuantity();
+            Double price = prices.get(item.getProductId());
+            if (price != null) {
+                totalPrice = totalPrice.add(lineAmount(price, item.getQuantity()));
+            }
+        }
+        cart.setItemCount(itemCount);
+        cart.setTotalPrice(totalPrice);
+        return cart;
+    }
+
+    /**
+     * Сумма позиции, округлённая до копеек так же, как это делает триггер в базе.
      */
-    private CartDTO convertToDTO(Cart cart) {
-        return new CartDTO(
-                cart.getId(),
-                cart.getUser().getId(),
-                cart.getItems().stream()
-                        .map(item -> new CartItemDTO(item.getProduct().getId(), item.getQuantity()))
-                        .toList());
+    static BigDecimal lineAmount(double price, int quantity) {
+        return BigDecimal.valueOf(price).multiply(BigDecimal.valueOf(quantity)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Собирает корзины из строк DTO-проекции (строки одной корзины идут подряд).
+     * @param rows строки корзин с позициями
+     * @return список DTO корзин в порядке строк
+     */
+    private static List<CartDTO> toCarts(List<CartRowDTO> rows) {
+        List<CartDTO> carts = new ArrayList<>();
+        CartDTO current = null;
+        for (CartRowDTO row : rows) {
+            if (current == null || !current.getId().equals(row.getCartId())) {
+                current = new CartDTO(row.getCartId(), row.getUserId(), new ArrayList<>(), row.getItemCount(), row.getTotalPrice());
+                carts.add(current);
+            }
+            if (row.getProductId() != null) {
+                current.getItems().add(new CartItemDTO(row.getProductId(), row.getQuantity()));
+            }
+        }
+        return carts;
     }
 
     /**
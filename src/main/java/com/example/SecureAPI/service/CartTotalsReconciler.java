@@ -0,0 +1,87 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.repository.CartRepository;
+import com.example.SecureAPI.repository.CartRepositoryCustom.TotalsCheck;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * CartTotalsReconciler — фоновая сверка итогов корзин (carts.item_count, carts.total_price) с позициями.
+ *
+ * Итоги поддерживает триггер на cart_items, но они расходятся с позициями, например, после
+ * смены цены продукта или правки позиций в обход триггера. Сверка обходит все корзины страницами
+ * по batch-size (по ключу id, без блокировок), а расходящиеся корзины пересчитывает короткой
+ * транзакцией под блокировкой строк корзин.
+ *
+ * Метрики:
+ * - carts.totals.drift — найдено корзин с расхождением
+ * - carts.totals.repaired — корзин пересчитано
+ */
+@Component
+@ConditionalOnProperty(name = "cart.totals.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+public class CartTotalsReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartTotalsReconciler.class);
+
+    private final CartRepository cartRepository;
+    private final int batchSize;
+    private final Counter drift;
+    private final Counter repaired;
+
+    public CartTotalsReconciler(CartRepository cartRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${cart.totals.reconcile.batch-size:1000}") int batchSize) {
+        this.cartRepository = cartRepository;
+        this.batchSize = Math.max(1, batchSize);
+        this.drift = Counter.builder("carts.totals.drift").register(meterRegistry);
+        this.repaired = Counter.builder("carts.totals.repaired").register(meterRegistry);
+    }
+
+    /**
+     * Плановый запуск сверки.
+     */
+    @Scheduled(fixedDelayString = "${cart.totals.reconcile.interval-ms:3600000}",
+            initialDelayString = "${cart.totals.reconcile.initial-delay-ms:300000}")
+    public void scheduledRun() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            logger.warn("Cart totals reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Проверяет все корзины и пересчитывает расходящиеся.
+     *
+     * @return число пересчитанных корзин
+     */
+    int run() {
+        long afterId = 0;
+        long found = 0;
+        int fixed = 0;
+        while (true) {
+            TotalsCheck page = cartRepository.checkTotals(afterId, batchSize);
+            if (!page.drifted().isEmpty()) {
+                found += page.drifted().size();
+                drift.increment(page.drifted().size());
+                int count = cartRepository.repairTotals(page.drifted());
+                repaired.increment(count);
+                fixed += count;
+            }
+            if (page.scanned() < batchSize) {
+                break;
+            }
+            afterId = page.lastId();
+        }
+        if (found > 0) {
+            logger.info("Found {} carts with drifted totals, repaired {}", found, fixed);
+        }
+        return fixed;
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.CartDTO;
+import com.example.SecureAPI.dto.CartItemDTO;
+import com.example.SecureAPI.dto.CartOperation;
+import com.example.SecureAPI.dto.CartRowDTO;
+import com.example.SecureAPI.repository.CartItemRepository;
+import com.example.SecureAPI.repository.CartRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * CartWriteBehindStore — хранение корзин в режиме write-behind (cart.write-behind.enabled=true).
+ *
+ * Активные корзины живут в памяти, разбитой на сегменты (stripes) по ID пользователя;
+ * изменения одной корзины сериализуются её монитором, разные корзины не мешают друг другу.
+ * Каждое изменение сначала дописывается в журнал на локальном диске ({@link CartJournal}),
+ * затем применяется в памяти. Чтение корзины не обращается к базе (кроме первой загрузки).
+ *
+ * Изменённые корзины периодически записываются в таблицы carts/cart_items одной транзакцией
+ * из трёх пачек JDBC batch, после чего сегменты журнала, закрытые до записи, удаляются.
+ * Если запись не удалась, корзины остаются изменёнными, а сегменты — на диске.
+ * После перезапуска оставшиеся сегменты проигрываются и сразу записываются в базу.
+ *
+ * Оформление заказа сначала записывает корзину в базу и выполняется под блокировкой
+ * сегмента, которую берёт и фоновая запись: она не может вернуть в базу позиции,
+ * уже превращённые в заказ.
+ *
+ * Метрики:
+ * - carts.write-behind.size — корзин в памяти
+ * - carts.write-behind.dirty — изменённых корзин, ещё не записанных в базу
+ * - carts.write-behind.flush — время фоновой записи
+ */
+@Component
+@ConditionalOnProperty(name = "cart.write-behind.enabled", havingValue = "true")
+public class CartWriteBehindStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartWriteBehindStore.class);
+
+    private static final int STRIPES = 64;
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartJournal journal;
+    private final Duration maxIdle;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Timer flushTimer;
+
+    public CartWriteBehindStore(CartRepository cartRepository,
+                                CartItemRepository cartItemRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${cart.write-behind.journal-dir:data/cart-journal}") String journalDirectory,
+                                @Value("${cart.write-behind.journal-fsync:false}") boolean fsync,
+                                @Value("${cart.write-behind.max-idle:30m}") Duration maxIdle) throws IOException {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.journal = new CartJournal(Path.of(journalDirectory), fsync);
+        this.maxIdle = maxIdle;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.flushTimer = Timer.builder("carts.write-behind.flush").register(meterRegistry);
+        Gauge.builder("carts.write-behind.size", this, store -> store.count(stripe -> stripe.carts.size()))
+                .register(meterRegistry);
+        Gauge.builder("carts.write-behind.dirty", this, store -> store.count(stripe -> stripe.dirty.size()))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Проигрывает журнал, оставшийся после предыдущего запуска, и записывает результат в базу.
+     */
+    @PostConstruct
+    void recover() throws IOException {
+        long records = journal.replay(record -> withCart(record.userId(), cart -> {
+            markDirty(cart);
+            if (record.productId() == null) {
+                cart.items.clear();
+            } else {
+                cart.put(record.productId(), record.quantity());
+            }
+            return null;
+        }));
+        if (records > 0) {
+            logger.info("Replayed {} cart journal records", records);
+            flush();
+        }
+    }
+
+    /**
+     * Записывает изменения в базу и закрывает журнал при остановке приложения.
+     */
+    @PreDestroy
+    void shutdown() throws IOException {
+        flush();
+        journal.close();
+    }
+
+    /**
+     * Возвращает корзину пользователя из памяти.
+     *
+     * @param userId ID пользователя
+     * @return DTO корзины (ID корзины равен null, пока новая корзина не записана и не перечитана)
+     */
+    public CartDTO getCart(Long userId) {
+        return withCart(userId, cart -> {
+            if (!cart.exists) {
+                throw new RuntimeException("Cart not found");
+            }
+            return cart.toDTO();
+        });
+    }
+
+    /**
+     * Увеличивает количество товара в корзине.
+     *
+     * @return новое количество
+     */
+    public int add(Long userId, Long productId, int quantity) {
+        return withCart(userId, cart -> {
+            int updated = Math.addExact(cart.items.getOrDefault(productId, 0), quantity);
+            record(cart, productId, updated);
+            return updated;
+        });
+    }
+
+    /**
+     * Устанавливает количество товара в корзине.
+     *
+     * @return новое количество
+     */
+    public int set(Long userId, Long productId, int quantity) {
+        return withCart(userId, cart -> {
+            record(cart, productId, quantity);
+            return quantity;
+        });
+    }
+
+    /**
+     * Удаляет товар из корзины.
+     *
+     * @return true, если товар был в корзине
+     */
+    public boolean remove(Long userId, Long productId) {
+        return withCart(userId, cart -> {
+            if (!cart.items.containsKey(productId)) {
+                return false;
+            }
+            record(cart, productId, 0);
+            return true;
+        });
+    }
+
+    /**
+     * Применяет итоговые операции пакета (по одной на продукт, см. CartService.netOperations).
+     *
+     * @return корзина после изменений
+     */
+    public CartDTO apply(Long userId, Collection<CartOperation> operations) {
+        return withCart(userId, cart -> {
+            for (CartOperation operation : operations) {
+                int updated = switch (operation.type()) {
+                    case ADD -> Math.addExact(cart.items.getOrDefault(operation.productId(), 0), operation.quantity());
+                    case SET -> operation.quantity();
+                    case REMOVE -> 0;
+                };
+                record(cart, operation.productId(), updated);
+            }
+            return cart.toDTO();
+        });
+    }
+
+    /**
+     * Очищает корзину пользователя.
+     */
+    public void clear(Long userId) {
+        withCart(userId, cart -> {
+            markDirty(cart);
+            journal.appendClear(userId);
+            cart.items.clear();
+            return null;
+        });
+    }
+
+    /**
+     * Оформляет заказ: записывает корзину в базу, выполняет checkout (он читает корзину из базы)
+     * и очищает корзину в памяти. Изменения этой корзины на это время блокируются.
+     *
+     * @param userId   ID пользователя
+     * @param checkout оформление заказа по данным базы
+     * @return результат checkout
+     */
+    public <T> T checkout(Long userId, Supplier<T> checkout) {
+        Stripe stripe = stripe(userId);
+        stripe.persistLock.lock();
+        try {
+            return withCart(userId, cart -> {
+                if (cart.dirty) {
+                    cartItemRepository.replaceCarts(Map.of(userId, new LinkedHashMap<>(cart.items)));
+                    cart.dirty = false;
+                    stripe.dirty.remove(userId);
+                }
+                T result = checkout.get();
+                journal.appendClear(userId);
+                cart.items.clear();
+                return result;
+            });
+        } finally {
+            stripe.persistLock.unlock();
+        }
+    }
+
+    /**
+     * Записывает все изменённые корзины в базу и вытесняет из памяти давно не использованные.
+     */
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:1000}",
+            initialDelayString = "${cart.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        flushTimer.record(this::flushDirty);
+    }
+
+    private synchronized void flushDirty() {
+        List<Path> segments;
+        try {
+            segments = journal.rotate();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cart journal rotation failed", e);
+        }
+
+        List<Stripe> locked = new ArrayList<>(STRIPES);
+        try {
+            Map<Long, Map<Long, Integer>> snapshot = new HashMap<>();
+            List<CartState> flushed = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                stripe.persistLock.lock();
+                locked.add(stripe);
+                for (Iterator<Long> it = stripe.dirty.iterator(); it.hasNext(); ) {
+                    Long userId = it.next();
+                    it.remove();
+                    CartState cart = stripe.carts.get(userId);
+                    if (cart == null) {
+                        continue;
+                    }
+                    synchronized (cart) {
+                        if (cart.dirty) {
+                            cart.dirty = false;
+                            snapshot.put(userId, new LinkedHashMap<>(cart.items));
+                            flushed.add(cart);
+                        }
+                    }
+                }
+            }
+
+            try {
+                cartItemRepository.replaceCarts(snapshot);
+            } catch (RuntimeException e) {
+                // Корзины остаются изменёнными, сегменты журнала — на диске до следующей попытки
+                for (CartState cart : flushed) {
+                    synchronized (cart) {
+                        markDirty(cart);
+                    }
+                }
+                logger.warn("Failed to write {} carts, will retry: {}", flushed.size(), e.getMessage());
+                return;
+            }
+            if (!snapshot.isEmpty()) {
+                logger.debug("Wrote {} carts", snapshot.size());
+            }
+            journal.delete(segments);
+        } catch (IOException e) {
+            logger.warn("Failed to delete cart journal segments: {}", e.getMessage());
+        } finally {
+            locked.forEach(stripe -> stripe.persistLock.unlock());
+        }
+        evictIdle();
+    }
+
+    private void evictIdle() {
+        long cutoff = System.nanoTime() - maxIdle.toNanos();
+        for (Stripe stripe : stripes) {
+            for (CartState cart : stripe.carts.values()) {
+                synchronized (cart) {
+                    if (!cart.dirty && cart.lastAccess - cutoff < 0) {
+                        cart.evicted = true;
+                        stripe.carts.remove(cart.userId, cart);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Записывает итоговое количество позиции в журнал, затем в память (0 — удалить позицию).
+     * Корзина помечается изменённой до записи в журнал: сегмент с этой записью не будет удалён,
+     * пока корзина не попадёт в базу.
+     */
+    private void record(CartState cart, Long productId, int quantity) {
+        markDirty(cart);
+        journal.appendItem(cart.userId, productId, quantity);
+        cart.put(productId, quantity);
+    }
+
+    /**
+     * Выполняет действие над корзиной под её монитором, загружая корзину из базы при первом обращении.
+     */
+    private <T> T withCart(Long userId, Function<CartState, T> action) {
+        Stripe stripe = stripe(userId);
+        while (true) {
+            CartState cart = stripe.carts.get(userId);
+            if (cart == null) {
+                CartState loaded = load(userId);
+                cart = stripe.carts.putIfAbsent(userId, loaded);
+                if (cart == null) {
+                    cart = loaded;
+                }
+            }
+            synchronized (cart) {
+                if (cart.evicted) {
+                    continue;
+                }
+                cart.lastAccess = System.nanoTime();
+                return action.apply(cart);
+            }
+        }
+    }
+
+    private CartState load(Long userId) {
+        CartState cart = new CartState(userId);
+        for (CartRowDTO row : cartRepository.findRowsByUserId(userId)) {
+            cart.cartId = row.getCartId();
+            cart.exists = true;
+            if (row.getProductId() != null) {
+                cart.items.put(row.getProductId(), row.getQuantity());
+            }
+        }
+        return cart;
+    }
+
+    private void markDirty(CartState cart) {
+        cart.dirty = true;
+        cart.exists = true;
+        stripe(cart.userId).dirty.add(cart.userId);
+    }
+
+    private Stripe stripe(Long userId) {
+        return stripes[Long.hashCode(userId) & (STRIPES - 1)];
+    }
+
+    private int count(Function<Stripe, Integer> size) {
+        int total = 0;
+        for (Stripe stripe : stripes) {
+            total += size.apply(stripe);
+        }
+        return total;
+    }
+
+    /**
+     * Сегмент хранилища: корзины, ID изменённых корзин и блокировка записи в базу.
+     */
+    private static final class Stripe {
+        private final ConcurrentHashMap<Long, CartState> carts = new ConcurrentHashMap<>();
+        private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+        private final ReentrantLock persistLock = new ReentrantLock();
+    }
+
+    /**
+     * Корзина в памяти. Все поля, кроме userId, изменяются под монитором объекта.
+     */
+    private static final class CartState {
+        private final Long userId;
+        private final LinkedHashMap<Long, Integer> items = new LinkedHashMap<>();
+        private Long cartId;
+        private boolean exists;
+        private boolean dirty;
+        private boolean evicted;
+        private long lastAccess = System.nanoTime();
+
+        CartState(Long userId) {
+            this.userId = userId;
+        }
+
+        void put(Long productId, int quantity) {
+            if (quantity > 0) {
+                items.put(productId, quantity);
+            } else {
+                items.remove(productId);
+            }
+        }
+
+        CartDTO toDTO() {
+            List<CartItemDTO> lines = new ArrayList<>(items.size());
+            items.forEach((productId, quantity) -> lines.add(new CartItemDTO(productId, quantity)));
+            return new CartDTO(cartId, userId, lines, null, null);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.exception.CartConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * ConflictRetryPolicy — повтор операции после конфликта оптимистичной блокировки.
+ *
+ * Операция (каждая попытка — отдельная транзакция) повторяется не более max-attempts раз.
+ * Перед повтором выдерживается случайная пауза от 0 до backoff·2^(попытка−1) («full jitter»),
+ * чтобы конкурирующие запросы не сталкивались снова в тот же момент. Если попытки кончились,
+ * выбрасывается {@link CartConflictException} (409).
+ *
+ * Метрики (тег operation):
+ * - carts.conflicts — конфликтов (включая последний, после которого повторов уже нет)
+ * - carts.conflict.retries — повторов
+ * - carts.conflict.exhausted — операций, завершившихся конфликтом
+ */
+@Component
+public class ConflictRetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConflictRetryPolicy.class);
+
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long backoffNanos;
+
+    public ConflictRetryPolicy(MeterRegistry meterRegistry,
+                               @Value("${cart.conflict-retry.max-attempts:4}") int maxAttempts,
+                               @Value("${cart.conflict-retry.backoff:10ms}") Duration backoff) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffNanos = backoff.toNanos();
+    }
+
+    /**
+     * Выполняет операцию, повторяя её после конфликтов.
+     *
+     * @param operation имя операции для метрик и логов
+     * @param action    операция; должна сама открывать транзакцию
+     * @return результат операции
+     * @throws CartConflictException если конфликт повторился max-attempts раз
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                counter("carts.conflicts", operation).increment();
+                if (attempt >= maxAttempts) {
+                    counter("carts.conflict.exhausted", operation).increment();
+                    throw new CartConflictException("Cart was modified concurrently, please retry", e);
+                }
+                logger.debug("Conflict in {} (attempt {} of {}), retrying", operation, attempt, maxAttempts);
+                counter("carts.conflict.retries", operation).increment();
+                pause(attempt, e);
+            }
+        }
+    }
+
+    private void pause(int attempt, OptimisticLockingFailureException conflict) {
+        long bound = backoffNanos << Math.min(attempt - 1, 16);
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(bound));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CartConflictException("Interrupted while waiting to retry", conflict);
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name).tag("operation", operation).register(meterRegistry);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.ExportFormat;
+import com.example.SecureAPI.dto.OrderDTO;
+import com.example.SecureAPI.dto.OrderItemDTO;
+import com.example.SecureAPI.dto.UserDTO;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.repository.OrderRepository;
+import com.example.SecureAPI.repository.ProductRepository;
+import com.example.SecureAPI.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * ExportService — потоковая выгрузка продуктов, заказов и пользователей в NDJSON или CSV.
+ *
+ * Таблица читается курсором порциями фиксированного размера внутри одной read-only транзакции,
+ * каждая строка сразу пишется в поток ответа, а прочитанная сущность отсоединяется
+ * от EntityManager. Поэтому расход памяти не зависит от размера таблицы.
+ *
+ * Параметр since — ID, после которого начинается выгрузка (для догрузки только новых строк).
+ */
+@Service
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    private final ProductRepository productRepository;
+    private final OrderRepository orderRepository;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ExportService(ProductRepository productRepository,
+                         OrderRepository orderRepository,
+                         UserRepository userRepository,
+                         ObjectMapper objectMapper,
+                         PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.orderRepository = orderRepository;
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Выгружает продукты с ID больше since.
+     *
+     * @param since  ID, после которого начинается выгрузка
+     * @param format формат выгрузки
+     * @param out    поток ответа
+     */
+    public void exportProducts(long since, ExportFormat format, OutputStream out) {
+        export("products", () -> {
+            try (ExportWriter writer = new ExportWriter(format, out, objectMapper, "id", "name", "price");
+                 Stream<Product> products = productRepository.streamByIdGreaterThan(since)) {
+                long rows = 0;
+                for (Iterator<Product> it = products.iterator(); it.hasNext(); rows++) {
+                    Product product = it.next();
+                    writer.write(product, product.getId(), product.getName(), product.getPrice());
+                    entityManager.detach(product);
+                }
+                return rows;
+            }
+        });
+    }
+
+    /**
+     * Выгружает пользователей с ID больше since (без хэшей паролей).
+     *
+     * @param since  ID, после которого начинается выгрузка
+     * @param format формат выгрузки
+     * @param out    поток ответа
+     */
+    public void exportUsers(long since, ExportFormat format, OutputStream out) {
+        export("users", () -> {
+            try (ExportWriter writer = new ExportWriter(format, out, objectMapper, "id", "email", "name", "role");
+                 Stream<UserDTO> users = userRepository.streamByIdGreaterThan(since)) {
+                long rows = 0;
+                for (Iterator<UserDTO> it = users.iterator(); it.hasNext(); rows++) {
+                    UserDTO user = it.next();
+                    writer.write(user, user.getId(), user.getEmail(), user.getName(), user.getRole());
+                }
+                return rows;
+            }
+        });
+    }
+
+    /**
+     * Выгружает заказы с ID больше since. В NDJSON — один заказ с позициями на строку,
+     * в CSV — одна строка на позицию заказа.
+     *
+     * @param since  ID, после которого начинается выгрузка
+     * @param format формат выгрузки
+     * @param out    поток ответа
+     */
+    public void exportOrders(long since, ExportFormat format, OutputStream out) {
+        export("orders", () -> {
+            try (ExportWriter writer = new ExportWriter(format, out, objectMapper,
+                    "order_id", "user_id", "total_price", "order_date", "product_id", "quantity", "price_at_time");
+                 Stream<Object[]> rows = orderRepository.streamRowsByIdGreaterThan(since)) {
+                long written = 0;
+                OrderDTO pending = null;
+                for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                    Object[] row = it.next();
+                    if (format == ExportFormat.CSV) {
+                        writer.write(null, row);
+                        written++;
+                        continue;
+                    }
+                    // Строки одного заказа идут подряд: заказ записывается, когда начинается следующий
+                    Long orderId = (Long) row[0];
+                    if (pending == null || !Objects.equals(pending.getId(), orderId)) {
+                        if (pending != null) {
+                            writer.write(pending);
+                            written++;
+                        }
+                        pending = new OrderDTO(orderId, (Long) row[1], (BigDecimal) row[2], (LocalDateTime) row[3], new ArrayList<>());
+                    }
+                    if (row[4] != null) {
+                        pending.getItems().add(new OrderItemDTO((Long) row[4], (Integer) row[5], (BigDecimal) row[6]));
+                    }
+                }
+                if (pending != null) {
+                    writer.write(pending);
+                    written++;
+                }
+                return written;
+            }
+        });
+    }
+
+    private void export(String name, ExportTask task) {
+        long startedAt = System.nanoTime();
+        Long rows = readOnlyTransaction.execute(status -> {
+            try {
+                return task.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        logger.info("Exported {} {} rows in {} ms", rows, name, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    @FunctionalInterface
+    private interface ExportTask {
+        long run() throws IOException;
+    }
+}
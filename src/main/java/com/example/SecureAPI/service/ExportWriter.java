@@ -0,0 +1,107 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.ExportFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Построчная запись выгрузки в NDJSON или CSV поверх потока ответа.
+ *
+ * Запись буферизуется и сбрасывается в поток только при заполнении буфера и в конце,
+ * а не после каждой строки. Закрытие писателя не закрывает исходный поток.
+ */
+class ExportWriter implements Closeable {
+
+    private final ExportFormat format;
+    private final JsonGenerator json;
+    private final ObjectWriter objectWriter;
+    private final Writer csv;
+
+    ExportWriter(ExportFormat format, OutputStream out, ObjectMapper objectMapper, String... columns) throws IOException {
+        this.format = format;
+        if (format == ExportFormat.NDJSON) {
+            this.json = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            this.csv = null;
+        } else {
+            this.json = null;
+            this.objectWriter = null;
+            this.csv = new BufferedWriter(new OutputStreamWriter(new NonClosingOutputStream(out), StandardCharsets.UTF_8), 64 * 1024);
+            writeCsvLine(columns);
+        }
+    }
+
+    /**
+     * Записывает одну строку выгрузки.
+     *
+     * @param document объект для NDJSON
+     * @param values   значения столбцов для CSV (в порядке заголовка)
+     */
+    void write(Object document, Object... values) throws IOException {
+        if (format == ExportFormat.NDJSON) {
+            objectWriter.writeValue(json, document);
+            json.writeRaw('\n');
+        } else {
+            writeCsvLine(values);
+        }
+    }
+
+    private void writeCsvLine(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                csv.write(',');
+            }
+            if (values[i] != null) {
+                csv.write(escapeCsv(values[i].toString()));
+            }
+        }
+        csv.write("\r\n");
+    }
+
+    /**
+     * Экранирует значение CSV по RFC 4180: поля с запятой, кавычкой или переводом строки
+     * берутся в кавычки, кавычки внутри удваиваются.
+     */
+    static String escapeCsv(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        return quote ? '"' + value.replace("\"", "\"\"") + '"' : value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (json != null) {
+            json.close();
+        } else {
+            csv.close();
+        }
+    }
+
+    /**
+     * Обёртка, которая при закрытии только сбрасывает буфер: поток ответа закрывает контейнер.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
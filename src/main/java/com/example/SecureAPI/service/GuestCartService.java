@@ -0,0 +1,324 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.CartDTO;
+import com.example.SecureAPI.dto.CartItemDTO;
+import com.example.SecureAPI.dto.OrderDTO;
+import com.example.SecureAPI.exception.InvalidCartRequestException;
+import com.example.SecureAPI.exception.InvalidGuestTokenException;
+import com.example.SecureAPI.exception.ProductNotFoundException;
+import com.example.SecureAPI.security.GuestTokenService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GuestCartService — корзины анонимных покупателей (гостей).
+ *
+ * Гость определяется подписанным токеном ({@link GuestTokenService}) из заголовка X-Guest-Token;
+ * первый запрос без токена получает новый токен в том же заголовке ответа. Корзины гостей
+ * хранятся в памяти, каждая под своим монитором: добавления разных гостей не конкурируют
+ * ни за строку в базе, ни за общую блокировку.
+ *
+ * Корзина, к которой не обращались дольше cart.guest.ttl, удаляется фоновой очисткой;
+ * число корзин ограничено cart.guest.max-carts (при переполнении вытесняются самые старые).
+ * При входе в систему корзина гостя переносится в корзину пользователя одним пакетом upsert.
+ * Заказ гостя оформляется на служебного пользователя cart.guest.order-user-id.
+ *
+ * Метрики:
+ * - carts.guest.size — гостевых корзин в памяти
+ */
+@Service
+public class GuestCartService {
+
+    public static final String TOKEN_HEADER = "X-Guest-Token";
+
+    private static final Logger logger = LoggerFactory.getLogger(GuestCartService.class);
+
+    /**
+     * Максимум позиций в гостевой корзине (столько же операций допускает пакетное изменение корзины).
+     */
+    private static final int MAX_ITEMS = 500;
+
+    private final GuestTokenService guestTokens;
+    private final ProductService productService;
+    private final CartService cartService;
+    private final OrderService orderService;
+    private final IdempotencyService idempotency;
+    private final long ttlMillis;
+    private final int maxCarts;
+    private final Long orderUserId;
+    private final Map<UUID, GuestCart> carts = new ConcurrentHashMap<>();
+
+    public GuestCartService(GuestTokenService guestTokens,
+                            ProductService productService,
+                            CartService cartService,
+                            OrderService orderService,
+                            IdempotencyService idempotency,
+                            MeterRegistry meterRegistry,
+                            @Value("${cart.guest.ttl:7d}") Duration ttl,
+                            @Value("${cart.guest.max-carts:100000}") int maxCarts,
+                            @Value("${cart.guest.order-user-id:1}") Long orderUserId) {
+        this.guestTokens = guestTokens;
+        this.productService = productService;
+        this.cartService = cartService;
+        this.orderService = orderService;
+        this.idempotency = idempotency;
+        this.ttlMillis = ttl.toMillis();
+        this.maxCarts = Math.max(1, maxCarts);
+        this.orderUserId = orderUserId;
+        Gauge.builder("carts.guest.size", carts, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Возвращает действующий токен гостя: переданный, если он валиден, иначе новый.
+     *
+     * @param token токен из запроса (может быть null)
+     * @return токен, который нужно вернуть клиенту
+     */
+    public String resolveToken(String token) {
+        if (token != null && guestTokens.verify(token).isPresent()) {
+            return token;
+        }
+        return guestTokens.issue().token();
+    }
+
+    /**
+     * Добавляет товар в корзину гостя; если товар уже есть, увеличивает количество.
+     *
+     * @param token     токен гостя
+     * @param productId ID продукта
+     * @param quantity  сколько добавить
+     * @return корзина гостя (ID корзины и пользователя — null, итоги — по текущим ценам)
+     */
+    public CartDTO addItem(String token, Long productId, Integer quantity) {
+        UUID guestId = requireGuest(token);
+        if (quantity == null || quantity <= 0) {
+            throw new InvalidCartRequestException("Quantity must be positive");
+        }
+        if (productId == null || productService.getProductById(productId).isEmpty()) {
+            throw new ProductNotFoundException(productId);
+        }
+        long now = System.currentTimeMillis();
+        CartDTO dto;
+        while (true) {
+            GuestCart cart = carts.get(guestId);
+            if (cart == null) {
+                if (carts.size() >= maxCarts) {
+                    evict(now);
+                }
+                cart = carts.computeIfAbsent(guestId, id -> new GuestCart(now));
+            }
+            synchronized (cart) {
+                // Корзину только что забрали (вход, заказ, очистка) — работаем с новой
+                if (cart.closed) {
+                    continue;
+                }
+                if (!cart.items.containsKey(productId) && cart.items.size() >= MAX_ITEMS) {
+                    throw new InvalidCartRequestException("At most " + MAX_ITEMS + " items are allowed in a guest cart");
+                }
+                cart.items.merge(productId, quantity, Math::addExact);
+                cart.lastAccessMillis = now;
+                dto = cart.toDTO();
+                break;
+            }
+        }
+        // Итоги считаются вне монитора корзины: цены могут читаться из базы
+        return CartService.withTotals(dto, productService);
+    }
+
+    /**
+     * Возвращает корзину гостя (пустую, если гость ещё ничего не добавил).
+     *
+     * @param token токен гостя
+     * @return корзина гостя
+     */
+    public CartDTO getCart(String token) {
+        GuestCart cart = carts.get(requireGuest(token));
+        if (cart == null) {
+            return CartService.withTotals(new CartDTO(null, null, new ArrayList<>(), null, null), productService);
+        }
+        CartDTO dto;
+        synchronized (cart) {
+            if (cart.closed) {
+                return CartService.withTotals(new CartDTO(null, null, new ArrayList<>(), null, null), productService);
+            }
+            cart.lastAccessMillis = System.currentTimeMillis();
+            dto = cart.toDTO();
+        }
+        return CartService.withTotals(dto, productService);
+    }
+
+    /**
+     * Оформляет заказ из корзины гостя. Если заказ не создан, корзина возвращается гостю.
+     *
+     * @param token токен гостя
+     * @return DTO созданного заказа
+     * @throws InvalidCartRequestException если корзина пуста
+     */
+    public OrderDTO checkout(String token) {
+        return checkout(token, null);
+    }
+
+    /**
+     * Оформляет заказ из корзины гостя не более одного раза на ключ идемпотентности:
+     * повтор с тем же ключом возвращает ранее созданный заказ, даже если корзина уже пуста.
+     *
+     * @param token          токен гостя
+     * @param idempotencyKey значение заголовка Idempotency-Key (null — без ключа)
+     * @return DTO созданного (или ранее созданного по ключу) заказа
+     * @throws InvalidCartRequestException если корзина пуста
+     */
+    public OrderDTO checkout(String token, String idempotencyKey) {
+        UUID guestId = requireGuest(token);
+        return idempotency.execute("guest:" + guestId, idempotencyKey, claim -> {
+            Map<Long, Integer> items = take(guestId);
+            if (items.isEmpty()) {
+                throw new InvalidCartRequestException("Cart is empty");
+            }
+            try {
+                return orderService.createOrder(orderUserId, items, claim);
+            } catch (RuntimeException e) {
+                restore(guestId, items);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Переносит корзину гостя в корзину вошедшего пользователя.
+     * Невалидный токен или пустая корзина игнорируются; при ошибке записи корзина остаётся у гостя,
+     * а вход не прерывается.
+     *
+     * @param userId ID пользователя
+     * @param token  токен гостя (может быть null)
+     */
+    public void mergeInto(Long userId, String token) {
+        Optional<UUID> guestId = guestTokens.verify(token);
+        if (guestId.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> items = take(guestId.get());
+        if (items.isEmpty()) {
+            return;
+        }
+        try {
+            cartService.mergeItems(userId, items);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to merge guest cart into the cart of user {}", userId, e);
+            restore(guestId.get(), items);
+        }
+    }
+
+    /**
+     * Удаляет корзины, к которым не обращались дольше TTL.
+     */
+    @Scheduled(fixedDelayString = "${cart.guest.evict-interval-ms:60000}")
+    public void evictExpired() {
+        int removed = evictExpired(System.currentTimeMillis());
+        if (removed > 0) {
+            logger.debug("Evicted {} expired guest carts", removed);
+        }
+    }
+
+    int evictExpired(long nowMillis) {
+        int removed = 0;
+        for (Map.Entry<UUID, GuestCart> entry : carts.entrySet()) {
+            GuestCart cart = entry.getValue();
+            synchronized (cart) {
+                if (!cart.closed && nowMillis - cart.lastAccessMillis > ttlMillis) {
+                    cart.closed = true;
+                    carts.remove(entry.getKey(), cart);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Освобождает место: удаляет истёкшие корзины, а если их мало — ~10% самых старых.
+     */
+    private void evict(long nowMillis) {
+        evictExpired(nowMillis);
+        int target = maxCarts - Math.max(1, maxCarts / 10);
+        if (carts.size() <= target) {
+            return;
+        }
+        List<Map.Entry<UUID, GuestCart>> oldest = new ArrayList<>(carts.entrySet());
+        oldest.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccessMillis));
+        for (Map.Entry<UUID, GuestCart> entry : oldest) {
+            if (carts.size() <= target) {
+                break;
+            }
+            synchronized (entry.getValue()) {
+                entry.getValue().closed = true;
+                carts.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Забирает корзину гостя целиком: после этого новые добавления попадут в новую корзину.
+     */
+    private Map<Long, Integer> take(UUID guestId) {
+        GuestCart cart = carts.remove(guestId);
+        if (cart == null) {
+            return Map.of();
+        }
+        synchronized (cart) {
+            cart.closed = true;
+            return new LinkedHashMap<>(cart.items);
+        }
+    }
+
+    /**
+     * Возвращает забранные позиции в корзину гостя (складывая с добавленными за это время).
+     */
+    private void restore(UUID guestId, Map<Long, Integer> items) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            GuestCart cart = carts.computeIfAbsent(guestId, id -> new GuestCart(now));
+            synchronized (cart) {
+                if (cart.closed) {
+                    continue;
+                }
+                items.forEach((productId, quantity) -> cart.items.merge(productId, quantity, Math::addExact));
+                cart.lastAccessMillis = now;
+                return;
+            }
+        }
+    }
+
+    private UUID requireGuest(String token) {
+        return guestTokens.verify(token)
+                .orElseThrow(() -> new InvalidGuestTokenException("Guest token is missing, invalid or expired"));
+    }
+
+    /**
+     * Корзина одного гостя. Все поля читаются и изменяются под монитором корзины
+     * (lastAccessMillis при вытеснении читается без него — там достаточно приблизительного значения).
+     */
+    private static final class GuestCart {
+        private final Map<Long, Integer> items = new LinkedHashMap<>();
+        private volatile long lastAccessMillis;
+        private boolean closed;
+
+        GuestCart(long nowMillis) {
+            this.lastAccessMillis = nowMillis;
+        }
+
+        CartDTO toDTO() {
+            List<CartItemDTO> dtos = new ArrayList<>(items.size());
+            items.forEach((productId, quantity) -> dtos.add(new CartItemDTO(productId, quantity)));
+            return new CartDTO(null, null, dtos, null, null);
+        }
+    }
+}
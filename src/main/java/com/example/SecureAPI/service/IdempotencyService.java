@@ -0,0 +1,216 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.OrderDTO;
+import com.example.SecureAPI.exception.InvalidIdempotencyKeyException;
+import com.example.SecureAPI.model.IdempotencyKey;
+import com.example.SecureAPI.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * IdempotencyService — идемпотентное оформление заказа по заголовку Idempotency-Key.
+ *
+ * Ключ действует в пределах владельца (пользователя или гостя): в таблице idempotency_keys
+ * хранится SHA-256 от владельца и ключа и ID созданного заказа. Строка ключа вставляется
+ * в той же транзакции, что и заказ, поэтому заказ без ключа (или ключ без заказа) не фиксируется.
+ * Повтор запроса возвращает DTO исходного заказа, не выполняя оформление заново.
+ *
+ * Перед таблицей — кэш в памяти: одновременные запросы с одним ключом ждут одно выполнение,
+ * а готовые результаты отдаются без обращения к базе. Если один ключ одновременно пришёл
+ * в разные экземпляры приложения, второй упирается в первичный ключ таблицы, его транзакция
+ * откатывается, и он возвращает заказ первого.
+ *
+ * Ключи хранятся idempotency.ttl; кэш ограничен idempotency.cache-size записями
+ * (сверх предела результаты читаются из базы).
+ *
+ * Метрики:
+ * - checkout.idempotency (тег outcome) — запросы с ключом: executed — заказ оформлен,
+ *   replayed — заказ найден в таблице, coalesced — результат взят из памяти (готовый или выполняющийся)
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository keyRepository;
+    private final OrderService orderService;
+    private final long ttlMillis;
+    private final int cacheSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter coalesced;
+
+    public IdempotencyService(IdempotencyKeyRepository keyRepository,
+                              OrderService orderService,
+                              MeterRegistry meterRegistry,
+                              @Value("${idempotency.ttl:24h}") Duration ttl,
+                              @Value("${idempotency.cache-size:10000}") int cacheSize) {
+        this.keyRepository = keyRepository;
+        this.orderService = orderService;
+        this.ttlMillis = ttl.toMillis();
+        this.cacheSize = Math.max(0, cacheSize);
+        this.executed = Counter.builder("checkout.idempotency").tag("outcome", "executed").register(meterRegistry);
+        this.replayed = Counter.builder("checkout.idempotency").tag("outcome", "replayed").register(meterRegistry);
+        this.coalesced = Counter.builder("checkout.idempotency").tag("outcome", "coalesced").register(meterRegistry);
+    }
+
+    /**
+     * Выполняет оформление заказа не более одного раза на ключ.
+     *
+     * @param owner  владелец ключа (например, "user:42")
+     * @param key    значение заголовка Idempotency-Key; null — оформление без идемпотентности
+     * @param action оформление заказа; переданный Claim нужно записать в транзакции заказа
+     *               ({@link OrderService}), null означает «без ключа»
+     * @return созданный или ранее созданный по этому ключу заказ
+     * @throws InvalidIdempotencyKeyException если ключ пустой или слишком длинный
+     */
+    public OrderDTO execute(String owner, String key, Function<Claim, OrderDTO> action) {
+        Claim claim = claim(owner, key);
+        if (claim == null) {
+            return action.apply(null);
+        }
+        String hash = claim.keyHash();
+        long now = System.currentTimeMillis();
+        Entry created = new Entry(new CompletableFuture<>(), claim.expiresAt().toEpochMilli());
+        Entry entry = entries.compute(hash, (id, current) -> current == null || current.expired(now) ? created : current);
+        if (entry != created) {
+            coalesced.increment();
+            return await(entry.result());
+        }
+        try {
+            OrderDTO result = find(hash).orElseGet(() -> executeOnce(claim, action));
+            entry.result().complete(result);
+            if (entries.size() > cacheSize) {
+                entries.remove(hash, entry);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            // Неудачное оформление не запоминается: повтор с тем же ключом выполнится заново
+            entries.remove(hash, entry);
+            entry.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет ключ и готовит его к записи в транзакции заказа — для оформления,
+     * которое выполняется не через {@link #execute} (например, асинхронного).
+     *
+     * @param owner владелец ключа
+     * @param key   значение заголовка Idempotency-Key (может быть null)
+     * @return ключ для записи или null, если заголовка нет
+     * @throws InvalidIdempotencyKeyException если ключ пустой или слишком длинный
+     */
+    public Claim claim(String owner, String key) {
+        if (key == null) {
+            return null;
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters long");
+        }
+        return new Claim(hash(owner, key), Instant.ofEpochMilli(System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Ищет заказ, уже созданный по ключу.
+     *
+     * @param claim ключ
+     * @return заказ или пусто, если по ключу ещё ничего не создано (или срок ключа истёк)
+     */
+    public Optional<OrderDTO> findOrder(Claim claim) {
+        return find(claim.keyHash());
+    }
+
+    /**
+     * Удаляет истёкшие ключи из таблицы и кэша.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:600000}",
+            initialDelayString = "${idempotency.cleanup-interval-ms:600000}")
+    public void pruneExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expired(now));
+        int removed = keyRepository.deleteExpired(Instant.ofEpochMilli(now));
+        if (removed > 0) {
+            logger.info("Pruned {} expired idempotency keys", removed);
+        }
+    }
+
+    private OrderDTO executeOnce(Claim claim, Function<Claim, OrderDTO> action) {
+        try {
+            OrderDTO result = action.apply(claim);
+            executed.increment();
+            return result;
+        } catch (DataIntegrityViolationException e) {
+            // Ключ уже записан параллельным запросом в другом экземпляре приложения
+            return find(claim.keyHash()).orElseThrow(() -> e);
+        }
+    }
+
+    private Optional<OrderDTO> find(String hash) {
+        Optional<OrderDTO> order = keyRepository.findOrderId(hash, Instant.now()).flatMap(orderService::getOrder);
+        order.ifPresent(found -> replayed.increment());
+        return order;
+    }
+
+    private static OrderDTO await(CompletableFuture<OrderDTO> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    static String hash(String owner, String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((owner + '\n' + key).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Ключ, который оформление заказа записывает в своей транзакции.
+     *
+     * @param keyHash   хэш владельца и ключа ({@link IdempotencyKey#HASH_LENGTH} символов)
+     * @param expiresAt до какого момента хранить ключ
+     */
+    public record Claim(String keyHash, Instant expiresAt) {}
+
+    /**
+     * Выполняющееся или завершённое оформление по ключу.
+     */
+    private record Entry(CompletableFuture<OrderDTO> result, long expiresAtMillis) {
+        boolean expired(long nowMillis) {
+            return result.isDone() && expiresAtMillis <= nowMillis;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.exception.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации истории заказов: дата и ID последнего заказа страницы.
+ *
+ * Для клиента курсор непрозрачен — это Base64url-строка вида {@code <id>:<дата ISO-8601>}.
+ *
+ * @param id        ID последнего заказа на странице
+ * @param orderDate дата последнего заказа на странице
+ */
+record OrderCursor(long id, LocalDateTime orderDate) {
+
+    /**
+     * Кодирует курсор в строку для параметра after.
+     */
+    String encode() {
+        String raw = id + ":" + orderDate;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разбирает курсор из параметра after.
+     *
+     * @param value строка курсора
+     * @return курсор
+     * @throws InvalidPageRequestException если курсор повреждён
+     */
+    static OrderCursor decode(String value) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator > 0) {
+                return new OrderCursor(Long.parseLong(raw.substring(0, separator)),
+                        LocalDateTime.parse(raw.substring(separator + 1)));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // обрабатывается ниже вместе с курсором без разделителя
+        }
+        throw new InvalidPageRequestException("Invalid page cursor");
+    }
+}
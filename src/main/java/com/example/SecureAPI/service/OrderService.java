@@ -2,18 +2,35 @@ package com.example.SecureAPI.service;
 
 import com.example.SecureAPI.dto.OrderDTO;
 import com.example.SecureAPI.dto.OrderItemDTO;
+import com.example.SecureAPI.dto.OrderPageDTO;
+import com.example.SecureAPI.exception.InvalidCartRequestException;
+import com.example.SecureAPI.exception.OutOfStockException;
 import com.example.SecureAPI.model.*;
 import com.example.SecureAPI.repository.OrderRepository;
 import com.example.SecureAPI.repository.UserRepository;
 import com.example.SecureAPI.repository.ProductRepository;
 import com.example.SecureAPI.repository.CartRepository;
+import com.example.SecureAPI.repository.CartItemRepository;
+import com.example.SecureAPI.repository.IdempotencyKeyRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Сервис для работы с заказами.
@@ -27,63 +44,248 @@ public class OrderService {
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
     private final CartRepository cartRepository; // ✅ Добавили
+    private final CartItemRepository cartItemRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final OrderSummaryService orderSummaries;
+    private final ObjectProvider<ProductCatalog> catalog;
+
+    @Value("${orders.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${orders.page.default-size:20}")
+    private int defaultPageSize;
 
     /**
      * Создаёт заказ на основе содержимого корзины пользователя.
+     * Если корзину изменили между чтением и оформлением, выбрасывается
+     * ObjectOptimisticLockingFailureException (повтор — в {@link CartService}).
+     * Остатки продуктов списываются последним шагом (см. {@link #reserveStock(Order)}).
+     * В той же транзакции заказ добавляется в сводку заказов пользователя ({@link OrderSummaryService}).
      * @param userId ID пользователя
      * @return DTO созданного заказа
+     * @throws OutOfStockException если остатка хотя бы одного продукта не хватает (заказ не создаётся)
      */
     @Transactional
     public OrderDTO createOrderFromCart(Long userId) {
-        // Получаем корзину пользователя
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
+        return createOrderFromCart(userId, null);
+    }
+
+    /**
+     * Создаёт заказ на основе содержимого корзины и в той же транзакции записывает ключ идемпотентности.
+     * @param userId ID пользователя
+     * @param claim ключ идемпотентности (null — без ключа)
+     * @return DTO созданного заказа
+     */
+    @Transactional
+    public OrderDTO createOrderFromCart(Long userId, IdempotencyService.Claim claim) {
+        return checkoutCart(userId, claim);
+    }
+
+    /**
+     * Создаёт заказ на основе содержимого корзины в уже открытой транзакции вызывающего.
+     * У метода нет своей транзакционной границы, поэтому ошибка оформления не помечает
+     * транзакцию вызывающего как rollback-only: он может откатить только этот заказ до точки
+     * сохранения и зафиксировать остальные (групповая фиксация в {@link AsyncCheckoutService}).
+     * @param userId ID пользователя
+     * @param claim ключ идемпотентности (null — без ключа)
+     * @return DTO созданного заказа
+     * @throws IllegalStateException если транзакция не открыта
+     */
+    public OrderDTO createOrderFromCartInCurrentTransaction(Long userId, IdempotencyService.Claim claim) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Checkout requires an active transaction");
+        }
+        return checkoutCart(userId, claim);
+    }
 
-        User user = userRepository.findById(userId).orElseThrow();
+    private OrderDTO checkoutCart(Long userId, IdempotencyService.Claim claim) {
+        // Получаем корзину пользователя вместе с позициями и продуктами одним запросом
+        Cart cart = cartRepository.findWithItemsByUserId(userId)
+                .orElseThrow(() -> new RuntimeException("Cart not found"));
+        // Корзина читается без блокировки; если её изменили после чтения, заказ собран бы
+        // по устаревшим позициям — транзакция откатывается, вызывающий повторяет оформление
+        if (cartRepository.incrementVersion(cart.getId(), cart.getVersion()) == 0) {
+            throw new ObjectOptimisticLockingFailureException(Cart.class, cart.getId());
+        }
 
-        BigDecimal totalPrice = cart.getItems().stream()
-                .map(item -> BigDecimal.valueOf(item.getProduct().getPrice())
-                        .multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Order order = newOrder(cart.getUser());
+        // Позиции сохраняются каскадом вместе с заказом: ID берутся из последовательностей,
+        // поэтому при flush заказ и все позиции уходят пачками INSERT
+        for (CartItem item : cart.getItems()) {
+            addLine(order, item.getProduct(), item.getQuantity());
+        }
+        order = orderRepository.saveAndFlush(order);
 
-        Order order = new Order();
-        order.setUser(user);
-        order.setTotalPrice(totalPrice);
-        order.setOrderDate(LocalDateTime.now());
-
-        order = orderRepository.save(order);
-
-        // 🔁 Сохраняем order один раз до использования в лямбде
-        Order savedOrder = order;
-
-        List<OrderItem> items = cart.getItems().stream()
-                .map(item -> {
-                    OrderItem orderItem = new OrderItem();
-                    orderItem.setProduct(item.getProduct());
-                    orderItem.setQuantity(item.getQuantity());
-                    orderItem.setPriceAtTime(BigDecimal.valueOf(item.getProduct().getPrice()));
-                    orderItem.setOrder(savedOrder); // ✅ Теперь можно использовать
-                    return orderItem;
-                })
-                .toList();
+        // Очищаем корзину одним DELETE
+        cartItemRepository.deleteByCartId(cart.getId());
 
-        order.setItems(items);
-        orderRepository.save(order);
+        recordClaim(claim, order);
+        orderSummaries.recordOrder(order);
+        reserveStock(order);
+        return convertToDTO(order);
+    }
 
-        // Очищаем корзину
-        cart.getItems().clear();
-        cartRepository.save(cart);
+    /**
+     * Создаёт заказ из переданных позиций (например, из гостевой корзины, которая хранится не в базе).
+     * Продукты читаются одним запросом; позиции с удалёнными продуктами пропускаются.
+     * @param userId ID пользователя, на которого оформляется заказ
+     * @param items количество по ID продукта
+     * @return DTO созданного заказа
+     * @throws InvalidCartRequestException если не осталось ни одной позиции
+     */
+    @Transactional
+    public OrderDTO createOrder(Long userId, Map<Long, Integer> items) {
+        return createOrder(userId, items, null);
+    }
 
+    /**
+     * Создаёт заказ из переданных позиций и в той же транзакции записывает ключ идемпотентности.
+     * @param userId ID пользователя, на которого оформляется заказ
+     * @param items количество по ID продукта
+     * @param claim ключ идемпотентности (null — без ключа)
+     * @return DTO созданного заказа
+     */
+    @Transactional
+    public OrderDTO createOrder(Long userId, Map<Long, Integer> items, IdempotencyService.Claim claim) {
+        Order order = newOrder(userRepository.getReferenceById(userId));
+        for (Product product : productRepository.findAllById(items.keySet())) {
+            addLine(order, product, items.get(product.getId()));
+        }
+        if (order.getItems().isEmpty()) {
+            throw new InvalidCartRequestException("Cart is empty");
+        }
+        order = orderRepository.saveAndFlush(order);
+        recordClaim(claim, order);
+        orderSummaries.recordOrder(order);
+        reserveStock(order);
         return convertToDTO(order);
     }
 
     /**
-     * Получает все заказы пользователя по его ID.
+     * Возвращает заказ по ID.
+     * @param orderId ID заказа
+     * @return DTO заказа или пусто, если заказа нет
+     */
+    @Transactional
+    public Optional<OrderDTO> getOrder(Long orderId) {
+        return orderRepository.findById(orderId).map(this::convertToDTO);
+    }
+
+    /**
+     * Записывает ключ идемпотентности; если ключ уже записан и действует, INSERT нарушает
+     * первичный ключ и откатывает заказ. Истёкшая, но ещё не удалённая очисткой строка
+     * того же ключа сначала удаляется.
+     */
+    private void recordClaim(IdempotencyService.Claim claim, Order order) {
+        if (claim != null) {
+            idempotencyKeyRepository.deleteExpired(claim.keyHash(), Instant.now());
+            idempotencyKeyRepository.insert(claim.keyHash(), order.getId(), claim.expiresAt());
+        }
+    }
+
+    /**
+     * Списывает остатки продуктов заказа одной пачкой условных UPDATE.
+     *
+     * Вызывается после всех остальных записей транзакции (заказ уже сброшен в базу): строки
+     * продуктов остаются заблокированными до фиксации, и популярный продукт не держится
+     * заблокированным, пока вставляются заказ и его позиции. Если хотя бы одного продукта
+     * не хватает, исключение откатывает всю транзакцию вместе с уже списанными остатками.
+     * После фиксации продукты помечаются в каталоге, чтобы он подтянул новые остатки.
+     */
+    private void reserveStock(Order order) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItem item : order.getItems()) {
+            if (item.getProduct().getStock() != null) {
+                quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        List<Long> insufficient = productRepository.reserveStock(quantities);
+        if (!insufficient.isEmpty()) {
+            throw new OutOfStockException(insufficient);
+        }
+        ProductCatalog productCatalog = catalog.getIfAvailable();
+        if (productCatalog != null && !quantities.isEmpty()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        productCatalog.markStockChanged(quantities.keySet());
+                    }
+                });
+            } else {
+                productCatalog.markStockChanged(quantities.keySet());
+            }
+        }
+    }
+
+    /**
+     * Создаёт пустой заказ. Время заказа обрезается до микросекунд — точности, с которой его
+     * хранит база, — чтобы DTO и сводка совпадали с сохранённым заказом.
+     */
+    private static Order newOrder(User user) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setTotalPrice(BigDecimal.ZERO);
+        order.setOrderDate(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        return order;
+    }
+
+    /**
+     * Добавляет позицию в заказ по текущей цене продукта и увеличивает сумму заказа.
+     */
+    private static void addLine(Order order, Product product, int quantity) {
+        BigDecimal price = BigDecimal.valueOf(product.getPrice());
+        OrderItem orderItem = new OrderItem();
+        orderItem.setProduct(product);
+        orderItem.setQuantity(quantity);
+        orderItem.setPriceAtTime(price);
+        orderItem.setOrder(order);
+        order.getItems().add(orderItem);
+        order.setTotalPrice(order.getTotalPrice().add(price.multiply(BigDecimal.valueOf(quantity))));
+    }
+
+    /**
+     * Возвращает одну страницу истории заказов пользователя, новые заказы первыми (keyset-пагинация
+     * по (order_date, id), индекс idx_orders_user_id_order_date).
+     * Страница читается двумя запросами независимо от числа заказов и позиций: заказы страницы,
+     * затем позиции всех этих заказов одним IN.
      * @param userId ID пользователя
-     * @return список заказов
+     * @param after курсор из предыдущей страницы или null для первой страницы
+     * @param limit размер страницы (не больше максимума, 0 — размер по умолчанию)
+     * @return страница заказов с курсором следующей страницы
      */
-    public List<Order> getAllOrdersByUserId(Long userId) {
-        return orderRepository.findByUserId(userId);
+    @Transactional
+    public OrderPageDTO getOrderHistory(Long userId, String after, int limit) {
+        int pageSize = limit <= 0 ? Math.min(defaultPageSize, maxPageSize) : Math.min(limit, maxPageSize);
+        OrderCursor cursor = after == null || after.isBlank() ? null : OrderCursor.decode(after);
+
+        // Берём на одну строку больше, чтобы без COUNT узнать, есть ли следующая страница
+        Limit fetch = Limit.of(pageSize + 1);
+        List<Object[]> rows = cursor == null
+                ? orderRepository.findHistoryPage(userId, fetch)
+                : orderRepository.findHistoryPageAfter(userId, cursor.orderDate(), cursor.id(), fetch);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        if (rows.isEmpty()) {
+            return new OrderPageDTO(List.of(), null);
+        }
+
+        Map<Long, List<OrderItemDTO>> items = new HashMap<>();
+        List<Long> orderIds = rows.stream().map(row -> (Long) row[0]).toList();
+        for (Object[] row : orderRepository.findItemRows(orderIds)) {
+            items.computeIfAbsent((Long) row[0], id -> new ArrayList<>())
+                    .add(new OrderItemDTO((Long) row[1], (Integer) row[2], (BigDecimal) row[3]));
+        }
+        List<OrderDTO> orders = rows.stream()
+                .map(row -> new OrderDTO((Long) row[0], userId, (BigDecimal) row[1], (LocalDateTime) row[2],
+                        items.getOrDefault((Long) row[0], List.of())))
+                .toList();
+
+        OrderDTO last = orders.get(orders.size() - 1);
+        String nextCursor = hasMore ? new OrderCursor(last.getId(), last.getOrderDate()).encode() : null;
+        return new OrderPageDTO(orders, nextCursor);
     }
 
     /**
@@ -0,0 +1,138 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.repository.OrderRepository;
+import com.example.SecureAPI.repository.OrderSummaryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OrderSummaryRebuilder — пересчёт таблицы order_summaries из orders.
+ *
+ * Пользователи делятся на диапазоны ID по chunk-size; диапазоны пересчитываются параллельно
+ * в threads потоках, каждый отдельной короткой транзакцией (удалить сводки диапазона и вставить
+ * их заново одним INSERT ... SELECT ... GROUP BY). Оформление заказов во время пересчёта
+ * не останавливается. Заказ, записавший сводку до удаления или после вставки диапазона,
+ * учитывается как обычно (его транзакция ждёт блокировку строки сводки). Но первый заказ
+ * пользователя без сводки может вставить её между удалением и вставкой диапазона — тогда
+ * вставка нарушает первичный ключ, транзакция диапазона откатывается, и диапазон пересчитывается
+ * заново (до MAX_CHUNK_ATTEMPTS раз): к повтору этот заказ уже зафиксирован и попадает в пересчёт.
+ *
+ * Если при запуске таблица сводок пуста, а заказы есть (первый запуск с этой таблицей),
+ * пересчёт выполняется в фоне автоматически (orders.summary.rebuild-on-startup).
+ */
+@Component
+public class OrderSummaryRebuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderSummaryRebuilder.class);
+
+    private static final int MAX_CHUNK_ATTEMPTS = 5;
+
+    private final OrderSummaryRepository summaryRepository;
+    private final OrderRepository orderRepository;
+    private final OrderSummaryService summaryService;
+    private final int threads;
+    private final int chunkSize;
+    private final boolean rebuildOnStartup;
+
+    public OrderSummaryRebuilder(OrderSummaryRepository summaryRepository,
+                                 OrderRepository orderRepository,
+                                 OrderSummaryService summaryService,
+                                 @Value("${orders.summary.rebuild.threads:4}") int threads,
+                                 @Value("${orders.summary.rebuild.chunk-size:10000}") int chunkSize,
+                                 @Value("${orders.summary.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.summaryRepository = summaryRepository;
+        this.orderRepository = orderRepository;
+        this.summaryService = summaryService;
+        this.threads = Math.max(1, threads);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildIfEmpty() {
+        if (!rebuildOnStartup || summaryRepository.count() > 0 || orderRepository.count() == 0) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                logger.warn("Initial order summary rebuild failed", e);
+            }
+        }, "order-summary-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Пересчитывает все сводки.
+     *
+     * @return число записанных сводок (пользователей с заказами)
+     * @throws IllegalStateException если пересчёт диапазона не удался (остальные диапазоны уже пересчитаны)
+     */
+    public int rebuild() {
+        long startedAt = System.nanoTime();
+        long maxUserId = summaryRepository.maxUserId();
+        long guestUserId = summaryService.guestUserId();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "order-summary-rebuild-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (long from = 1; from <= maxUserId; from += chunkSize) {
+                long first = from;
+                long last = Math.min(from + chunkSize - 1, maxUserId);
+                chunks.add(executor.submit(() -> rebuildChunk(first, last, guestUserId)));
+            }
+            int written = 0;
+            for (Future<Integer> chunk : chunks) {
+                written += chunk.get();
+            }
+            logger.info("Rebuilt {} order summaries in {} chunks in {} ms",
+                    written, chunks.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            return written;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Order summary rebuild failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Order summary rebuild interrupted", e);
+        } finally {
+            executor.shutdownNow();
+            summaryService.invalidateAll();
+        }
+    }
+
+    /**
+     * Пересчитывает один диапазон, повторяя его, если параллельный заказ вставил сводку
+     * пользователя из диапазона после её удаления.
+     */
+    private int rebuildChunk(long first, long last, long guestUserId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return summaryRepository.rebuildRange(first, last, guestUserId);
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= MAX_CHUNK_ATTEMPTS) {
+                    throw e;
+                }
+                logger.debug("Order summaries {}..{} changed during rebuild (attempt {}), retrying", first, last, attempt);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.OrderSummaryDTO;
+import com.example.SecureAPI.model.Order;
+import com.example.SecureAPI.repository.OrderSummaryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * OrderSummaryService — сводка заказов пользователя (число заказов, сумма покупок, последний заказ).
+ *
+ * Сводка хранится строкой order_summaries и обновляется в транзакции каждого заказа
+ * ({@link OrderService}), поэтому чтение — одна строка по ключу, сколько бы заказов ни было.
+ * Перед таблицей — кэш в памяти на cache-size пользователей; запись пользователя сбрасывается
+ * после фиксации его заказа и живёт не дольше cache-ttl (заказы через другие экземпляры
+ * приложения этот экземпляр не видит).
+ *
+ * Заказы гостей (служебный пользователь cart.guest.order-user-id) в сводки не попадают:
+ * иначе каждое оформление гостя обновляло бы одну и ту же строку и держало её блокировку
+ * до фиксации, а заказы гостей только вставляются и друг с другом не конкурируют.
+ *
+ * Сводка, прочитанная из базы до фиксации нового заказа, не должна попасть в кэш после сброса:
+ * для этого каждый сброс увеличивает счётчик полосы пользователя и затем удаляет запись из кэша,
+ * а чтение кладёт сводку в кэш, только если счётчик не менялся с начала чтения, и проверяет
+ * счётчик ещё раз после записи: если сброс успел между проверкой и записью, запись удаляется.
+ */
+@Service
+public class OrderSummaryService {
+
+    private static final int STRIPES = 64;
+
+    private final OrderSummaryRepository summaryRepository;
+    private final int cacheSize;
+    private final long cacheTtlMillis;
+    private final Long guestUserId;
+    private final Map<Long, Entry> cache = new ConcurrentHashMap<>();
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+
+    public OrderSummaryService(OrderSummaryRepository summaryRepository,
+                               @Value("${orders.summary.cache-size:10000}") int cacheSize,
+                               @Value("${orders.summary.cache-ttl:5m}") Duration cacheTtl,
+                               @Value("${cart.guest.order-user-id:1}") Long guestUserId) {
+        this.summaryRepository = summaryRepository;
+        this.cacheSize = Math.max(0, cacheSize);
+        this.cacheTtlMillis = cacheTtl.toMillis();
+        this.guestUserId = guestUserId;
+    }
+
+    /**
+     * Возвращает сводку заказов пользователя.
+     *
+     * @param userId ID пользователя
+     * @return сводка; для пользователя без заказов — нулевая
+     */
+    public OrderSummaryDTO getSummary(Long userId) {
+        long now = System.currentTimeMillis();
+        Entry cached = cache.get(userId);
+        if (cached != null && cached.expiresAtMillis() > now) {
+            return cached.summary();
+        }
+        int stripe = stripe(userId);
+        long generation = invalidations.get(stripe);
+        OrderSummaryDTO summary = summaryRepository.findById(userId)
+                .map(row -> new OrderSummaryDTO(row.getUserId(), row.getOrderCount(), row.getTotalSpent(), row.getLastOrderDate()))
+                .orElseGet(() -> new OrderSummaryDTO(userId, 0, BigDecimal.ZERO, null));
+        if (cacheSize > 0 && invalidations.get(stripe) == generation) {
+            if (cache.size() >= cacheSize) {
+                evict(now);
+            }
+            Entry entry = new Entry(summary, now + cacheTtlMillis);
+            cache.put(userId, entry);
+            // Сброс между проверкой и put: счётчик уже увеличен, а его remove мог пройти до put
+            if (invalidations.get(stripe) != generation) {
+                cache.remove(userId, entry);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Добавляет заказ в сводку пользователя. Вызывается в транзакции заказа;
+     * кэш пользователя сбрасывается после её фиксации. Заказы гостей пропускаются.
+     *
+     * @param order сохранённый заказ
+     */
+    void recordOrder(Order order) {
+        Long userId = order.getUser().getId();
+        if (userId.equals(guestUserId)) {
+            return;
+        }
+        summaryRepository.addOrder(userId, order.getTotalPrice(), order.getOrderDate());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(userId);
+                }
+            });
+        } else {
+            invalidate(userId);
+        }
+    }
+
+    /**
+     * @return ID служебного пользователя гостевых заказов (его сводка не ведётся)
+     */
+    Long guestUserId() {
+        return guestUserId;
+    }
+
+    /**
+     * Сбрасывает весь кэш (после перестроения таблицы).
+     */
+    void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            invalidations.incrementAndGet(i);
+        }
+        cache.clear();
+    }
+
+    private void invalidate(Long userId) {
+        invalidations.incrementAndGet(stripe(userId));
+        cache.remove(userId);
+    }
+
+    /**
+     * Освобождает место в заполненном кэше: сначала истёкшие записи, при необходимости — произвольные.
+     */
+    private void evict(long now) {
+        cache.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+        Iterator<Long> keys = cache.keySet().iterator();
+        while (cache.size() >= cacheSize && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static int stripe(Long userId) {
+        return Math.floorMod(Long.hashCode(userId), STRIPES);
+    }
+
+    private record Entry(OrderSummaryDTO summary, long expiresAtMillis) {}
+}
@@ -0,0 +1,298 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.ProductPageDTO;
+import com.example.SecureAPI.dto.ProductSort;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ProductCatalog — каталог продуктов в памяти в виде неизменяемого снимка (copy-on-write).
+ *
+ * Чтение — это одно volatile-чтение ссылки на снимок: без блокировок и без запросов к базе.
+ * Запись (создание продукта) строит новый снимок из старого и атомарно подменяет ссылку,
+ * поэтому читатели всегда видят целостный каталог. Записи редкие, они сериализуются
+ * монитором, как и полная перезагрузка.
+ *
+ * Каждая подмена снимка увеличивает версию каталога — по ней кэш сериализованных
+ * ответов ({@link ProductResponseCache}) понимает, что его содержимое устарело.
+ *
+ * Полная перезагрузка из базы выполняется при запуске и периодически — она подтягивает
+ * продукты, добавленные другими экземплярами приложения или напрямую в базу. Из того же
+ * набора продуктов перестраивается поисковый индекс ({@link ProductSearchIndex}).
+ *
+ * Остатки, списанные оформлением заказа, попадают в снимок без полной перезагрузки: после
+ * фиксации заказа его продукты помечаются ({@link #markStockChanged}), и раз в
+ * stock-sync-interval-ms остатки помеченных продуктов читаются из базы одним запросом
+ * и подменяются в снимке. Поэтому остаток в ответах каталога отстаёт от базы не больше
+ * чем на этот интервал (по умолчанию секунда).
+ *
+ * В снимке хранятся копии сущностей, не связанные с EntityManager, поэтому изменения
+ * управляемых сущностей в транзакциях не попадают в каталог в обход записи.
+ *
+ * Метрики:
+ * - products.catalog.hits — чтения, обслуженные из снимка
+ * - products.catalog.misses — поиск по ID, не найденный в снимке (идёт в базу)
+ * - products.catalog.refresh — время полной перезагрузки
+ * - products.catalog.size — количество продуктов в снимке
+ */
+@Component
+@ConditionalOnProperty(name = "products.catalog.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalog.class);
+
+    private static final Map<ProductSort, Comparator<Product>> ORDERS = new EnumMap<>(Map.of(
+            ProductSort.ID, Comparator.comparingLong(Product::getId),
+            ProductSort.NAME, Comparator.comparing(Product::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                    .thenComparingLong(Product::getId),
+            ProductSort.PRICE, Comparator.comparingDouble(Product::getPrice).thenComparingLong(Product::getId)));
+
+    private final ProductRepository productRepository;
+    private final ProductSearchIndex searchIndex;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer refreshTimer;
+
+    private final Set<Long> staleStock = ConcurrentHashMap.newKeySet();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public ProductCatalog(ProductRepository productRepository, ProductSearchIndex searchIndex, MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.hits = Counter.builder("products.catalog.hits").register(meterRegistry);
+        this.misses = Counter.builder("products.catalog.misses").register(meterRegistry);
+        this.refreshTimer = Timer.builder("products.catalog.refresh").register(meterRegistry);
+        Gauge.builder("products.catalog.size", this, catalog -> catalog.snapshot.byId().size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Загружает каталог при запуске, до приёма запросов.
+     */
+    @PostConstruct
+    void init() {
+        refresh();
+    }
+
+    /**
+     * Возвращает версию текущего снимка. Меняется при каждой записи и перезагрузке.
+     *
+     * @return версия каталога
+     */
+    public long version() {
+        return snapshot.version();
+    }
+
+    /**
+     * Возвращает все продукты, упорядоченные по ID.
+     *
+     * @return неизменяемый список продуктов
+     */
+    public List<Product> getAll() {
+        hits.increment();
+        return snapshot.sorted().get(ProductSort.ID);
+    }
+
+    /**
+     * Ищет продукт по ID. Если в снимке его нет, проверяет базу (продукт мог быть добавлен
+     * другим экземпляром приложения) и при успехе добавляет его в каталог.
+     *
+     * @param id ID продукта
+     * @return продукт, если он существует
+     */
+    public Optional<Product> findById(Long id) {
+        Product product = snapshot.byId().get(id);
+        if (product != null) {
+            hits.increment();
+            return Optional.of(product);
+        }
+        misses.increment();
+        return productRepository.findById(id).map(this::add);
+    }
+
+    /**
+     * Ищет продукты по списку ID. Отсутствующие в снимке ID проверяются в базе одним запросом.
+     *
+     * @param ids ID продуктов
+     * @return найденные продукты (несуществующие ID пропускаются)
+     */
+    public List<Product> findAllById(Collection<Long> ids) {
+        Map<Long, Product> byId = snapshot.byId();
+        List<Product> found = new ArrayList<>(ids.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Product product = byId.get(id);
+            if (product != null) {
+                found.add(product);
+            } else {
+                missing.add(id);
+            }
+        }
+        hits.increment(found.size());
+        if (!missing.isEmpty()) {
+            misses.increment(missing.size());
+            productRepository.findAllById(missing).forEach(product -> found.add(add(product)));
+        }
+        return found;
+    }
+
+    /**
+     * Возвращает страницу продуктов, начинающуюся сразу после курсора.
+     *
+     * @param sort         порядок сортировки
+     * @param cursor       курсор предыдущей страницы или null
+     * @param pageSize     размер страницы
+     * @param includeTotal нужно ли вернуть общее количество продуктов
+     * @return страница продуктов
+     */
+    ProductPageDTO page(ProductSort sort, ProductCursor cursor, int pageSize, boolean includeTotal) {
+        hits.increment();
+        Snapshot current = snapshot;
+        List<Product> ordered = current.sorted().get(sort);
+
+        int from = 0;
+        if (cursor != null) {
+            Product probe = new Product();
+            probe.setId(cursor.id());
+            probe.setName(cursor.name());
+            probe.setPrice(cursor.price());
+            int found = Collections.binarySearch(ordered, probe, ORDERS.get(sort));
+            from = found >= 0 ? found + 1 : -(found + 1);
+        }
+        int to = Math.min(from + pageSize, ordered.size());
+
+        List<Product> items = ordered.subList(from, to);
+        String nextCursor = to < ordered.size() ? ProductCursor.after(sort, items.get(items.size() - 1)).encode() : null;
+        Long total = includeTotal ? (long) ordered.size() : null;
+        return new ProductPageDTO(items, nextCursor, total);
+    }
+
+    /**
+     * Добавляет (или заменяет) продукт в каталоге, подменяя снимок.
+     * Вызывается после успешного сохранения продукта в базе.
+     *
+     * @param product сохранённый продукт
+     * @return копия продукта, хранящаяся в каталоге
+     */
+    public synchronized Product add(Product product) {
+        Product copy = copyOf(product);
+        Map<Long, Product> byId = new HashMap<>(snapshot.byId());
+        byId.put(copy.getId(), copy);
+        snapshot = Snapshot.of(byId, snapshot.version() + 1);
+        return copy;
+    }
+
+    /**
+     * Полностью перезагружает каталог из базы и перестраивает по новому снимку поисковый индекс.
+     */
+    @Scheduled(fixedDelayString = "${products.catalog.refresh-interval-ms:300000}",
+            initialDelayString = "${products.catalog.refresh-interval-ms:300000}")
+    public synchronized void refresh() {
+        refreshTimer.record(() -> {
+            Map<Long, Product> byId = new HashMap<>();
+            for (Product product : productRepository.findAll()) {
+                byId.put(product.getId(), copyOf(product));
+            }
+            snapshot = Snapshot.of(byId, snapshot.version() + 1);
+        });
+        logger.debug("Product catalog refreshed: {} products", snapshot.byId().size());
+        // Список по ID: номера документов индекса идут в порядке ID, как и при добавлении новых продуктов
+        searchIndex.rebuild(snapshot.sorted().get(ProductSort.ID));
+    }
+
+    /**
+     * Помечает продукты, остаток которых изменился в базе (вызывается после фиксации заказа).
+     * Новые остатки попадут в снимок при следующей синхронизации ({@link #syncStock()}).
+     *
+     * @param productIds ID продуктов
+     */
+    public void markStockChanged(Collection<Long> productIds) {
+        staleStock.addAll(productIds);
+    }
+
+    /**
+     * Читает из базы остатки помеченных продуктов и подменяет снимок. Порядок сортировки
+     * от остатка не зависит, поэтому списки не пересортировываются.
+     */
+    @Scheduled(fixedDelayString = "${products.catalog.stock-sync-interval-ms:1000}",
+            initialDelayString = "${products.catalog.stock-sync-interval-ms:1000}")
+    public void syncStock() {
+        if (staleStock.isEmpty()) {
+            return;
+        }
+        // ID снимаются до чтения: изменение, зафиксированное после чтения, пометит продукт снова
+        List<Long> ids = new ArrayList<>(staleStock);
+        ids.forEach(staleStock::remove);
+        List<Product> fresh = productRepository.findAllById(ids);
+        synchronized (this) {
+            Snapshot current = snapshot;
+            Map<Long, Product> updated = new HashMap<>();
+            for (Product product : fresh) {
+                Product cached = current.byId().get(product.getId());
+                if (cached != null && !Objects.equals(cached.getStock(), product.getStock())) {
+                    Product copy = copyOf(cached);
+                    copy.setStock(product.getStock());
+                    updated.put(copy.getId(), copy);
+                }
+            }
+            if (!updated.isEmpty()) {
+                snapshot = current.withReplaced(updated, current.version() + 1);
+            }
+        }
+    }
+
+    private static Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setName(product.getName());
+        copy.setPrice(product.getPrice());
+        copy.setStock(product.getStock());
+        return copy;
+    }
+
+    /**
+     * Неизменяемый снимок каталога: версия, индекс по ID и заранее отсортированные списки
+     * для каждого порядка сортировки.
+     */
+    private record Snapshot(long version, Map<Long, Product> byId, Map<ProductSort, List<Product>> sorted) {
+
+        static final Snapshot EMPTY = of(Map.of(), 0);
+
+        static Snapshot of(Map<Long, Product> byId, long version) {
+            Map<ProductSort, List<Product>> sorted = new EnumMap<>(ProductSort.class);
+            for (ProductSort sort : ProductSort.values()) {
+                List<Product> ordered = new ArrayList<>(byId.values());
+                ordered.sort(ORDERS.get(sort));
+                sorted.put(sort, Collections.unmodifiableList(ordered));
+            }
+            return new Snapshot(version, Map.copyOf(byId), sorted);
+        }
+
+        /**
+         * Снимок с заменёнными продуктами, положение которых в сортировках не меняется.
+         */
+        Snapshot withReplaced(Map<Long, Product> replaced, long version) {
+            Map<Long, Product> updatedById = new HashMap<>(byId);
+            updatedById.putAll(replaced);
+            Map<ProductSort, List<Product>> updatedSorted = new EnumMap<>(ProductSort.class);
+            sorted.forEach((sort, ordered) -> updatedSorted.put(sort, ordered.stream()
+                    .map(product -> replaced.getOrDefault(product.getId(), product))
+                    .toList()));
+            return new Snapshot(version, Map.copyOf(updatedById), updatedSorted);
+        }
+    }
+}
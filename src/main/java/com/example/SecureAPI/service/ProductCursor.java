@@ -0,0 +1,71 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.ProductSort;
+import com.example.SecureAPI.exception.InvalidPageRequestException;
+import com.example.SecureAPI.model.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации продуктов: ключ сортировки и ID последнего продукта страницы.
+ *
+ * Для клиента курсор непрозрачен — это Base64url-строка вида {@code i:<id>},
+ * {@code n:<id>:<name>} или {@code p:<id>:<price>}. Префикс фиксирует порядок сортировки,
+ * поэтому курсор одного порядка нельзя передать в запрос с другим.
+ *
+ * @param sort  порядок сортировки
+ * @param id    ID последнего продукта на странице
+ * @param name  название последнего продукта (для NAME)
+ * @param price цена последнего продукта (для PRICE)
+ */
+record ProductCursor(ProductSort sort, long id, String name, double price) {
+
+    /**
+     * Курсор, указывающий на позицию сразу после данного продукта.
+     */
+    static ProductCursor after(ProductSort sort, Product product) {
+        return new ProductCursor(sort, product.getId(), product.getName(), product.getPrice());
+    }
+
+    /**
+     * Кодирует курсор в строку для параметра after.
+     */
+    String encode() {
+        String raw = switch (sort) {
+            case ID -> "i:" + id;
+            case NAME -> "n:" + id + ":" + name;
+            case PRICE -> "p:" + id + ":" + price;
+        };
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разбирает курсор из параметра after.
+     *
+     * @param value строка курсора
+     * @param sort  порядок сортировки текущего запроса
+     * @return курсор
+     * @throws InvalidPageRequestException если курсор повреждён или создан для другого порядка
+     */
+    static ProductCursor decode(String value, ProductSort sort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            char type = parts[0].length() == 1 ? parts[0].charAt(0) : '?';
+            long id = Long.parseLong(parts[1]);
+            if (sort == ProductSort.ID && type == 'i' && parts.length == 2) {
+                return new ProductCursor(sort, id, null, 0);
+            }
+            if (sort == ProductSort.NAME && type == 'n' && parts.length == 3) {
+                return new ProductCursor(sort, id, parts[2], 0);
+            }
+            if (sort == ProductSort.PRICE && type == 'p' && parts.length == 3) {
+                return new ProductCursor(sort, id, null, Double.parseDouble(parts[2]));
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            // обрабатывается ниже вместе с несовпадением порядка сортировки
+        }
+        throw new InvalidPageRequestException("Invalid page cursor");
+    }
+}
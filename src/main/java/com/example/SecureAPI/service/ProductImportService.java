@@ -0,0 +1,335 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.ImportReport;
+import com.example.SecureAPI.dto.ProductDTO;
+import com.example.SecureAPI.exception.InvalidImportException;
+import com.example.SecureAPI.model.Product;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * ProductImportService — массовый импорт продуктов из JSON-массива или CSV.
+ *
+ * Вход читается потоком: строки разбираются и проверяются (Bean Validation, как у ProductDTO)
+ * по мере поступления и накапливаются в пачку. Пачка вставляется в отдельной транзакции
+ * одним JDBC batch — это возможно, потому что ID продуктов берутся из последовательности
+ * с шагом 50, а не из IDENTITY-столбца.
+ *
+ * Ошибка в строке не прерывает импорт: некорректные строки попадают в отчёт, а если база
+ * отклонила пачку целиком, её строки вставляются по одной, чтобы найти виновную.
+ * Уже вставленные пачки остаются в базе.
+ *
+ * После импорта каталог в памяти перезагружается один раз, а поисковый индекс
+ * дополняется после каждой пачки.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+
+    private static final int MAX_BATCH_SIZE = 10_000;
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transaction;
+    private final ProductCatalog catalog;
+    private final ProductSearchIndex searchIndex;
+    private final int defaultBatchSize;
+    private final int maxReportedErrors;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ProductImportService(ObjectMapper objectMapper,
+                                Validator validator,
+                                PlatformTransactionManager transactionManager,
+                                ObjectProvider<ProductCatalog> catalog,
+                                ProductSearchIndex searchIndex,
+                                @Value("${products.import.batch-size:1000}") int defaultBatchSize,
+                                @Value("${products.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.catalog = catalog.getIfAvailable();
+        this.searchIndex = searchIndex;
+        this.defaultBatchSize = defaultBatchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    /**
+     * Импортирует продукты из JSON-массива объектов вида {"name": "...", "price": 1.0, "stock": 25}
+     * (stock необязателен: без него остаток продукта не учитывается).
+     *
+     * @param in        тело запроса
+     * @param batchSize размер пачки (null — из настроек)
+     * @return отчёт об импорте
+     * @throws InvalidImportException если вход не является JSON-массивом
+     */
+    public ImportReport importJson(InputStream in, Integer batchSize) throws IOException {
+        Job job = new Job(batchSize);
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidImportException("Expected a JSON array of products");
+            }
+            long row = 0;
+            try {
+                for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                    row++;
+                    if (token == null) {
+                        job.reject(row, "Unexpected end of input");
+                        break;
+                    }
+                    JsonNode node = parser.readValueAsTree();
+                    try {
+                        job.accept(row, objectMapper.treeToValue(node, ProductDTO.class));
+                    } catch (JsonProcessingException e) {
+                        job.reject(row, e.getOriginalMessage());
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                // Синтаксическая ошибка: дальше разбирать нельзя, импортированное до неё остаётся
+                job.reject(row, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+        return job.finish();
+    }
+
+    /**
+     * Импортирует продукты из CSV (RFC 4180, UTF-8) с заголовком, содержащим столбцы name и price
+     * и необязательный столбец stock (пустое значение — остаток не учитывается).
+     *
+     * @param in        тело запроса
+     * @param batchSize размер пачки (null — из настроек)
+     * @return отчёт об импорте
+     * @throws InvalidImportException если нет заголовка или в нём нет нужных столбцов
+     */
+    public ImportReport importCsv(InputStream in, Integer batchSize) throws IOException {
+        Job job = new Job(batchSize);
+        CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024));
+
+        List<String> header = reader.next();
+        if (header == null) {
+            throw new InvalidImportException("CSV header is missing");
+        }
+        List<String> columns = header.stream().map(c -> c.trim().toLowerCase(Locale.ROOT)).toList();
+        int nameColumn = columns.indexOf("name");
+        int priceColumn = columns.indexOf("price");
+        int stockColumn = columns.indexOf("stock");
+        if (nameColumn < 0 || priceColumn < 0) {
+            throw new InvalidImportException("CSV header must contain 'name' and 'price' columns");
+        }
+
+        long row = 0;
+        for (List<String> record = reader.next(); record != null; record = reader.next()) {
+            row++;
+            if (record.size() != columns.size()) {
+                job.reject(row, "Expected " + columns.size() + " fields but found " + record.size());
+                continue;
+            }
+            ProductDTO dto = new ProductDTO();
+            dto.setName(record.get(nameColumn));
+            try {
+                dto.setPrice(Double.parseDouble(record.get(priceColumn).trim()));
+            } catch (NumberFormatException e) {
+                job.reject(row, "price: not a number '" + record.get(priceColumn) + "'");
+                continue;
+            }
+            if (stockColumn >= 0 && !record.get(stockColumn).isBlank()) {
+                try {
+                    dto.setStock(Integer.parseInt(record.get(stockColumn).trim()));
+                } catch (NumberFormatException e) {
+                    job.reject(row, "stock: not an integer '" + record.get(stockColumn) + "'");
+                    continue;
+                }
+            }
+            job.accept(row, dto);
+        }
+        return job.finish();
+    }
+
+    /**
+     * Состояние одного импорта: текущая пачка, счётчики и ошибки.
+     */
+    private final class Job {
+        private final long startedAt = System.nanoTime();
+        private final int batchSize;
+        private final List<ProductDTO> pending;
+        private final List<Long> pendingRows;
+        private final List<ImportReport.RowError> errors = new ArrayList<>();
+        private long received;
+        private long imported;
+        private long failed;
+
+        Job(Integer requestedBatchSize) {
+            int size = requestedBatchSize != null ? requestedBatchSize : defaultBatchSize;
+            this.batchSize = Math.max(1, Math.min(size, MAX_BATCH_SIZE));
+            this.pending = new ArrayList<>(batchSize);
+            this.pendingRows = new ArrayList<>(batchSize);
+        }
+
+        void accept(long row, ProductDTO dto) {
+            received++;
+            Set<ConstraintViolation<ProductDTO>> violations = validator.validate(dto);
+            if (!violations.isEmpty()) {
+                addError(row, violations.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                return;
+            }
+            pending.add(dto);
+            pendingRows.add(row);
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void reject(long row, String message) {
+            received++;
+            addError(row, message);
+        }
+
+        ImportReport finish() {
+            flush();
+            if (imported > 0 && catalog != null) {
+                catalog.refresh();
+            }
+            long durationMillis = (System.nanoTime() - startedAt) / 1_000_000;
+            logger.info("Product import finished: {} received, {} imported, {} failed in {} ms",
+                    received, imported, failed, durationMillis);
+            return new ImportReport(received, imported, failed, errors, durationMillis);
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                List<Product> saved = transaction.execute(status -> persist(pending));
+                imported += saved.size();
+                saved.forEach(searchIndex::add);
+            } catch (RuntimeException batchFailure) {
+                // База отклонила пачку: вставляем строки по одной, чтобы найти некорректные
+                for (int i = 0; i < pending.size(); i++) {
+                    ProductDTO dto = pending.get(i);
+                    try {
+                        List<Product> saved = transaction.execute(status -> persist(List.of(dto)));
+                        imported++;
+                        saved.forEach(searchIndex::add);
+                    } catch (RuntimeException rowFailure) {
+                        addError(pendingRows.get(i), NestedExceptionUtils.getMostSpecificCause(rowFailure).getMessage());
+                    }
+                }
+            }
+            pending.clear();
+            pendingRows.clear();
+        }
+
+        private List<Product> persist(List<ProductDTO> dtos) {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            List<Product> products = new ArrayList<>(dtos.size());
+            for (ProductDTO dto : dtos) {
+                Product product = new Product();
+                product.setName(dto.getName());
+                product.setPrice(dto.getPrice());
+                product.setStock(dto.getStock());
+                entityManager.persist(product);
+                products.add(product);
+            }
+            entityManager.flush();
+            entityManager.clear();
+            return products;
+        }
+
+        private void addError(long row, String message) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ImportReport.RowError(row, message));
+            }
+        }
+    }
+
+    /**
+     * Потоковый разбор CSV по RFC 4180: поля в кавычках могут содержать запятые,
+     * удвоенные кавычки и переводы строк. Пустые строки пропускаются.
+     */
+    static final class CsvReader {
+        private final BufferedReader reader;
+        private boolean eof;
+
+        CsvReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return поля следующей записи или null в конце входа
+         */
+        List<String> next() throws IOException {
+            while (!eof) {
+                List<String> record = readRecord();
+                if (record.size() > 1 || !record.get(0).isEmpty()) {
+                    return record;
+                }
+            }
+            return null;
+        }
+
+        private List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                int c = reader.read();
+                if (c == -1) {
+                    eof = true;
+                    fields.add(field.toString());
+                    return fields;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.SecureAPI.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ProductResponseCache — готовые JSON-ответы списка продуктов для текущей версии каталога.
+ *
+ * Одинаковый запрос к каталогу сериализуется один раз на версию {@link ProductCatalog}:
+ * ответ хранится в виде байтов (как есть и сжатых gzip) вместе с сильным ETag,
+ * вычисленным по содержимому. Поэтому ETag совпадает на всех экземплярах приложения
+ * и после перезапуска, пока каталог не изменился.
+ *
+ * При смене версии каталога все ответы сбрасываются целиком. Число разных запросов
+ * (сочетаний параметров пагинации) на версию ограничено: сверх лимита ответы
+ * сериализуются, но не запоминаются.
+ */
+@Component
+@ConditionalOnProperty(name = "products.catalog.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductResponseCache {
+
+    private final ProductCatalog catalog;
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+
+    private volatile Generation generation = new Generation(-1);
+
+    public ProductResponseCache(ProductCatalog catalog,
+                                ObjectMapper objectMapper,
+                                @Value("${products.response-cache.max-entries:256}") int maxEntries) {
+        this.catalog = catalog;
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Возвращает готовый ответ для запроса. Тело запрашивается у поставщика
+     * только если для текущей версии каталога ответа ещё нет.
+     *
+     * @param key  ключ запроса (сочетание параметров)
+     * @param body поставщик тела ответа
+     * @return сериализованный ответ
+     */
+    public Rendered get(String key, Supplier<Object> body) {
+        Generation current = currentGeneration();
+        Rendered rendered = current.entries().get(key);
+        if (rendered != null) {
+            return rendered;
+        }
+        // Версия прочитана до тела, поэтому тело не старше версии, под которой оно сохраняется
+        rendered = render(body.get());
+        if (current.entries().size() < maxEntries) {
+            current.entries().putIfAbsent(key, rendered);
+        }
+        return rendered;
+    }
+
+    /**
+     * Проверяет, принимает ли клиент ответ в gzip (по заголовку Accept-Encoding).
+     *
+     * @param acceptEncoding значение заголовка или null
+     * @return true, если gzip допустим
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            boolean disabled = false;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim().replace(" ", "");
+                if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) {
+                    disabled = true;
+                }
+            }
+            if (!disabled) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Generation currentGeneration() {
+        long version = catalog.version();
+        Generation current = generation;
+        if (current.version() != version) {
+            current = new Generation(version);
+            generation = current;
+        }
+        return current;
+    }
+
+    private Rendered render(Object body) {
+        try {
+            byte[] identity = objectMapper.writeValueAsBytes(body);
+            String tag = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(MessageDigest.getInstance("SHA-256").digest(identity))
+                    .substring(0, 27);
+            return new Rendered(identity, gzip(identity), "\"" + tag + "\"", "\"" + tag + "-gz\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize product list", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Готовые ответы одной версии каталога.
+     */
+    private record Generation(long version, Map<String, Rendered> entries) {
+        Generation(long version) {
+            this(version, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Сериализованный ответ: JSON как есть и в gzip, ETag для каждого варианта.
+     * Массивы не изменяются после создания и отдаются в ответ без копирования.
+     *
+     * @param identity  JSON в UTF-8
+     * @param gzip      тот же JSON, сжатый gzip
+     * @param etag      ETag несжатого варианта
+     * @param gzipEtag  ETag сжатого варианта
+     */
+    public record Rendered(byte[] identity, byte[] gzip, String etag, String gzipEtag) {
+
+        /**
+         * Проверяет заголовок If-None-Match: совпадение с любым из вариантов означает,
+         * что у клиента актуальная копия.
+         *
+         * @param ifNoneMatch значение заголовка или null
+         * @return true, если можно ответить 304 Not Modified
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "Rendered[" + etag + ", " + identity.length + " bytes, gzip " + gzip.length + " bytes]";
+        }
+    }
+}
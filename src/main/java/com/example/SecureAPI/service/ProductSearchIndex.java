@@ -0,0 +1,361 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * ProductSearchIndex — инвертированный индекс по названиям продуктов в памяти.
+ *
+ * Название разбивается на слова (последовательности букв и цифр), слова приводятся
+ * к нижнему регистру (в том числе кириллица) и «ё» заменяется на «е». Для каждого слова
+ * хранится список номеров документов (posting list) в виде массива int, отсортированного
+ * по возрастанию: номера выдаются по порядку, поэтому новые документы дописываются в конец.
+ *
+ * Поиск возвращает продукты, в названии которых есть все слова запроса. Выше ранжируются
+ * короткие названия (слова запроса составляют бо́льшую их часть), при равенстве — более
+ * ранние продукты.
+ *
+ * Индекс строится параллельно и дополняется при создании продуктов. Полностью он перестраивается
+ * вместе с каталогом ({@link ProductCatalog#refresh()}) из того же набора продуктов — при запуске
+ * и периодически, так что продукты, добавленные другими экземплярами приложения или напрямую
+ * в базу, становятся доступны поиску. Если каталог выключен (products.catalog.enabled=false),
+ * индекс сам загружает продукты из базы при запуске и с тем же интервалом.
+ * Запись сериализуется монитором; поиск не берёт блокировок: списки публикуются
+ * через ConcurrentHashMap, а таблица документов — через volatile-ссылку.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final int CHUNK_SIZE = 16_384;
+
+    private final ProductRepository productRepository;
+
+    /**
+     * Загружает ли индекс продукты сам; при включённом каталоге его перестраивает каталог.
+     */
+    private final boolean selfRefresh;
+
+    private volatile Segment segment = new Segment(new ConcurrentHashMap<>(), Documents.EMPTY);
+
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${products.catalog.enabled:true}") boolean catalogEnabled) {
+        this.productRepository = productRepository;
+        this.selfRefresh = !catalogEnabled;
+    }
+
+    /**
+     * Строит индекс из базы при запуске, до приёма запросов (если каталог выключен).
+     */
+    @PostConstruct
+    void init() {
+        if (selfRefresh) {
+            refresh();
+        }
+    }
+
+    /**
+     * Периодически перестраивает индекс из базы, если каталог выключен.
+     */
+    @Scheduled(fixedDelayString = "${products.catalog.refresh-interval-ms:300000}",
+            initialDelayString = "${products.catalog.refresh-interval-ms:300000}")
+    void scheduledRefresh() {
+        if (selfRefresh) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        long startedAt = System.nanoTime();
+        List<Product> products = productRepository.findAll();
+        rebuild(products);
+        logger.info("Product search index built: {} products in {} ms",
+                products.size(), (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    /**
+     * Находит продукты, в названии которых есть все слова запроса.
+     *
+     * @param query строка запроса
+     * @param limit максимальное число результатов
+     * @return ID найденных продуктов в порядке релевантности
+     */
+    public long[] search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+
+        Segment current = segment;
+        int[][] lists = new int[terms.size()][];
+        int[] sizes = new int[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            Postings postings = current.terms().get(terms.get(i));
+            if (postings == null) {
+                return new long[0];
+            }
+            lists[i] = postings.docs();
+            sizes[i] = postings.size();
+        }
+        // Таблица документов читается после списков: в ней уже есть все документы из них
+        Documents documents = current.documents();
+
+        // Пересечение начинаем с самого короткого списка
+        Integer[] order = IntStream.range(0, lists.length).boxed()
+                .sorted(Comparator.comparingInt(i -> sizes[i]))
+                .toArray(Integer[]::new);
+        int[] shortest = lists[order[0]];
+        int[] positions = new int[lists.length];
+
+        TopDocuments top = new TopDocuments(limit, documents.tokenCounts());
+        candidates:
+        for (int c = 0; c < sizes[order[0]]; c++) {
+            // Короче, чем из одних слов запроса, название не бывает, а дальше идут только
+            // более поздние документы: если все лучшие уже такой длины, их не вытеснить
+            if (top.isSettled(terms.size())) {
+                break;
+            }
+            int doc = shortest[c];
+            for (int k = 1; k < order.length; k++) {
+                int list = order[k];
+                int position = advance(lists[list], sizes[list], positions[list], doc);
+                positions[list] = position;
+                if (position == sizes[list]) {
+                    break candidates;
+                }
+                if (lists[list][position] != doc) {
+                    continue candidates;
+                }
+            }
+            top.offer(doc);
+        }
+
+        int[] docs = top.sorted();
+        long[] productIds = new long[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            productIds[i] = documents.productIds()[docs[i]];
+        }
+        return productIds;
+    }
+
+    /**
+     * Добавляет сохранённый продукт в индекс.
+     *
+     * @param product продукт с назначенным ID
+     */
+    public synchronized void add(Product product) {
+        Segment current = segment;
+        List<String> terms = tokenize(product.getName());
+
+        Documents documents = current.documents().append(product.getId(), terms.size());
+        int doc = documents.size() - 1;
+        current.publish(documents);
+
+        for (String term : terms) {
+            current.terms().compute(term, (key, postings) -> postings == null
+                    ? new Postings(new int[]{doc}, 1)
+                    : postings.append(doc));
+        }
+    }
+
+    /**
+     * Полностью перестраивает индекс. Продукты разбиваются на части, которые разбираются
+     * параллельно; затем списки частей склеиваются по порядку, так что остаются отсортированными.
+     *
+     * @param products все продукты каталога
+     */
+    public synchronized void rebuild(List<Product> products) {
+        int size = products.size();
+        long[] productIds = new long[size];
+        int[] tokenCounts = new int[size];
+
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<Map<String, Postings>> partial = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> {
+                    Map<String, Postings> local = new HashMap<>();
+                    int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+                    for (int doc = chunk * CHUNK_SIZE; doc < end; doc++) {
+                        Product product = products.get(doc);
+                        List<String> terms = tokenize(product.getName());
+                        productIds[doc] = product.getId();
+                        tokenCounts[doc] = terms.size();
+                        for (String term : terms) {
+                            int current = doc;
+                            local.merge(term, new Postings(new int[]{current}, 1),
+                                    (existing, single) -> existing.append(current));
+                        }
+                    }
+                    return local;
+                })
+                .toList();
+
+        ConcurrentHashMap<String, Postings> terms = new ConcurrentHashMap<>();
+        for (Map<String, Postings> local : partial) {
+            local.forEach((term, postings) -> terms.merge(term, postings, Postings::concat));
+        }
+        segment = new Segment(terms, new Documents(productIds, tokenCounts, size));
+    }
+
+    /**
+     * Разбивает текст на нормализованные слова без повторов.
+     *
+     * @param text название продукта или строка запроса
+     * @return слова в порядке первого появления
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        Set<String> terms = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return List.copyOf(terms);
+    }
+
+    /**
+     * Первая позиция в списке, начиная с from, значение в которой не меньше doc
+     * (экспоненциальный поиск, затем двоичный).
+     */
+    private static int advance(int[] docs, int size, int from, int doc) {
+        int bound = 1;
+        while (from + bound < size && docs[from + bound] < doc) {
+            bound <<= 1;
+        }
+        int low = from + (bound >> 1);
+        int high = Math.min(from + bound, size - 1);
+        if (low >= size) {
+            return size;
+        }
+        int found = Arrays.binarySearch(docs, low, high + 1, doc);
+        return found >= 0 ? found : -(found + 1);
+    }
+
+    /**
+     * Набор документов, по которым ведётся поиск: словарь и таблица документов.
+     * Словарь дополняется на месте, таблица документов заменяется целиком при каждом добавлении.
+     */
+    private static final class Segment {
+        private final ConcurrentHashMap<String, Postings> terms;
+        private volatile Documents documents;
+
+        Segment(ConcurrentHashMap<String, Postings> terms, Documents documents) {
+            this.terms = terms;
+            this.documents = documents;
+        }
+
+        ConcurrentHashMap<String, Postings> terms() {
+            return terms;
+        }
+
+        Documents documents() {
+            return documents;
+        }
+
+        void publish(Documents documents) {
+            this.documents = documents;
+        }
+    }
+
+    /**
+     * Список документов одного слова. Массив может быть длиннее size: новые номера
+     * записываются в свободный хвост, а затем публикуется новый объект с большим size,
+     * поэтому читатели старого объекта никогда не видят недописанных элементов.
+     */
+    private record Postings(int[] docs, int size) {
+
+        Postings append(int doc) {
+            int[] target = size < docs.length ? docs : Arrays.copyOf(docs, Math.max(4, size * 2));
+            target[size] = doc;
+            return new Postings(target, size + 1);
+        }
+
+        Postings concat(Postings next) {
+            int[] merged = Arrays.copyOf(docs, size + next.size);
+            System.arraycopy(next.docs, 0, merged, size, next.size);
+            return new Postings(merged, merged.length);
+        }
+    }
+
+    /**
+     * Таблица документов: ID продукта и число слов в названии по номеру документа.
+     * Как и списки документов, дописывается в свободный хвост массивов.
+     */
+    private record Documents(long[] productIds, int[] tokenCounts, int size) {
+
+        static final Documents EMPTY = new Documents(new long[0], new int[0], 0);
+
+        Documents append(long productId, int tokenCount) {
+            long[] ids = productIds;
+            int[] counts = tokenCounts;
+            if (size == ids.length) {
+                int capacity = Math.max(16, size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            ids[size] = productId;
+            counts[size] = tokenCount;
+            return new Documents(ids, counts, size + 1);
+        }
+    }
+
+    /**
+     * Ограниченная куча лучших документов: меньше слов в названии — выше, при равенстве — меньший номер.
+     */
+    private static final class TopDocuments {
+        private final int limit;
+        private final int[] tokenCounts;
+        private final PriorityQueue<Integer> worstFirst;
+
+        TopDocuments(int limit, int[] tokenCounts) {
+            this.limit = limit;
+            this.tokenCounts = tokenCounts;
+            this.worstFirst = new PriorityQueue<>(Math.min(limit, 1024) + 1, this::compareWorstFirst);
+        }
+
+        void offer(int doc) {
+            if (worstFirst.size() < limit) {
+                worstFirst.add(doc);
+            } else if (compareWorstFirst(doc, worstFirst.peek()) > 0) {
+                worstFirst.poll();
+                worstFirst.add(doc);
+            }
+        }
+
+        boolean isSettled(int shortestPossible) {
+            return worstFirst.size() == limit && tokenCounts[worstFirst.peek()] <= shortestPossible;
+        }
+
+        int[] sorted() {
+            int[] docs = new int[worstFirst.size()];
+            for (int i = docs.length - 1; i >= 0; i--) {
+                docs[i] = worstFirst.poll();
+            }
+            return docs;
+        }
+
+        private int compareWorstFirst(int a, int b) {
+            int byLength = Integer.compare(tokenCounts[b], tokenCounts[a]);
+            return byLength != 0 ? byLength : Integer.compare(b, a);
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package com.example.SecureAPI.service;
 
 import com.example.SecureAPI.dto.ProductDTO;
+import com.example.SecureAPI.dto.ProductPageDTO;
+import com.example.SecureAPI.dto.ProductSort;
 import com.example.SecureAPI.model.Product;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Интерфейс сервиса для работы с продуктами.
  */
 public interface ProductService {
     List<Product> getAllProducts();
+    Optional<Product> getProductById(Long id);
+    List<Product> getProductsByIds(Collection<Long> ids);
+    List<Product> searchProducts(String query, int limit);
+    ProductPageDTO getProductPage(ProductSort sort, String after, int limit, boolean includeTotal);
     Product createProduct(ProductDTO dto);
 }
\ No newline at end of file
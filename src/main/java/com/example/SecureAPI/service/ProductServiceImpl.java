@@ -1,34 +1,156 @@
 package com.example.SecureAPI.service;
 
 import com.example.SecureAPI.dto.ProductDTO;
+import com.example.SecureAPI.dto.ProductPageDTO;
+import com.example.SecureAPI.dto.ProductSort;
 import com.example.SecureAPI.model.Product;
 import com.example.SecureAPI.repository.ProductRepository;
-import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Реализация сервиса продуктов.
- * Предоставляет методы для получения и добавления товаров.
+ * Предоставляет методы для получения (целиком и постранично) и добавления товаров.
+ * Чтения обслуживаются из каталога в памяти ({@link ProductCatalog}), если он включён,
+ * иначе — запросами к базе.
  */
 @Service
-@AllArgsConstructor
 public class ProductServiceImpl implements ProductService {
 
     private final ProductRepository productRepository;
 
+    /**
+     * Каталог в памяти; null, если products.catalog.enabled=false.
+     */
+    private final ProductCatalog catalog;
+
+    private final ProductSearchIndex searchIndex;
+
+    /**
+     * Жёсткий максимум размера страницы: больший limit в запросе уменьшается до него.
+     */
+    private final int maxPageSize;
+
+    /**
+     * Размер страницы, если limit не указан.
+     */
+    private final int defaultPageSize;
+
     private static final Logger logger = LoggerFactory.getLogger(ProductServiceImpl.class);
 
+    public ProductServiceImpl(ProductRepository productRepository,
+                              ObjectProvider<ProductCatalog> catalog,
+                              ProductSearchIndex searchIndex,
+                              @Value("${products.page.max-size:100}") int maxPageSize,
+                              @Value("${products.page.default-size:20}") int defaultPageSize) {
+        this.productRepository = productRepository;
+        this.catalog = catalog.getIfAvailable();
+        this.searchIndex = searchIndex;
+        this.maxPageSize = maxPageSize;
+        this.defaultPageSize = Math.min(defaultPageSize, maxPageSize);
+    }
+
     /**
      * Возвращает список всех доступных продуктов.
      * @return список продуктов
      */
     @Override
     public List<Product> getAllProducts() {
-        return productRepository.findAll();
+        return catalog != null ? catalog.getAll() : productRepository.findAll();
+    }
+
+    /**
+     * Возвращает продукт по ID.
+     * @param id ID продукта
+     * @return продукт, если он существует
+     */
+    @Override
+    public Optional<Product> getProductById(Long id) {
+        return catalog != null ? catalog.findById(id) : productRepository.findById(id);
+    }
+
+    /**
+     * Получает продукты по списку ID: из каталога в памяти, остальные — одним запросом к базе.
+     * @param ids ID продуктов
+     * @return найденные продукты (несуществующие ID пропускаются)
+     */
+    @Override
+    public List<Product> getProductsByIds(Collection<Long> ids) {
+        return catalog != null ? catalog.findAllById(ids) : productRepository.findAllById(ids);
+    }
+
+    /**
+     * Ищет продукты по словам из названия через инвертированный индекс.
+     * @param query строка поиска
+     * @param limit максимальное число результатов (не больше максимума страницы)
+     * @return найденные продукты в порядке релевантности
+     */
+    @Override
+    public List<Product> searchProducts(String query, int limit) {
+        int size = limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        long[] ids = searchIndex.search(query, size);
+        if (catalog != null) {
+            return Arrays.stream(ids)
+                    .mapToObj(id -> catalog.findById(id).orElse(null))
+                    .filter(Objects::nonNull)
+                    .toList();
+        }
+        Map<Long, Product> found = productRepository.findAllById(Arrays.stream(ids).boxed().toList()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return Arrays.stream(ids).mapToObj(found::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Возвращает одну страницу продуктов (keyset-пагинация).
+     * Страница начинается сразу после курсора и не зависит от сдвигов OFFSET,
+     * поэтому стоимость запроса не растёт с номером страницы.
+     * @param sort порядок сортировки (по ID, названию или цене; внутри равных значений — по ID)
+     * @param after курсор из предыдущей страницы или null для первой страницы
+     * @param limit размер страницы (не больше максимума, 0 — размер по умолчанию)
+     * @param includeTotal нужно ли посчитать общее количество продуктов
+     * @return страница продуктов с курсором следующей страницы
+     */
+    @Override
+    public ProductPageDTO getProductPage(ProductSort sort, String after, int limit, boolean includeTotal) {
+        int pageSize = limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        ProductCursor cursor = after == null || after.isBlank() ? null : ProductCursor.decode(after, sort);
+        if (catalog != null) {
+            return catalog.page(sort, cursor, pageSize, includeTotal);
+        }
+
+        // Берём на одну строку больше, чтобы без COUNT узнать, есть ли следующая страница
+        Limit fetch = Limit.of(pageSize + 1);
+        List<Product> rows = switch (sort) {
+            case ID -> cursor == null
+                    ? productRepository.findAllByOrderByIdAsc(fetch)
+                    : productRepository.findByIdGreaterThanOrderByIdAsc(cursor.id(), fetch);
+            case NAME -> cursor == null
+                    ? productRepository.findAllByOrderByNameAscIdAsc(fetch)
+                    : productRepository.findPageAfterName(cursor.name(), cursor.id(), fetch);
+            case PRICE -> cursor == null
+                    ? productRepository.findAllByOrderByPriceAscIdAsc(fetch)
+                    : productRepository.findPageAfterPrice(cursor.price(), cursor.id(), fetch);
+        };
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Product> items = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? ProductCursor.after(sort, items.get(items.size() - 1)).encode() : null;
+        Long total = includeTotal ? productRepository.count() : null;
+
+        return new ProductPageDTO(items, nextCursor, total);
     }
 
     /**
@@ -41,6 +163,12 @@ public class ProductServiceImpl implements ProductService {
         Product product = new Product();
         product.setName(dto.getName());
         product.setPrice(dto.getPrice());
-        return productRepository.save(product);
+        product.setStock(dto.getStock());
+        Product saved = productRepository.save(product);
+        if (catalog != null) {
+            catalog.add(saved);
+        }
+        searchIndex.add(saved);
+        return saved;
     }
 }
\ No newline at end of file
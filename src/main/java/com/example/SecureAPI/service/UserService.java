@@ -5,12 +5,16 @@ import com.example.SecureAPI.dto.RegisterRequest;
 import com.example.SecureAPI.model.User;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Интерфейс сервиса для работы с пользователями.
+ * Регистрация и вход асинхронные: BCrypt выполняется в отдельном пуле потоков.
  */
 public interface UserService {
-    void register(RegisterRequest request);
-    AuthResponse login(String email, String password);
+    CompletableFuture<Void> register(RegisterRequest request);
+    CompletableFuture<AuthResponse> login(String email, String password);
+    CompletableFuture<AuthResponse> login(String email, String password, String guestToken);
+    boolean logout(String token);
     List<User> getAllUsers();
 }
\ No newline at end of file
@@ -3,39 +3,71 @@ package com.example.SecureAPI.service;
 import com.example.SecureAPI.dto.AuthResponse;
 import com.example.SecureAPI.dto.RegisterRequest;
 import com.example.SecureAPI.exception.InvalidCredentialsException;
+import com.example.SecureAPI.exception.PasswordHashingOverloadedException;
 import com.example.SecureAPI.exception.UserAlreadyExistsException;
 import com.example.SecureAPI.model.User;
 import com.example.SecureAPI.repository.UserRepository;
 import com.example.SecureAPI.security.JwtUtils;
-import lombok.AllArgsConstructor;
+import com.example.SecureAPI.security.PasswordHasher;
+import com.example.SecureAPI.security.TokenRevocationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Реализация сервиса пользователей.
  * Обрабатывает регистрацию, аутентификацию и управление пользователями.
+ *
+ * Хэширование и проверка паролей (BCrypt) выполняются в пуле {@link PasswordHasher},
+ * а не в потоке Tomcat: контроллер возвращает CompletableFuture и освобождает поток.
+ * Работа с базой после хэширования (сохранение пользователя, перенос корзины гостя,
+ * пересохранение пересчитанного хэша) продолжается
+ * в общем пуле задач приложения (applicationTaskExecutor), а не в пуле BCrypt: медленная база
+ * не должна занимать потоки, которые проверяют пароли всех остальных входов.
  */
 @Service
-@AllArgsConstructor
 public class UserServiceImpl implements UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
 
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final JwtUtils jwtUtils;
+    private final TokenRevocationService tokenRevocationService;
+    private final GuestCartService guestCartService;
+    private final Executor taskExecutor;
+
+    public UserServiceImpl(UserRepository userRepository,
+                           PasswordHasher passwordHasher,
+                           JwtUtils jwtUtils,
+                           TokenRevocationService tokenRevocationService,
+                           GuestCartService guestCartService,
+                           @Qualifier("applicationTaskExecutor") Executor taskExecutor) {
+        this.userRepository = userRepository;
+        this.passwordHasher = passwordHasher;
+        this.jwtUtils = jwtUtils;
+        this.tokenRevocationService = tokenRevocationService;
+        this.guestCartService = guestCartService;
+        this.taskExecutor = taskExecutor;
+    }
 
     /**
      * Регистрирует нового пользователя.
+     * Проверка email до хэширования отсекает почти все повторы; одновременные регистрации
+     * одного email ловит уникальный индекс users.email, и нарушение превращается в то же
+     * {@link UserAlreadyExistsException}.
      * @param request данные регистрации (email, пароль, имя, роль)
+     * @return future, завершающийся после сохранения пользователя
      */
     @Override
-    public void register(RegisterRequest request) {
+    public CompletableFuture<Void> register(RegisterRequest request) {
         Objects.requireNonNull(request, "Register request cannot be null");
 
         if (userRepository.findByEmail(request.getEmail()).isPresent()) {
@@ -44,33 +76,75 @@ public class UserServiceImpl implements UserService {
 
         logger.info("Registering user: {}", request.getEmail());
 
-        User user = new User();
-        user.setEmail(request.getEmail());
-        user.setPasswordHash(passwordEncoder.encode(request.getPassword()));
-        user.setName(request.getName());
-        user.setRole(normalizeRole(request.getRole()));
-
-        userRepository.save(user);
+        return passwordHasher.encode(request.getPassword()).thenAcceptAsync(passwordHash -> {
+            User user = new User();
+            user.setEmail(request.getEmail());
+            user.setPasswordHash(passwordHash);
+            user.setName(request.getName());
+            user.setRole(normalizeRole(request.getRole()));
+
+            try {
+                userRepository.save(user);
+            } catch (DataIntegrityViolationException e) {
+                throw new UserAlreadyExistsException("User with this email already exists");
+            }
+        }, taskExecutor);
     }
 
     /**
      * Аутентифицирует пользователя и возвращает токен.
+     * Если хэш пароля создан с другой стоимостью BCrypt, после успешного входа
+     * он пересчитывается в фоне с текущими настройками.
      * @param email email пользователя
      * @param password пароль пользователя
-     * @return DTO с JWT токеном и данными пользователя
+     * @return future с DTO, содержащим JWT токен и данные пользователя
      */
     @Override
-    public AuthResponse login(String email, String password) {
+    public CompletableFuture<AuthResponse> login(String email, String password) {
+        return login(email, password, null);
+    }
+
+    /**
+     * Аутентифицирует пользователя и переносит в его корзину корзину гостя, если передан токен гостя.
+     * @param email email пользователя
+     * @param password пароль пользователя
+     * @param guestToken токен гостя из заголовка X-Guest-Token (может быть null)
+     * @return future с DTO, содержащим JWT токен и данные пользователя
+     */
+    @Override
+    public CompletableFuture<AuthResponse> login(String email, String password, String guestToken) {
         var user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new InvalidCredentialsException("Invalid credentials"));
 
-        if (!passwordEncoder.matches(password, user.getPasswordHash())) {
-            throw new InvalidCredentialsException("Invalid credentials");
-        }
+        return passwordHasher.matches(password, user.getPasswordHash()).thenApplyAsync(matches -> {
+            if (!matches) {
+                throw new InvalidCredentialsException("Invalid credentials");
+            }
+
+            if (passwordHasher.needsRehash(user.getPasswordHash())) {
+                rehashPassword(user, password);
+            }
 
-        String token = jwtUtils.generateToken(user.getId(), user.getRole());
+            if (guestToken != null) {
+                guestCartService.mergeInto(user.getId(), guestToken);
+            }
 
-        return new AuthResponse(token, user.getRole(), user.getId());
+            String token = jwtUtils.generateToken(user.getId(), user.getRole());
+
+            return new AuthResponse(token, user.getRole(), user.getId());
+        }, taskExecutor);
+    }
+
+    /**
+     * Завершает сеанс: отзывает переданный токен до истечения его срока.
+     * @param token JWT-токен из заголовка Authorization
+     * @return true, если токен валиден и отозван
+     */
+    @Override
+    public boolean logout(String token) {
+        return jwtUtils.verify(token)
+                .map(tokenRevocationService::revoke)
+                .orElse(false);
     }
 
     /**
@@ -82,6 +156,26 @@ public class UserServiceImpl implements UserService {
         return userRepository.findAll();
     }
 
+    /**
+     * Пересчитывает хэш пароля с текущей стоимостью BCrypt, не задерживая ответ на логин.
+     * Если очередь хэширования занята, пересчёт откладывается до следующего входа.
+     * @param user пользователь
+     * @param password проверенный пароль в открытом виде
+     */
+    private void rehashPassword(User user, String password) {
+        String oldHash = user.getPasswordHash();
+        try {
+            passwordHasher.encode(password)
+                    .thenAcceptAsync(newHash -> userRepository.updatePasswordHash(user.getId(), oldHash, newHash), taskExecutor)
+                    .exceptionally(e -> {
+                        logger.warn("Failed to rehash password for user {}", user.getId(), e);
+                        return null;
+                    });
+        } catch (PasswordHashingOverloadedException e) {
+            logger.debug("Password rehash for user {} postponed: hashing queue is full", user.getId());
+        }
+    }
+
     /**
      * Нормализует роль пользователя (приводит к верхнему регистру).
      * @param role исходная роль
@@ -0,0 +1,69 @@
+package com.example.SecureAPI.benchmark;
+
+import com.example.SecureAPI.security.JwtClaims;
+import com.example.SecureAPI.security.JwtUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH-бенчмарк проверки JWT-токена в JwtFilter.
+ *
+ * Сравнивает:
+ * - threeParsesPerRequest — старую схему: validateToken + extractUserId + extractRole (три полных разбора);
+ * - verifyWithoutCache — один вызов verify() с отключённым кэшем (один разбор и одна проверка HS512);
+ * - verifyCached — verify() при повторном использовании токена (только SHA-256 и поиск в кэше).
+ *
+ * Запуск: через main() из IDE или
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.SecureAPI.benchmark.JwtVerificationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private JwtUtils uncachedJwtUtils;
+    private JwtUtils cachedJwtUtils;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        uncachedJwtUtils = new JwtUtils(0);
+        cachedJwtUtils = new JwtUtils(10_000);
+        token = cachedJwtUtils.generateToken(42L, "CLIENT");
+        cachedJwtUtils.verify(token);
+    }
+
+    @Benchmark
+    public void threeParsesPerRequest(Blackhole blackhole) {
+        if (uncachedJwtUtils.validateToken(token)) {
+            blackhole.consume(uncachedJwtUtils.extractUserId(token));
+            blackhole.consume(uncachedJwtUtils.extractRole(token));
+        }
+    }
+
+    @Benchmark
+    public JwtClaims verifyWithoutCache() {
+        return uncachedJwtUtils.verify(token).orElseThrow();
+    }
+
+    @Benchmark
+    public JwtClaims verifyCached() {
+        return cachedJwtUtils.verify(token).orElseThrow();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.SecureAPI.benchmark;
+
+import com.example.SecureAPI.SecureApiApplication;
+import com.example.SecureAPI.dto.ImportReport;
+import com.example.SecureAPI.service.ProductImportService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH-бенчмарк пропускной способности массового импорта: 100 000 строк CSV за один вызов.
+ *
+ * Поднимает контекст приложения на H2 в памяти (режим совместимости с PostgreSQL)
+ * и импортирует через ProductImportService с разным размером пачки. batchSize=1 —
+ * базовая линия: одна транзакция и один INSERT на строку, как при поштучном добавлении.
+ * Строк в секунду = 100 000 / время одного вызова.
+ *
+ * Абсолютные числа на H2 выше, чем на PostgreSQL по сети (нет сетевых задержек),
+ * поэтому смотреть нужно на соотношение между размерами пачки.
+ *
+ * Запуск: через main() из IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class ProductImportBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private ProductImportService importService;
+    private JdbcTemplate jdbcTemplate;
+    private byte[] csv;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SecureApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:import;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN");
+        importService = context.getBean(ProductImportService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        StringBuilder builder = new StringBuilder("name,price\n");
+        for (int i = 0; i < ROWS; i++) {
+            builder.append("Товар ").append(i).append(',').append(1 + i % 1000).append(".99\n");
+        }
+        csv = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTable() {
+        jdbcTemplate.update("delete from products");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ImportReport importCsv() throws IOException {
+        ImportReport report = importService.importCsv(new ByteArrayInputStream(csv), batchSize);
+        if (report.getImported() != ROWS) {
+            throw new IllegalStateException("Imported " + report.getImported() + " of " + ROWS);
+        }
+        return report;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ProductImportBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
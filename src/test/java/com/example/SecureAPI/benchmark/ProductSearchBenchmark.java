@@ -0,0 +1,122 @@
+package com.example.SecureAPI.benchmark;
+
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.service.ProductSearchIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH-бенчмарк поиска по ProductSearchIndex на каталоге из 1 000 000 продуктов.
+ *
+ * Названия собираются из 2–6 слов словаря в 20 000 слов (латиница и кириллица),
+ * частоты слов неравномерные: первые слова словаря встречаются в десятках тысяч названий.
+ * Запросы берутся из реальных названий, поэтому почти всегда что-то находят:
+ * - singleTerm — одно слово;
+ * - twoTerms — два слова из одного названия (пересечение списков);
+ * - frequentTerm — одно из самых частых слов (длинный список, отбор лучших 20).
+ *
+ * Режим SampleTime, поэтому в отчёте есть перцентили p0.99 и p0.999.
+ * Цель — p99 меньше миллисекунды.
+ *
+ * Запуск: через main() из IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProductSearchBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int VOCABULARY = 20_000;
+    private static final int QUERIES = 4096;
+    private static final int LIMIT = 20;
+
+    private ProductSearchIndex index;
+    private String[] singleTermQueries;
+    private String[] twoTermQueries;
+    private String[] frequentTermQueries;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = (i % 2 == 0 ? "товар" : "item") + Integer.toString(i, 36);
+        }
+
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        List<String[]> names = new ArrayList<>(QUERIES);
+        for (int i = 0; i < PRODUCTS; i++) {
+            String[] name = new String[2 + random.nextInt(5)];
+            for (int w = 0; w < name.length; w++) {
+                name[w] = words[skewed(random)];
+            }
+            Product product = new Product();
+            product.setId((long) i + 1);
+            product.setName(String.join(" ", name));
+            products.add(product);
+            if (i % (PRODUCTS / QUERIES) == 0 && names.size() < QUERIES) {
+                names.add(name);
+            }
+        }
+
+        index = new ProductSearchIndex(null, true);
+        index.rebuild(products);
+
+        singleTermQueries = new String[QUERIES];
+        twoTermQueries = new String[QUERIES];
+        frequentTermQueries = new String[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            String[] name = names.get(q);
+            singleTermQueries[q] = name[random.nextInt(name.length)];
+            twoTermQueries[q] = name[0] + " " + name[name.length - 1].toUpperCase();
+            frequentTermQueries[q] = words[random.nextInt(10)];
+        }
+    }
+
+    /**
+     * Индекс слова со смещённым распределением: малые индексы встречаются намного чаще.
+     */
+    private static int skewed(SplittableRandom random) {
+        double u = random.nextDouble();
+        return (int) (VOCABULARY * u * u * u);
+    }
+
+    @Benchmark
+    public long[] singleTerm() {
+        return index.search(singleTermQueries[next()], LIMIT);
+    }
+
+    @Benchmark
+    public long[] twoTerms() {
+        return index.search(twoTermQueries[next()], LIMIT);
+    }
+
+    @Benchmark
+    public long[] frequentTerm() {
+        return index.search(frequentTermQueries[next()], LIMIT);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (QUERIES - 1);
+        return cursor;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ProductSearchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
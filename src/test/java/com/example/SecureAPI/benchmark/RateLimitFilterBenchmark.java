@@ -0,0 +1,95 @@
+package com.example.SecureAPI.benchmark;
+
+import com.example.SecureAPI.security.RateLimitFilter;
+import com.example.SecureAPI.security.RateLimitProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH-бенчмарк накладных расходов RateLimitFilter на один запрос.
+ *
+ * Лимиты заведомо не достигаются, поэтому измеряется только стоимость поиска правила
+ * и CAS в ведре клиента:
+ * - withoutFilter — прямой вызов цепочки (базовая линия);
+ * - withFilter — запрос под правилом /auth/**;
+ * - withFilterManyClients — запросы от 1024 разных IP (разные вёдра и сегменты).
+ *
+ * Запуск: через main() из IDE; число потоков задаётся параметром JMH -t.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    private static final int CLIENTS = 1024;
+
+    private final FilterChain chain = (request, response) -> { };
+
+    private RateLimitFilter filter;
+    private MockHttpServletRequest[] requests;
+
+    @Setup
+    public void setUp() {
+        RateLimitProperties.Route auth = new RateLimitProperties.Route();
+        auth.setPattern("/auth/**");
+        auth.setCapacity(Integer.MAX_VALUE / 2);
+        auth.setRefillPerSecond(1_000_000_000);
+        RateLimitProperties.Route fallback = new RateLimitProperties.Route();
+        fallback.setPattern("/**");
+        fallback.setCapacity(Integer.MAX_VALUE / 2);
+        fallback.setRefillPerSecond(1_000_000_000);
+
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(List.of(auth, fallback));
+        filter = new RateLimitFilter(properties);
+
+        requests = new MockHttpServletRequest[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            requests[i] = new MockHttpServletRequest("POST", "/auth/login");
+            requests[i].setRemoteAddr("10.0." + (i / 256) + "." + (i % 256));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        int next;
+    }
+
+    @Benchmark
+    public void withoutFilter(ThreadState state) throws IOException, ServletException {
+        chain.doFilter(requests[0], state.response);
+    }
+
+    @Benchmark
+    public void withFilter(ThreadState state) throws IOException, ServletException {
+        filter.doFilter(requests[0], state.response, chain);
+    }
+
+    @Benchmark
+    public void withFilterManyClients(ThreadState state) throws IOException, ServletException {
+        state.next = (state.next + 1) & (CLIENTS - 1);
+        filter.doFilter(requests[state.next], state.response, chain);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RateLimitFilterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
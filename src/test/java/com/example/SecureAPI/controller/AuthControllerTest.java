@@ -11,16 +11,19 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.http.MediaType;
 
+import java.util.concurrent.CompletableFuture;
+
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 /**
  * Тесты для контроллера AuthController.
- * Проверяет работу эндпоинтов /auth/register и /auth/login.
+ * Проверяет работу эндпоинтов /auth/register, /auth/login и /auth/logout.
  */
 @ExtendWith(MockitoExtension.class)
 public class AuthControllerTest {
@@ -51,9 +54,15 @@ public class AuthControllerTest {
         request.setName("Test User");
         request.setRole("USER");
 
-        mockMvc.perform(post("/auth/register")
+        when(userService.register(request)).thenReturn(CompletableFuture.completedFuture(null));
+
+        MvcResult result = mockMvc.perform(post("/auth/register")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"email\":\"test@example.com\",\"password\":\"password\",\"name\":\"Test User\",\"role\":\"USER\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isCreated())
                 .andExpect(content().string("User registered"));
 
@@ -72,16 +81,40 @@ public class AuthControllerTest {
 
         AuthResponse fakeResponse = new AuthResponse("fake-jwt-token", "USER", 1L);
 
-        when(userService.login("test@example.com", "password")).thenReturn(fakeResponse);
+        when(userService.login("test@example.com", "password", null))
+                .thenReturn(CompletableFuture.completedFuture(fakeResponse));
 
-        mockMvc.perform(post("/auth/login")
+        MvcResult result = mockMvc.perform(post("/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"email\":\"test@example.com\",\"password\":\"password\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.token").value("fake-jwt-token"))
                 .andExpect(jsonPath("$.role").value("USER"))
                 .andExpect(jsonPath("$.userId").value(1));
     }
+
+    /**
+     * Тестирует POST /auth/logout.
+     * Отозванный токен — 204, невалидный или отсутствующий токен — 401.
+     */
+    @Test
+    void logout_ShouldRevokeTokenOrRejectInvalidOne() throws Exception {
+        when(userService.logout("valid-token")).thenReturn(true);
+        when(userService.logout("invalid-token")).thenReturn(false);
+
+        mockMvc.perform(post("/auth/logout").header("Authorization", "valid-token"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(post("/auth/logout").header("Authorization", "invalid-token"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/auth/logout"))
+                .andExpect(status().isUnauthorized());
+
+        verify(userService).logout("valid-token");
+    }
 }
 
 /**
@@ -1,8 +1,13 @@
 package com.example.SecureAPI.controller;
 
 import com.example.SecureAPI.dto.ProductDTO;
+import com.example.SecureAPI.dto.ProductPageDTO;
+import com.example.SecureAPI.dto.ProductSort;
 import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.service.ProductCatalog;
+import com.example.SecureAPI.service.ProductResponseCache;
 import com.example.SecureAPI.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,11 +16,17 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayInputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -42,11 +53,13 @@ public class ProductControllerTest {
     }
 
     /**
-     * Тестирует GET /products.
+     * Тестирует GET /products в старом режиме без пагинации.
      * Ожидается список продуктов в формате JSON.
      */
     @Test
     void getAllProducts_ShouldReturnListOfProducts() throws Exception {
+        ReflectionTestUtils.setField(productController, "unpagedListingEnabled", true);
+
         Product product1 = new Product();
         product1.setId(1L);
         product1.setName("Laptop");
@@ -71,6 +84,71 @@ public class ProductControllerTest {
                 .andExpect(jsonPath("$[1].price").value(499.99));
     }
 
+    /**
+     * Тестирует GET /products с параметрами пагинации.
+     * Ожидается страница продуктов и курсор следующей страницы.
+     */
+    @Test
+    void getAllProducts_ShouldReturnPage() throws Exception {
+        Product product = new Product();
+        product.setId(1L);
+        product.setName("Laptop");
+        product.setPrice(999.99);
+
+        when(productService.getProductPage(ProductSort.PRICE, "abc", 1, true))
+                .thenReturn(new ProductPageDTO(List.of(product), "next", 5L));
+
+        mockMvc.perform(get("/products").param("limit", "1").param("after", "abc")
+                        .param("sort", "PRICE").param("total", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].name").value("Laptop"))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.total").value(5));
+        verify(productService, never()).getAllProducts();
+    }
+
+    /**
+     * Тестирует ETag и 304 для готовых ответов каталога.
+     * Повторный запрос с If-None-Match не обращается к сервису, gzip отдаётся по Accept-Encoding.
+     */
+    @Test
+    void getAllProducts_ShouldServeCachedBytesWithETag() throws Exception {
+        ProductCatalog catalog = mock(ProductCatalog.class);
+        when(catalog.version()).thenReturn(1L);
+        ReflectionTestUtils.setField(productController, "responseCache",
+                new ProductResponseCache(catalog, new ObjectMapper(), 16));
+
+        Product product = new Product();
+        product.setId(1L);
+        product.setName("Laptop");
+        product.setPrice(999.99);
+        when(productService.getProductPage(ProductSort.ID, null, 0, false))
+                .thenReturn(new ProductPageDTO(List.of(product), null, null));
+
+        MvcResult first = mockMvc.perform(get("/products/public"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, public"))
+                .andExpect(jsonPath("$.items[0].name").value("Laptop"))
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/products/public").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        MvcResult gzipped = mockMvc.perform(get("/products/public").header(HttpHeaders.ACCEPT_ENCODING, "gzip, br"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+            assertArrayEquals(first.getResponse().getContentAsByteArray(), in.readAllBytes());
+        }
+
+        verify(productService, times(1)).getProductPage(ProductSort.ID, null, 0, false);
+    }
+
     /**
      * Тестирует POST /products.
      * Ожидается создание нового продукта и возврат его в ответе.
@@ -0,0 +1,45 @@
+package com.example.SecureAPI.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для BloomFilter.
+ * Проверяет отсутствие ложноотрицательных ответов и долю ложных срабатываний.
+ */
+public class BloomFilterTest {
+
+    @Test
+    void mightContain_ShouldFindEveryAddedValue() {
+        BloomFilter filter = new BloomFilter(10_000, 0.001);
+        String[] values = new String[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = UUID.randomUUID().toString();
+            filter.add(values[i]);
+        }
+
+        for (String value : values) {
+            assertTrue(filter.mightContain(value));
+        }
+    }
+
+    @Test
+    void mightContain_ShouldKeepFalsePositiveRateLow() {
+        BloomFilter filter = new BloomFilter(10_000, 0.001);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(UUID.randomUUID().toString());
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 500, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.SecureAPI.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для GuestTokenService: подпись, срок действия и отказ для подделанных токенов.
+ */
+public class GuestTokenServiceTest {
+
+    private final GuestTokenService guestTokens = new GuestTokenService("", Duration.ofHours(1));
+
+    /**
+     * Выпущенный токен возвращает тот же ID гостя до истечения срока.
+     */
+    @Test
+    void verify_ShouldReturnGuestIdUntilExpiry() {
+        UUID guestId = UUID.randomUUID();
+        String token = guestTokens.issue(guestId, 1_000).token();
+
+        assertEquals(Optional.of(guestId), guestTokens.verify(token, 1_000));
+        assertEquals(Optional.of(guestId), guestTokens.verify(token, 1_000 + Duration.ofMinutes(59).toMillis()));
+        assertTrue(guestTokens.verify(token, 1_000 + Duration.ofHours(1).toMillis()).isEmpty());
+    }
+
+    /**
+     * Токен с изменённым ID гостя, чужим ключом или в неверном формате отклоняется.
+     */
+    @Test
+    void verify_ShouldRejectTamperedTokens() {
+        String token = guestTokens.issue().token();
+        String other = guestTokens.issue().token();
+        String swapped = other.substring(0, other.indexOf('.')) + token.substring(token.indexOf('.'));
+        GuestTokenService otherKey = new GuestTokenService("", Duration.ofHours(1));
+
+        assertTrue(guestTokens.verify(swapped).isEmpty());
+        assertTrue(otherKey.verify(token).isEmpty());
+        assertTrue(guestTokens.verify("not-a-token").isEmpty());
+        assertTrue(guestTokens.verify("@@@.@@@").isEmpty());
+        assertTrue(guestTokens.verify(null).isEmpty());
+    }
+}
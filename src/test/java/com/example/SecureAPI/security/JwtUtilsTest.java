@@ -0,0 +1,54 @@
+package com.example.SecureAPI.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для JwtUtils.
+ * Проверяет однократную проверку токена через verify() и кэш проверенных токенов.
+ */
+public class JwtUtilsTest {
+
+    /**
+     * verify() возвращает userId и роль из валидного токена.
+     */
+    @Test
+    void verify_ShouldReturnClaimsForValidToken() {
+        JwtUtils jwtUtils = new JwtUtils(100);
+        String token = jwtUtils.generateToken(7L, "ADMIN");
+
+        JwtClaims claims = jwtUtils.verify(token).orElseThrow();
+
+        assertEquals(7L, claims.userId());
+        assertEquals("ADMIN", claims.role());
+        assertFalse(claims.isExpired(System.currentTimeMillis()));
+    }
+
+    /**
+     * Повторная проверка того же токена возвращает тот же объект из кэша.
+     */
+    @Test
+    void verify_ShouldReuseCachedClaims() {
+        JwtUtils jwtUtils = new JwtUtils(100);
+        String token = jwtUtils.generateToken(7L, "CLIENT");
+
+        JwtClaims first = jwtUtils.verify(token).orElseThrow();
+        JwtClaims second = jwtUtils.verify(token).orElseThrow();
+
+        assertSame(first, second);
+    }
+
+    /**
+     * Токен с изменённой подписью отклоняется.
+     */
+    @Test
+    void verify_ShouldRejectTamperedToken() {
+        JwtUtils jwtUtils = new JwtUtils(100);
+        String token = jwtUtils.generateToken(7L, "CLIENT");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertTrue(jwtUtils.verify(tampered).isEmpty());
+        assertTrue(jwtUtils.verify("not-a-token").isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.SecureAPI.security;
+
+import com.example.SecureAPI.exception.PasswordHashingOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для PasswordHasher.
+ * Проверяет хэширование в отдельном пуле, отказ при переполненной очереди и определение необходимости пересчёта хэша.
+ */
+public class PasswordHasherTest {
+
+    /**
+     * Хэш, созданный в пуле, проходит проверку matches().
+     */
+    @Test
+    void encodeAndMatches_ShouldRoundTrip() {
+        PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(4), new SimpleMeterRegistry(), 4, 1, 10);
+
+        String hash = hasher.encode("secret").join();
+
+        assertTrue(hasher.matches("secret", hash).join());
+        assertFalse(hasher.matches("wrong", hash).join());
+    }
+
+    /**
+     * При заполненной очереди задача сразу отклоняется.
+     */
+    @Test
+    void encode_ShouldRejectWhenQueueIsFull() throws InterruptedException {
+        PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(4), new SimpleMeterRegistry(), 4, 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Первая задача занимает единственный поток, пока её не отпустят, вторая ждёт в очереди
+        hasher.encode(new BlockingPassword(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        hasher.encode("second");
+
+        assertThrows(PasswordHashingOverloadedException.class, () -> hasher.encode("third"));
+        release.countDown();
+        hasher.shutdown();
+    }
+
+    /**
+     * Хэш с другой стоимостью BCrypt нужно пересчитать.
+     */
+    @Test
+    void needsRehash_ShouldCompareCost() {
+        PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(12), new SimpleMeterRegistry(), 12, 1, 10);
+
+        assertTrue(hasher.needsRehash("$2a$10$abcdefghijklmnopqrstuu"));
+        assertFalse(hasher.needsRehash("$2a$12$abcdefghijklmnopqrstuu"));
+        assertFalse(hasher.needsRehash("plain"));
+    }
+
+    /**
+     * Пароль, чтение которого блокируется до сигнала: BCrypt читает пароль через toString().
+     */
+    private record BlockingPassword(CountDownLatch started, CountDownLatch release) implements CharSequence {
+
+        @Override
+        public String toString() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "first";
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+    }
+}
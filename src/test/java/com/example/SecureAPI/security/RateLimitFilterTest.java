@@ -0,0 +1,81 @@
+package com.example.SecureAPI.security;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для RateLimitFilter.
+ * Проверяет ответ 429 с Retry-After и раздельные вёдра для разных клиентов.
+ */
+public class RateLimitFilterTest {
+
+    private final FilterChain chain = (request, response) -> { };
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setPattern("/auth/**");
+        route.setCapacity(2);
+        route.setRefillPerSecond(0.1);
+
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(List.of(route));
+        filter = new RateLimitFilter(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * После исчерпания ведра клиент получает 429 и Retry-After.
+     */
+    @Test
+    void doFilter_ShouldRejectWhenBucketIsEmpty() throws Exception {
+        assertEquals(200, call("/auth/login", "10.0.0.1").getStatus());
+        assertEquals(200, call("/auth/login", "10.0.0.1").getStatus());
+
+        MockHttpServletResponse rejected = call("/auth/login", "10.0.0.1");
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("10", rejected.getHeader("Retry-After"));
+    }
+
+    /**
+     * Разные IP-адреса и пользователи имеют собственные вёдра; пути без правила не ограничиваются.
+     */
+    @Test
+    void doFilter_ShouldKeepSeparateBucketsPerClient() throws Exception {
+        call("/auth/login", "10.0.0.1");
+        call("/auth/login", "10.0.0.1");
+
+        assertEquals(200, call("/auth/login", "10.0.0.2").getStatus());
+        assertEquals(200, call("/products/public", "10.0.0.1").getStatus());
+
+        AuthenticatedUser user = new AuthenticatedUser(5L, "CLIENT", AuthenticatedUser.authoritiesFor("CLIENT"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.authorities()));
+        assertEquals(200, call("/auth/login", "10.0.0.1").getStatus());
+    }
+
+    private MockHttpServletResponse call(String path, String remoteAddr) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setRemoteAddr(remoteAddr);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
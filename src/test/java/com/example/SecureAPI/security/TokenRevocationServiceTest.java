@@ -0,0 +1,98 @@
+package com.example.SecureAPI.security;
+
+import com.example.SecureAPI.model.RevokedToken;
+import com.example.SecureAPI.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для TokenRevocationService на H2: отозванный токен отклоняется JwtFilter,
+ * очистка удаляет истёкшие записи из таблицы и фильтра и подтягивает чужие отзывы.
+ */
+@DataJpaTest
+@Import({TokenRevocationService.class, JwtUtils.class, JwtFilter.class})
+class TokenRevocationServiceTest {
+
+    @Autowired
+    private TokenRevocationService revocationService;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private JwtFilter jwtFilter;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Пропускает запрос к защищённому пути через JwtFilter.
+     *
+     * @return аутентификация, установленная фильтром (null — токен не принят)
+     */
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/orders");
+        request.addHeader("Authorization", token);
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Test
+    void revokedTokenIsRejectedByFilter() throws Exception {
+        String token = jwtUtils.generateToken(7L, "CLIENT");
+        assertNotNull(authenticate(token));
+
+        JwtClaims claims = jwtUtils.verify(token).orElseThrow();
+        assertTrue(revocationService.revoke(claims));
+
+        assertTrue(revocationService.isRevoked(claims));
+        assertNull(authenticate(token));
+        // Другой токен того же пользователя по-прежнему действует
+        assertNotNull(authenticate(jwtUtils.generateToken(7L, "CLIENT")));
+    }
+
+    @Test
+    void tokenWithoutIdCannotBeRevoked() {
+        JwtClaims claims = new JwtClaims(7L, "CLIENT", null, System.currentTimeMillis() + 60_000);
+
+        assertFalse(revocationService.revoke(claims));
+        assertFalse(revocationService.isRevoked(claims));
+        assertEquals(0, revokedTokenRepository.count());
+    }
+
+    @Test
+    void pruneRemovesExpiredEntriesAndPicksUpForeignRevocations() {
+        JwtClaims expired = new JwtClaims(7L, "CLIENT", "expired-token", System.currentTimeMillis() - 1_000);
+        revocationService.revoke(expired);
+        assertTrue(revocationService.isRevoked(expired));
+
+        // Отзыв на другом экземпляре: запись есть только в таблице, фильтр о ней не знает
+        JwtClaims foreign = new JwtClaims(8L, "CLIENT", "foreign-token", System.currentTimeMillis() + 60_000);
+        revokedTokenRepository.save(new RevokedToken(foreign.tokenId(), Instant.ofEpochMilli(foreign.expiresAtMillis())));
+        assertFalse(revocationService.isRevoked(foreign));
+
+        revocationService.pruneExpired();
+
+        assertFalse(revokedTokenRepository.existsById(expired.tokenId()));
+        assertFalse(revocationService.isRevoked(expired));
+        assertTrue(revocationService.isRevoked(foreign));
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.CheckoutStatus;
+import com.example.SecureAPI.dto.CheckoutStatusDTO;
+import com.example.SecureAPI.dto.OrderDTO;
+import com.example.SecureAPI.exception.CheckoutQueueFullException;
+import com.example.SecureAPI.exception.CheckoutRequestNotFoundException;
+import com.example.SecureAPI.model.Cart;
+import com.example.SecureAPI.model.CartItem;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.model.User;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для AsyncCheckoutService на H2: запросы, пришедшие за batch-wait, фиксируются одной
+ * транзакцией, а ошибка одного заказа пачки не откатывает остальные. Оформление идёт
+ * в рабочем потоке, поэтому тест работает без общей транзакции и сам очищает таблицы.
+ */
+@DataJpaTest(properties = {
+        "cart.checkout.async.enabled=true",
+        "cart.checkout.async.max-batch=10",
+        "cart.checkout.async.batch-wait=500ms"
+})
+@Import({AsyncCheckoutService.class, OrderService.class, OrderSummaryService.class, IdempotencyService.class,
+        ConflictRetryPolicy.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AsyncCheckoutServiceTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    @Autowired
+    private AsyncCheckoutService asyncCheckout;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private IdempotencyService idempotency;
+
+    @Autowired
+    private ConflictRetryPolicy conflictRetry;
+
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        for (String table : List.of("idempotency_keys", "order_summaries", "order_items", "orders", "cart_items", "carts", "products", "users")) {
+            jdbcTemplate.update("delete from " + table);
+        }
+    }
+
+    private Long newBuyer(int number, Product product) {
+        User user = new User();
+        user.setEmail("buyer" + number + "@example.com");
+        user.setName("Buyer " + number);
+        user.setRole("CLIENT");
+        entityManager.persist(user);
+        Cart cart = new Cart();
+        cart.setUser(user);
+        CartItem item = new CartItem();
+        item.setCart(cart);
+        item.setProduct(product);
+        item.setQuantity(1);
+        cart.getItems().add(item);
+        entityManager.persist(cart);
+        return user.getId();
+    }
+
+    private CheckoutStatusDTO await(Long userId, CheckoutStatusDTO submitted) throws Exception {
+        return asyncCheckout.status(userId, submitted.getRequestId(), WAIT).get(WAIT.toSeconds(), TimeUnit.SECONDS);
+    }
+
+    @Test
+    void requestsAreCommittedInOneBatchAndFailuresStayIsolated() throws Exception {
+        int buyers = 5;
+        List<Long> users = new TransactionTemplate(transactionManager).execute(status -> {
+            Product product = new Product();
+            product.setName("Product");
+            product.setPrice(10.0);
+            product.setStock(3);
+            entityManager.persist(product);
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < buyers; i++) {
+                ids.add(newBuyer(i, product));
+            }
+            return ids;
+        });
+
+        List<CheckoutStatusDTO> submitted = new ArrayList<>();
+        for (Long user : users) {
+            submitted.add(asyncCheckout.submit(user, "key-" + user));
+        }
+        List<CheckoutStatusDTO> results = new ArrayList<>();
+        for (int i = 0; i < buyers; i++) {
+            results.add(await(users.get(i), submitted.get(i)));
+        }
+
+        // Остатка хватает на три заказа; два других не проходят, не мешая первым
+        assertEquals(3, results.stream().filter(r -> r.getStatus() == CheckoutStatus.COMPLETED).count());
+        List<CheckoutStatusDTO> failed = results.stream().filter(r -> r.getStatus() == CheckoutStatus.FAILED).toList();
+        assertEquals(2, failed.size());
+        assertTrue(failed.get(0).getError().startsWith("Not enough stock"));
+        assertEquals(3, jdbcTemplate.queryForObject("select count(*) from orders", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("select stock from products", Integer.class));
+
+        DistributionSummary batches = meterRegistry.get("checkout.async.batch.size").summary();
+        assertEquals(1, batches.count());
+        assertEquals(buyers, batches.max());
+
+        // Повтор по ключу возвращает тот же запрос, а чужой запрос не виден
+        Long first = users.get(0);
+        CheckoutStatusDTO replay = asyncCheckout.submit(first, "key-" + first);
+        assertEquals(submitted.get(0).getRequestId(), replay.getRequestId());
+        assertEquals(results.get(0).getStatus(), replay.getStatus());
+        assertThrows(CheckoutRequestNotFoundException.class,
+                () -> asyncCheckout.status(users.get(1), replay.getRequestId(), Duration.ZERO));
+    }
+
+    /**
+     * Конфликт версий корзины внутри пачки не повторяется в её транзакции (пауза держала бы
+     * блокировки остальных заказов): заказ оформляется заново отдельно, после фиксации пачки.
+     */
+    @Test
+    void conflictInBatchIsRetriedAloneAfterCommit() {
+        OrderService orders = mock(OrderService.class);
+        ConflictRetryPolicy retry = mock(ConflictRetryPolicy.class);
+        when(retry.execute(eq("checkout"), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        when(orders.createOrderFromCartInCurrentTransaction(1L, null))
+                .thenReturn(new OrderDTO(11L, 1L, BigDecimal.TEN, null, List.of()));
+        when(orders.createOrderFromCartInCurrentTransaction(2L, null))
+                .thenThrow(new ObjectOptimisticLockingFailureException("Cart", 2L));
+        List<Boolean> retriedInTransaction = new ArrayList<>();
+        when(orders.createOrderFromCart(2L, null)).thenAnswer(invocation -> {
+            retriedInTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return new OrderDTO(12L, 2L, BigDecimal.TEN, null, List.of());
+        });
+        @SuppressWarnings("unchecked")
+        ObjectProvider<CartWriteBehindStore> noWriteBehind = mock(ObjectProvider.class);
+        AsyncCheckoutService service = new AsyncCheckoutService(orders, idempotency, retry,
+                transactionManager, jdbcTemplate, noWriteBehind, new SimpleMeterRegistry(), 10, 1, 10, Duration.ZERO,
+                Duration.ofMinutes(1), Duration.ZERO);
+        ReflectionTestUtils.setField(service, "entityManager", entityManager);
+        AsyncCheckoutService.CheckoutRequest first = new AsyncCheckoutService.CheckoutRequest("r1", 1L, null);
+        AsyncCheckoutService.CheckoutRequest second = new AsyncCheckoutService.CheckoutRequest("r2", 2L, null);
+
+        service.process(List.of(first, second));
+
+        assertEquals(CheckoutStatus.COMPLETED, first.status().getStatus());
+        assertEquals(12L, second.status().getOrder().getId());
+        assertEquals(List.of(false), retriedInTransaction);
+        verify(orders, times(1)).createOrderFromCartInCurrentTransaction(2L, null);
+        verify(retry, times(1)).execute(eq("checkout"), any());
+    }
+
+    @Test
+    void fullQueueRejectsRequests() {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<CartWriteBehindStore> noWriteBehind = mock(ObjectProvider.class);
+        // Сервис без запущенных рабочих потоков: очередь на один запрос не разбирается
+        AsyncCheckoutService stopped = new AsyncCheckoutService(orderService, idempotency, conflictRetry,
+                transactionManager, jdbcTemplate, noWriteBehind, meterRegistry, 1, 1, 10, Duration.ZERO, Duration.ofMinutes(1),
+                Duration.ZERO);
+
+        assertEquals(CheckoutStatus.QUEUED, stopped.submit(1L, null).getStatus());
+        assertThrows(CheckoutQueueFullException.class, () -> stopped.submit(2L, null));
+        assertEquals(1, meterRegistry.get("checkout.async.rejected").counter().count());
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.repository.CartRepository;
+import com.example.SecureAPI.repository.CartRepositoryCustom.ReclaimedRows;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для CartReaper: пачки до неполной, предел пачек за запуск и метрики.
+ * Сам запрос удаления (CTE с DELETE) в H2 не поддерживается, репозиторий — заглушка.
+ */
+class CartReaperTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-01T00:00:00Z");
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CartReaper reaper(int maxBatches) {
+        return new CartReaper(cartRepository, meterRegistry, Duration.ofDays(30), 100, Duration.ZERO, maxBatches);
+    }
+
+    @Test
+    void deletesBatchesUntilOneIsIncomplete() {
+        when(cartRepository.deleteIdleCarts(any(), eq(100))).thenReturn(
+                new ReclaimedRows(100, 250), new ReclaimedRows(100, 120), new ReclaimedRows(7, 0));
+
+        ReclaimedRows total = reaper(10).run(NOW);
+
+        assertEquals(new ReclaimedRows(207, 370), total);
+        verify(cartRepository, times(3)).deleteIdleCarts(Instant.parse("2025-05-02T00:00:00Z"), 100);
+        assertEquals(207, meterRegistry.get("carts.reaper.reclaimed").tag("table", "carts").counter().count());
+        assertEquals(370, meterRegistry.get("carts.reaper.reclaimed").tag("table", "cart_items").counter().count());
+    }
+
+    @Test
+    void stopsAfterMaxBatches() {
+        when(cartRepository.deleteIdleCarts(any(), eq(100))).thenReturn(new ReclaimedRows(100, 100));
+
+        ReclaimedRows total = reaper(2).run(NOW);
+
+        assertEquals(new ReclaimedRows(200, 200), total);
+        verify(cartRepository, times(2)).deleteIdleCarts(any(), eq(100));
+    }
+}
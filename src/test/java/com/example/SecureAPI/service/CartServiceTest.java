@@ -0,0 +1,210 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.CartDTO;
+import com.example.SecureAPI.dto.CartItemDTO;
+import com.example.SecureAPI.dto.CartOperation;
+import com.example.SecureAPI.dto.CartOperationType;
+import com.example.SecureAPI.exception.InvalidCartRequestException;
+import com.example.SecureAPI.exception.ProductNotFoundException;
+import com.example.SecureAPI.model.Cart;
+import com.example.SecureAPI.model.CartItem;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.model.User;
+import com.example.SecureAPI.support.SqlStatementCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Корзины на H2: чтение — один SQL-запрос независимо от числа корзин и позиций,
+ * удаление позиции — один DELETE. Upsert (INSERT ... ON CONFLICT DO UPDATE) в H2 не поддерживается.
+ */
+@DataJpaTest(properties = SqlStatementCounter.PROPERTY)
+@Import({CartService.class, OrderService.class, OrderSummaryService.class, ConflictRetryPolicy.class, IdempotencyService.class, SimpleMeterRegistry.class})
+class CartServiceTest {
+
+    private static final int CARTS = 3;
+    private static final int ITEMS = 5;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private ProductService productService;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private Long emptyCartUserId;
+
+    @BeforeEach
+    void setUp() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(1.0 + i);
+            entityManager.persist(product);
+            products.add(product);
+        }
+        for (int c = 0; c < CARTS; c++) {
+            Cart cart = newCart("user" + c + "@example.com");
+            for (int i = 0; i < ITEMS; i++) {
+                CartItem item = new CartItem();
+                item.setCart(cart);
+                item.setProduct(products.get(i));
+                item.setQuantity(c + 1);
+                cart.getItems().add(item);
+            }
+            entityManager.persist(cart);
+            userIds.add(cart.getUser().getId());
+        }
+        Cart empty = newCart("empty@example.com");
+        entityManager.persist(empty);
+        emptyCartUserId = empty.getUser().getId();
+
+        entityManager.flush();
+        entityManager.clear();
+        SqlStatementCounter.reset();
+    }
+
+    private Cart newCart(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setName(email);
+        user.setRole("CLIENT");
+        entityManager.persist(user);
+        Cart cart = new Cart();
+        cart.setUser(user);
+        return cart;
+    }
+
+    @Test
+    void getCartByUserId_ShouldUseSingleQuery() {
+        CartDTO cart = cartService.getCartByUserId(userIds.get(1));
+
+        assertEquals(userIds.get(1), cart.getUserId());
+        assertEquals(ITEMS, cart.getItems().size());
+        assertTrue(cart.getItems().stream().map(CartItemDTO::getQuantity).allMatch(q -> q == 2));
+        SqlStatementCounter.assertStatementCount(1);
+    }
+
+    @Test
+    void getCartByUserId_ShouldReturnEmptyCart() {
+        CartDTO cart = cartService.getCartByUserId(emptyCartUserId);
+
+        assertTrue(cart.getItems().isEmpty());
+        SqlStatementCounter.assertStatementCount(1);
+    }
+
+    @Test
+    void getAllCarts_ShouldUseSingleQuery() {
+        List<CartDTO> carts = cartService.getAllCarts();
+
+        assertEquals(CARTS + 1, carts.size());
+        assertEquals(List.of(ITEMS, ITEMS, ITEMS, 0), carts.stream().map(c -> c.getItems().size()).toList());
+        SqlStatementCounter.assertStatementCount(1);
+    }
+
+    @Test
+    void removeItem_ShouldDeleteSingleLineWithoutLoadingCart() {
+        Long productId = cartService.getCartByUserId(userIds.get(0)).getItems().get(0).getProductId();
+        SqlStatementCounter.reset();
+
+        assertTrue(cartService.removeItem(userIds.get(0), productId));
+        assertFalse(cartService.removeItem(userIds.get(0), productId));
+        SqlStatementCounter.assertSelectCount(0);
+
+        assertEquals(ITEMS - 1, cartService.getCartByUserId(userIds.get(0)).getItems().size());
+        assertEquals(ITEMS, cartService.getCartByUserId(userIds.get(1)).getItems().size());
+    }
+
+    @Test
+    void clearCart_ShouldDeleteLinesAndBumpVersionWithoutLoadingCart() {
+        Long version = versionOf(userIds.get(0));
+        SqlStatementCounter.reset();
+
+        cartService.clearCart(userIds.get(0));
+
+        SqlStatementCounter.assertStatementCount(2);
+        assertTrue(cartService.getCartByUserId(userIds.get(0)).getItems().isEmpty());
+        assertEquals(version + 1, versionOf(userIds.get(0)));
+        assertEquals(ITEMS, cartService.getCartByUserId(userIds.get(1)).getItems().size());
+    }
+
+    private Long versionOf(Long userId) {
+        return entityManager.createQuery("select c.version from Cart c where c.user.id = :userId", Long.class)
+                .setParameter("userId", userId)
+                .getSingleResult();
+    }
+
+    @Test
+    void addItem_ShouldRejectInvalidRequests() {
+        assertThrows(InvalidCartRequestException.class, () -> cartService.addItem(userIds.get(0), 1L, 0));
+        // Продукта нет в каталоге (ProductService — заглушка)
+        assertThrows(ProductNotFoundException.class, () -> cartService.addItem(userIds.get(0), 1L, 1));
+        SqlStatementCounter.assertStatementCount(0);
+    }
+
+    @Test
+    void applyBatch_ShouldRemoveLinesWithSingleDelete() {
+        List<Long> productIds = cartService.getCartByUserId(userIds.get(2)).getItems().stream()
+                .map(CartItemDTO::getProductId).toList();
+        SqlStatementCounter.reset();
+
+        CartDTO cart = cartService.applyBatch(userIds.get(2), List.of(
+                new CartOperation(CartOperationType.REMOVE, productIds.get(0), null),
+                new CartOperation(CartOperationType.REMOVE, productIds.get(1), null)));
+
+        assertEquals(productIds.subList(2, ITEMS), cart.getItems().stream().map(CartItemDTO::getProductId).toList());
+        // Увеличение версии корзины, одна пачка DELETE и одно чтение итоговой корзины
+        SqlStatementCounter.assertStatementCount(3);
+    }
+
+    @Test
+    void applyBatch_ShouldRejectWholeBatchBeforeWriting() {
+        Long productId = cartService.getCartByUserId(userIds.get(0)).getItems().get(0).getProductId();
+        SqlStatementCounter.reset();
+
+        assertThrows(InvalidCartRequestException.class, () -> cartService.applyBatch(userIds.get(0), List.of(
+                new CartOperation(CartOperationType.REMOVE, productId, null),
+                new CartOperation(CartOperationType.SET, productId, 0))));
+        // Продукта нет в каталоге (ProductService — заглушка)
+        assertThrows(ProductNotFoundException.class, () -> cartService.applyBatch(userIds.get(0), List.of(
+                new CartOperation(CartOperationType.REMOVE, productId, null),
+                new CartOperation(CartOperationType.ADD, 999L, 1))));
+        SqlStatementCounter.assertStatementCount(0);
+    }
+
+    @Test
+    void netOperations_ShouldFoldOperationsPerProduct() {
+        Map<Long, CartOperation> net = CartService.netOperations(List.of(
+                new CartOperation(CartOperationType.ADD, 1L, 1),
+                new CartOperation(CartOperationType.ADD, 2L, 5),
+                new CartOperation(CartOperationType.ADD, 1L, 2),
+                new CartOperation(CartOperationType.REMOVE, 2L, null),
+                new CartOperation(CartOperationType.ADD, 2L, 4),
+                new CartOperation(CartOperationType.SET, 3L, 7),
+                new CartOperation(CartOperationType.ADD, 3L, 1),
+                new CartOperation(CartOperationType.SET, 4L, 2),
+                new CartOperation(CartOperationType.REMOVE, 4L, null)));
+
+        assertEquals(List.of(
+                new CartOperation(CartOperationType.ADD, 1L, 3),
+                new CartOperation(CartOperationType.SET, 2L, 4),
+                new CartOperation(CartOperationType.SET, 3L, 8),
+                new CartOperation(CartOperationType.REMOVE, 4L, null)), List.copyOf(net.values()));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.model.Cart;
+import com.example.SecureAPI.model.CartItem;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для CartTotalsReconciler на H2: триггера на cart_items здесь нет, поэтому корзины,
+ * сохранённые Hibernate с позициями, приходят с нулевыми итогами — то есть с расхождением.
+ */
+@DataJpaTest(properties = "cart.totals.reconcile.batch-size=2")
+@Import({CartTotalsReconciler.class, SimpleMeterRegistry.class})
+class CartTotalsReconcilerTest {
+
+    @Autowired
+    private CartTotalsReconciler reconciler;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    private Product newProduct(double price) {
+        Product product = new Product();
+        product.setName("Product " + price);
+        product.setPrice(price);
+        entityManager.persist(product);
+        return product;
+    }
+
+    private Long newCart(String email, Object... productsAndQuantities) {
+        User user = new User();
+        user.setEmail(email);
+        user.setName(email);
+        user.setRole("CLIENT");
+        entityManager.persist(user);
+        Cart cart = new Cart();
+        cart.setUser(user);
+        for (int i = 0; i < productsAndQuantities.length; i += 2) {
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct((Product) productsAndQuantities[i]);
+            item.setQuantity((Integer) productsAndQuantities[i + 1]);
+            cart.getItems().add(item);
+        }
+        entityManager.persist(cart);
+        return cart.getId();
+    }
+
+    private List<Object> totalsOf(Long cartId) {
+        Object[] row = (Object[]) entityManager
+                .createNativeQuery("select item_count, total_price from carts where id = ?1")
+                .setParameter(1, cartId)
+                .getSingleResult();
+        return List.of(((Number) row[0]).intValue(), row[1]);
+    }
+
+    @Test
+    void repairsDriftedCartsAcrossPages() {
+        Product cheap = newProduct(0.335);
+        Product expensive = newProduct(10.0);
+        List<Long> drifted = new ArrayList<>();
+        drifted.add(newCart("a@example.com", cheap, 3, expensive, 1));
+        newCart("empty@example.com");
+        drifted.add(newCart("b@example.com", expensive, 2));
+        Long consistent = newCart("c@example.com", cheap, 1);
+        entityManager.flush();
+        entityManager.createNativeQuery("update carts set item_count = 1, total_price = 0.34 where id = ?1")
+                .setParameter(1, consistent)
+                .executeUpdate();
+
+        assertEquals(2, reconciler.run());
+
+        // 0.335 * 3 = 1.005 округляется вверх, как в CartService.lineAmount
+        assertEquals(new BigDecimal("11.01"), CartService.lineAmount(0.335, 3).add(CartService.lineAmount(10.0, 1)));
+        assertEquals(List.of(4, new BigDecimal("11.01")), totalsOf(drifted.get(0)));
+        assertEquals(List.of(2, new BigDecimal("20.00")), totalsOf(drifted.get(1)));
+        assertEquals(List.of(1, new BigDecimal("0.34")), totalsOf(consistent));
+        assertEquals(2, meterRegistry.get("carts.totals.drift").counter().count());
+
+        // Повторная сверка ничего не находит
+        assertEquals(0, reconciler.run());
+        assertEquals(2, meterRegistry.get("carts.totals.repaired").counter().count());
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.CartDTO;
+import com.example.SecureAPI.dto.CartItemDTO;
+import com.example.SecureAPI.dto.CartRowDTO;
+import com.example.SecureAPI.repository.CartItemRepository;
+import com.example.SecureAPI.repository.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для CartWriteBehindStore: чтение из памяти, фоновая запись, восстановление по журналу
+ * и оформление заказа. Репозитории — заглушки, журнал пишется во временный каталог.
+ */
+class CartWriteBehindStoreTest {
+
+    private static final long USER = 7L;
+
+    @TempDir
+    Path journalDirectory;
+
+    private CartRepository cartRepository;
+    private CartItemRepository cartItemRepository;
+
+    @BeforeEach
+    void setUp() {
+        cartRepository = mock(CartRepository.class);
+        cartItemRepository = mock(CartItemRepository.class);
+        // В базе у пользователя корзина 100 с одним товаром
+        when(cartRepository.findRowsByUserId(USER)).thenReturn(List.of(new CartRowDTO(100L, USER, 1L, 2, 2, BigDecimal.TEN)));
+    }
+
+    private CartWriteBehindStore newStore() throws IOException {
+        CartWriteBehindStore store = new CartWriteBehindStore(cartRepository, cartItemRepository, new SimpleMeterRegistry(),
+                journalDirectory.toString(), false, Duration.ofMinutes(30));
+        store.recover();
+        return store;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Map<Long, Integer>> lastWrite() {
+        ArgumentCaptor<Map<Long, Map<Long, Integer>>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(cartItemRepository, atLeastOnce()).replaceCarts(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    void mutationsAreServedFromMemoryAndWrittenOnFlush() throws IOException {
+        CartWriteBehindStore store = newStore();
+
+        assertEquals(5, store.add(USER, 1L, 3));
+        assertEquals(4, store.set(USER, 2L, 4));
+        assertTrue(store.remove(USER, 1L));
+        assertFalse(store.remove(USER, 1L));
+
+        CartDTO cart = store.getCart(USER);
+        assertEquals(100L, cart.getId());
+        assertEquals(List.of(new CartItemDTO(2L, 4)), cart.getItems());
+        verify(cartRepository, times(1)).findRowsByUserId(USER);
+        verify(cartItemRepository, never()).replaceCarts(anyMap());
+
+        store.flush();
+        assertEquals(Map.of(USER, Map.of(2L, 4)), lastWrite());
+
+        // Без новых изменений записывать нечего
+        store.flush();
+        assertEquals(Map.of(), lastWrite());
+    }
+
+    @Test
+    void failedWriteIsRetriedOnNextFlush() throws IOException {
+        CartWriteBehindStore store = newStore();
+        store.add(USER, 3L, 1);
+        doThrow(new IllegalStateException("database is down")).doNothing()
+                .when(cartItemRepository).replaceCarts(anyMap());
+
+        store.flush();
+        store.flush();
+
+        verify(cartItemRepository, times(2)).replaceCarts(Map.of(USER, Map.of(1L, 2, 3L, 1)));
+    }
+
+    @Test
+    void journalIsReplayedAfterRestart() throws IOException {
+        CartWriteBehindStore crashed = newStore();
+        crashed.add(USER, 1L, 1);
+        crashed.set(USER, 5L, 9);
+        crashed.remove(USER, 5L);
+        crashed.add(USER, 6L, 2);
+        // Остановки нет: изменения есть только в журнале
+
+        CartWriteBehindStore restarted = newStore();
+
+        assertEquals(Map.of(USER, Map.of(1L, 3, 6L, 2)), lastWrite());
+        assertEquals(List.of(new CartItemDTO(1L, 3), new CartItemDTO(6L, 2)), restarted.getCart(USER).getItems());
+        // Записанные в базу сегменты удалены, остался только текущий
+        try (Stream<Path> segments = Files.list(journalDirectory)) {
+            assertEquals(1, segments.count());
+        }
+    }
+
+    @Test
+    void checkoutWritesCartFirstAndClearsItAfterwards() throws IOException {
+        CartWriteBehindStore store = newStore();
+        store.add(USER, 4L, 1);
+
+        String result = store.checkout(USER, () -> {
+            verify(cartItemRepository).replaceCarts(Map.of(USER, Map.of(1L, 2, 4L, 1)));
+            return "order";
+        });
+
+        assertEquals("order", result);
+        assertTrue(store.getCart(USER).getItems().isEmpty());
+        // Корзина уже записана заказом, повторная запись не нужна
+        store.flush();
+        assertEquals(Map.of(), lastWrite());
+    }
+}
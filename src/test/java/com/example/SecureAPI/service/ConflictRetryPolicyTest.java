@@ -0,0 +1,70 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.exception.CartConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для ConflictRetryPolicy: повтор после конфликта, предел попыток и метрики.
+ */
+class ConflictRetryPolicyTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConflictRetryPolicy policy = new ConflictRetryPolicy(meterRegistry, 3, Duration.ofMillis(1));
+
+    @Test
+    void retriesUntilOperationSucceeds() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.execute("checkout", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Cart", 1L);
+            }
+            return "order";
+        });
+
+        assertEquals("order", result);
+        assertEquals(3, calls.get());
+        assertEquals(2, count("carts.conflicts"));
+        assertEquals(2, count("carts.conflict.retries"));
+        assertEquals(0, count("carts.conflict.exhausted"));
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(CartConflictException.class, () -> policy.execute("checkout", () -> {
+            calls.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Cart", 1L);
+        }));
+
+        assertEquals(3, calls.get());
+        assertEquals(3, count("carts.conflicts"));
+        assertEquals(2, count("carts.conflict.retries"));
+        assertEquals(1, count("carts.conflict.exhausted"));
+    }
+
+    @Test
+    void doesNotRetryOtherFailures() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> policy.execute("checkout", () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(1, calls.get());
+    }
+
+    private double count(String name) {
+        var counter = meterRegistry.find(name).tag("operation", "checkout").counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.ExportFormat;
+import com.example.SecureAPI.dto.UserDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для ExportWriter.
+ * Проверяет формат строк NDJSON и экранирование CSV.
+ */
+public class ExportWriterTest {
+
+    /**
+     * NDJSON: один объект на строку, каждая строка завершается переводом строки.
+     */
+    @Test
+    void ndjson_ShouldWriteOneObjectPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportWriter writer = new ExportWriter(ExportFormat.NDJSON, out, new ObjectMapper())) {
+            writer.write(new UserDTO(1L, "a@example.com", "Anna", "CLIENT"));
+            writer.write(new UserDTO(2L, "b@example.com", "Boris", "ADMIN"));
+        }
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].contains("\"email\":\"a@example.com\""));
+        assertTrue(lines[1].contains("\"role\":\"ADMIN\""));
+        assertEquals("", lines[2]);
+    }
+
+    /**
+     * CSV: заголовок, кавычки вокруг полей с запятыми и кавычками, null — пустое поле.
+     */
+    @Test
+    void csv_ShouldEscapeFields() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportWriter writer = new ExportWriter(ExportFormat.CSV, out, new ObjectMapper(), "id", "name", "price")) {
+            writer.write(null, 1L, "Ноутбук, 15\"", 999.99);
+            writer.write(null, 2L, null, 5.0);
+        }
+
+        assertEquals("id,name,price\r\n1,\"Ноутбук, 15\"\"\",999.99\r\n2,,5.0\r\n", out.toString(StandardCharsets.UTF_8));
+    }
+}
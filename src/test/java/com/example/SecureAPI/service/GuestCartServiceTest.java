@@ -0,0 +1,107 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.CartItemDTO;
+import com.example.SecureAPI.exception.InvalidGuestTokenException;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.repository.IdempotencyKeyRepository;
+import com.example.SecureAPI.security.GuestTokenService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для GuestCartService: раздельные корзины гостей, перенос при входе, заказ и истечение.
+ */
+class GuestCartServiceTest {
+
+    private static final Duration TTL = Duration.ofHours(1);
+
+    private ProductService productService;
+    private CartService cartService;
+    private OrderService orderService;
+    private GuestCartService guestCarts;
+
+    @BeforeEach
+    void setUp() {
+        productService = mock(ProductService.class);
+        cartService = mock(CartService.class);
+        orderService = mock(OrderService.class);
+        when(productService.getProductById(anyLong())).thenReturn(Optional.of(new Product()));
+        IdempotencyService idempotency = new IdempotencyService(mock(IdempotencyKeyRepository.class), orderService,
+                new SimpleMeterRegistry(), TTL, 100);
+        guestCarts = new GuestCartService(new GuestTokenService("", TTL), productService, cartService, orderService,
+                idempotency, new SimpleMeterRegistry(), TTL, 1000, 1L);
+    }
+
+    @Test
+    void guestsHaveSeparateCarts() {
+        String first = guestCarts.resolveToken(null);
+        String second = guestCarts.resolveToken("forged");
+
+        guestCarts.addItem(first, 1L, 2);
+        guestCarts.addItem(first, 1L, 3);
+        guestCarts.addItem(second, 2L, 1);
+
+        assertNotEquals(first, second);
+        assertEquals(first, guestCarts.resolveToken(first));
+        assertEquals(List.of(new CartItemDTO(1L, 5)), guestCarts.getCart(first).getItems());
+        assertEquals(List.of(new CartItemDTO(2L, 1)), guestCarts.getCart(second).getItems());
+        assertThrows(InvalidGuestTokenException.class, () -> guestCarts.addItem("forged", 1L, 1));
+    }
+
+    @Test
+    void loginMovesGuestCartIntoUserCart() {
+        String token = guestCarts.resolveToken(null);
+        guestCarts.addItem(token, 1L, 2);
+        guestCarts.addItem(token, 3L, 1);
+
+        guestCarts.mergeInto(42L, token);
+
+        verify(cartService).mergeItems(42L, Map.of(1L, 2, 3L, 1));
+        assertTrue(guestCarts.getCart(token).getItems().isEmpty());
+        // Повторный вход с тем же токеном переносить уже нечего
+        guestCarts.mergeInto(42L, token);
+        verifyNoMoreInteractions(cartService);
+    }
+
+    @Test
+    void failedMergeKeepsGuestCart() {
+        String token = guestCarts.resolveToken(null);
+        guestCarts.addItem(token, 1L, 2);
+        doThrow(new IllegalStateException("database is down")).when(cartService).mergeItems(anyLong(), anyMap());
+
+        guestCarts.mergeInto(42L, token);
+
+        assertEquals(List.of(new CartItemDTO(1L, 2)), guestCarts.getCart(token).getItems());
+    }
+
+    @Test
+    void checkoutCreatesOrderAndEmptiesCart() {
+        String token = guestCarts.resolveToken(null);
+        guestCarts.addItem(token, 5L, 4);
+
+        guestCarts.checkout(token);
+
+        verify(orderService).createOrder(1L, Map.of(5L, 4), null);
+        assertTrue(guestCarts.getCart(token).getItems().isEmpty());
+    }
+
+    @Test
+    void idleCartsExpire() {
+        String token = guestCarts.resolveToken(null);
+        guestCarts.addItem(token, 1L, 1);
+
+        assertEquals(0, guestCarts.evictExpired(System.currentTimeMillis()));
+        assertEquals(1, guestCarts.evictExpired(System.currentTimeMillis() + TTL.toMillis() + 1));
+        assertTrue(guestCarts.getCart(token).getItems().isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.OrderDTO;
+import com.example.SecureAPI.exception.InvalidIdempotencyKeyException;
+import com.example.SecureAPI.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для IdempotencyService: повтор из памяти и из таблицы, склейка одновременных запросов
+ * и повтор после ошибки. Таблица ключей и заказы — заглушки.
+ */
+class IdempotencyServiceTest {
+
+    private static final OrderDTO ORDER = new OrderDTO(5001L, 42L, BigDecimal.TEN, LocalDateTime.now(), List.of());
+
+    private IdempotencyKeyRepository keyRepository;
+    private OrderService orderService;
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyService idempotency;
+
+    @BeforeEach
+    void setUp() {
+        keyRepository = mock(IdempotencyKeyRepository.class);
+        orderService = mock(OrderService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(keyRepository.findOrderId(anyString(), any())).thenReturn(Optional.empty());
+        idempotency = new IdempotencyService(keyRepository, orderService, meterRegistry, Duration.ofHours(1), 100);
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.get("checkout.idempotency").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void replayReturnsOriginalOrderWithoutExecutingAgain() {
+        AtomicInteger runs = new AtomicInteger();
+
+        OrderDTO first = idempotency.execute("user:42", "key-1", claim -> {
+            runs.incrementAndGet();
+            assertNotNull(claim);
+            return ORDER;
+        });
+        OrderDTO replay = idempotency.execute("user:42", "key-1", claim -> fail("must not run twice"));
+
+        assertSame(first, replay);
+        assertEquals(1, runs.get());
+        assertEquals(1, outcome("coalesced"));
+
+        // Другой экземпляр приложения (пустой кэш) находит заказ по таблице
+        when(keyRepository.findOrderId(eq(IdempotencyService.hash("user:42", "key-1")), any())).thenReturn(Optional.of(5001L));
+        when(orderService.getOrder(5001L)).thenReturn(Optional.of(ORDER));
+        IdempotencyService other = new IdempotencyService(keyRepository, orderService, meterRegistry, Duration.ofHours(1), 100);
+        assertEquals(ORDER, other.execute("user:42", "key-1", claim -> fail("must not run twice")));
+        assertEquals(1, outcome("replayed"));
+
+        // Тот же ключ другого владельца — другой запрос
+        assertEquals(ORDER, idempotency.execute("user:7", "key-1", claim -> ORDER));
+        assertEquals(2, outcome("executed"));
+    }
+
+    @Test
+    void concurrentRequestsWithSameKeyRunOnce() throws Exception {
+        int requests = 8;
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<OrderDTO>> results = new ArrayList<>();
+            results.add(executor.submit(() -> idempotency.execute("user:42", "key-2", claim -> {
+                runs.incrementAndGet();
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return ORDER;
+            })));
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+            for (int i = 1; i < requests; i++) {
+                results.add(executor.submit(() -> idempotency.execute("user:42", "key-2", claim -> {
+                    runs.incrementAndGet();
+                    return ORDER;
+                })));
+            }
+            while (outcome("coalesced") < requests - 1) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<OrderDTO> result : results) {
+                assertSame(ORDER, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedCheckoutIsNotRemembered() {
+        assertThrows(IllegalStateException.class, () -> idempotency.execute("guest:1", "key-3", claim -> {
+            throw new IllegalStateException("database is down");
+        }));
+
+        assertSame(ORDER, idempotency.execute("guest:1", "key-3", claim -> ORDER));
+        assertThrows(InvalidIdempotencyKeyException.class, () -> idempotency.execute("guest:1", " ", claim -> ORDER));
+    }
+}
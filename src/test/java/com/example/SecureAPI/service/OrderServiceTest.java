@@ -0,0 +1,199 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.OrderDTO;
+import com.example.SecureAPI.dto.OrderPageDTO;
+import com.example.SecureAPI.exception.InvalidPageRequestException;
+import com.example.SecureAPI.model.Cart;
+import com.example.SecureAPI.model.CartItem;
+import com.example.SecureAPI.model.Order;
+import com.example.SecureAPI.model.OrderItem;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.model.User;
+import com.example.SecureAPI.repository.CartRepository;
+import com.example.SecureAPI.repository.IdempotencyKeyRepository;
+import com.example.SecureAPI.repository.OrderRepository;
+import com.example.SecureAPI.support.SqlStatementCounter;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Оформление заказа на H2: позиции заказа вставляются пачкой, а не по одной;
+ * заказ не оформляется, если корзину изменили после чтения; ключ идемпотентности
+ * записывается вместе с заказом; страница истории заказов читается двумя запросами.
+ */
+@DataJpaTest(properties = SqlStatementCounter.PROPERTY)
+@Import({OrderService.class, OrderSummaryService.class})
+class OrderServiceTest {
+
+    private static final int ITEMS = 50;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("buyer@example.com");
+        user.setName("Buyer");
+        user.setRole("CLIENT");
+        entityManager.persist(user);
+
+        Cart cart = new Cart();
+        cart.setUser(user);
+        for (int i = 0; i < ITEMS; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(10.0);
+            entityManager.persist(product);
+
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct(product);
+            item.setQuantity(2);
+            cart.getItems().add(item);
+        }
+        entityManager.persist(cart);
+        entityManager.flush();
+        entityManager.clear();
+        userId = user.getId();
+    }
+
+    @Test
+    void checkoutInsertsItemsInBatches() {
+        SqlStatementCounter.reset();
+
+        OrderDTO order = orderService.createOrderFromCart(userId);
+        entityManager.flush();
+
+        assertNotNull(order.getId());
+        assertEquals(ITEMS, order.getItems().size());
+        assertEquals(0, new BigDecimal("1000.0").compareTo(order.getTotalPrice()));
+        // Корзина с позициями и продуктами читается одним запросом
+        SqlStatementCounter.assertSelectCount(1);
+        // Проверка и увеличение версии корзины, INSERT заказа, пачка INSERT позиций,
+        // один DELETE позиций корзины и запросы к последовательностям
+        List<String> statements = SqlStatementCounter.statements();
+        assertTrue(statements.size() <= 8, () -> "Too many statements:\n" + String.join("\n", statements));
+    }
+
+    @Test
+    void checkoutFailsIfCartChangedAfterItWasRead() {
+        // Корзина прочитана (и осталась в контексте), затем другая транзакция изменила её версию
+        Cart stale = cartRepository.findWithItemsByUserId(userId).orElseThrow();
+        entityManager.createNativeQuery("update carts set version = version + 1 where id = ?1")
+                .setParameter(1, stale.getId())
+                .executeUpdate();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> orderService.createOrderFromCart(userId));
+        assertTrue(orderRepository.findAll().isEmpty());
+    }
+
+    @Test
+    void checkoutRecordsIdempotencyKeyWithOrder() {
+        String hash = IdempotencyService.hash("user:" + userId, "retry-me");
+
+        OrderDTO order = orderService.createOrderFromCart(userId,
+                new IdempotencyService.Claim(hash, Instant.now().plus(1, ChronoUnit.HOURS)));
+
+        assertEquals(Optional.of(order.getId()), idempotencyKeyRepository.findOrderId(hash, Instant.now()));
+        assertEquals(Optional.of(order), orderService.getOrder(order.getId()));
+    }
+
+    @Test
+    void expiredIdempotencyKeyCanBeReusedBeforeCleanup() {
+        String hash = IdempotencyService.hash("user:" + userId, "reused-after-ttl");
+        // Срок ключа уже истёк, но очистка ещё не удалила строку
+        OrderDTO first = orderService.createOrderFromCart(userId,
+                new IdempotencyService.Claim(hash, Instant.now().minus(1, ChronoUnit.MINUTES)));
+        assertEquals(Optional.empty(), idempotencyKeyRepository.findOrderId(hash, Instant.now()));
+
+        Long productId = first.getItems().get(0).getProductId();
+        OrderDTO second = orderService.createOrder(userId, Map.of(productId, 1),
+                new IdempotencyService.Claim(hash, Instant.now().plus(1, ChronoUnit.HOURS)));
+
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(Optional.of(second.getId()), idempotencyKeyRepository.findOrderId(hash, Instant.now()));
+    }
+
+    @Test
+    void orderHistoryPagesNewestFirstWithoutNPlusOne() {
+        User user = entityManager.find(User.class, userId);
+        Product product = new Product();
+        product.setName("History product");
+        product.setPrice(5.0);
+        entityManager.persist(product);
+        LocalDateTime base = LocalDateTime.of(2025, 4, 5, 12, 0);
+        // Два заказа с одной датой: внутри даты порядок по ID
+        LocalDateTime[] dates = {base, base.plusDays(1), base.plusDays(1), base.plusDays(2), base.plusDays(3)};
+        List<Long> expected = new ArrayList<>();
+        for (LocalDateTime date : dates) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setOrderDate(date);
+            order.setTotalPrice(BigDecimal.TEN);
+            for (int line = 0; line < 2; line++) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(line + 1);
+                item.setPriceAtTime(BigDecimal.valueOf(5));
+                order.getItems().add(item);
+            }
+            entityManager.persist(order);
+            expected.add(0, order.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> seen = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            SqlStatementCounter.reset();
+            OrderPageDTO page = orderService.getOrderHistory(userId, after, 2);
+            // Заказы страницы и позиции всех её заказов — по одному запросу
+            SqlStatementCounter.assertSelectCount(2);
+            for (OrderDTO order : page.getItems()) {
+                assertEquals(2, order.getItems().size());
+                assertEquals(userId, order.getUserId());
+                seen.add(order.getId());
+            }
+            after = page.getNextCursor();
+            pages++;
+        } while (after != null);
+
+        assertEquals(expected, seen);
+        assertEquals(3, pages);
+        assertThrows(InvalidPageRequestException.class, () -> orderService.getOrderHistory(userId, "not-a-cursor", 2));
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.OrderDTO;
+import com.example.SecureAPI.dto.OrderSummaryDTO;
+import com.example.SecureAPI.model.Cart;
+import com.example.SecureAPI.model.CartItem;
+import com.example.SecureAPI.model.Order;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.model.User;
+import com.example.SecureAPI.repository.OrderRepository;
+import com.example.SecureAPI.repository.OrderSummaryRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Сводка заказов на H2: обновляется вместе с заказом и пересчитывается из orders параллельными
+ * диапазонами. Кэш сбрасывается после фиксации заказа, поэтому тест работает без общей
+ * транзакции и сам очищает таблицы.
+ */
+@DataJpaTest(properties = {
+        "orders.summary.rebuild.threads=2",
+        "orders.summary.rebuild.chunk-size=1",
+        "cart.guest.order-user-id=" + OrderSummaryServiceTest.GUEST_USER_ID
+})
+@Import({OrderService.class, OrderSummaryService.class, OrderSummaryRebuilder.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderSummaryServiceTest {
+
+    static final long GUEST_USER_ID = 900;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderSummaryService summaryService;
+
+    @Autowired
+    private OrderSummaryRebuilder rebuilder;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        for (String table : List.of("order_summaries", "order_items", "orders", "cart_items", "carts", "products", "users")) {
+            jdbcTemplate.update("delete from " + table);
+        }
+    }
+
+    private User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setName(email);
+        user.setRole("CLIENT");
+        entityManager.persist(user);
+        return user;
+    }
+
+    /**
+     * Кладёт в корзину пользователя одну позицию (корзина создаётся, если её нет).
+     */
+    private void fillCart(Long userId, double price, int quantity) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Product product = new Product();
+            product.setName("Product " + price);
+            product.setPrice(price);
+            entityManager.persist(product);
+            Cart cart = entityManager.createQuery("select c from Cart c where c.user.id = :userId", Cart.class)
+                    .setParameter("userId", userId)
+                    .getResultStream()
+                    .findFirst()
+                    .orElseGet(() -> {
+                        Cart created = new Cart();
+                        created.setUser(entityManager.find(User.class, userId));
+                        entityManager.persist(created);
+                        return created;
+                    });
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct(product);
+            item.setQuantity(quantity);
+            entityManager.persist(item);
+        });
+    }
+
+    @Test
+    void checkoutUpdatesSummaryAndRefreshesCache() {
+        Long userId = new TransactionTemplate(transactionManager).execute(status -> newUser("buyer@example.com").getId());
+
+        // Пустая сводка попадает в кэш и сбрасывается после фиксации заказа
+        assertEquals(new OrderSummaryDTO(userId, 0, BigDecimal.ZERO, null), summaryService.getSummary(userId));
+
+        fillCart(userId, 10.0, 2);
+        orderService.createOrderFromCart(userId);
+        fillCart(userId, 5.5, 1);
+        OrderDTO last = orderService.createOrderFromCart(userId);
+
+        OrderSummaryDTO summary = summaryService.getSummary(userId);
+        assertEquals(2, summary.getOrderCount());
+        assertEquals(0, new BigDecimal("25.50").compareTo(summary.getTotalSpent()));
+        assertEquals(last.getOrderDate(), summary.getLastOrderDate());
+    }
+
+    @Test
+    void guestOrdersDoNotTouchSummaries() {
+        jdbcTemplate.update("insert into users (id, email, name, role) values (?, 'guest@example.com', 'Guest', 'CLIENT')",
+                GUEST_USER_ID);
+        Long productId = new TransactionTemplate(transactionManager).execute(status -> {
+            Product product = new Product();
+            product.setName("Product");
+            product.setPrice(3.0);
+            entityManager.persist(product);
+            return product.getId();
+        });
+
+        orderService.createOrder(GUEST_USER_ID, Map.of(productId, 1));
+        orderService.createOrder(GUEST_USER_ID, Map.of(productId, 2));
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from orders", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from order_summaries", Integer.class));
+
+        // Пересчёт тоже не заводит сводку гостей
+        assertEquals(0, rebuilder.rebuild());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from order_summaries", Integer.class));
+    }
+
+    @Test
+    void rebuildRecomputesSummariesFromOrders() {
+        LocalDateTime date = LocalDateTime.of(2025, 4, 5, 12, 0);
+        List<Long> users = new TransactionTemplate(transactionManager).execute(status -> {
+            User regular = newUser("regular@example.com");
+            newUser("no-orders@example.com");
+            User once = newUser("once@example.com");
+            for (int i = 0; i < 3; i++) {
+                persistOrder(regular, new BigDecimal("10.25"), date.plusDays(i));
+            }
+            persistOrder(once, new BigDecimal("99.99"), date);
+            return List.of(regular.getId(), once.getId());
+        });
+        // Сводки, записанные мимо заказов (например, до появления таблицы), расходятся с orders
+        jdbcTemplate.update("insert into order_summaries (user_id, order_count, total_spent, last_order_date) values (?, 7, 1, null)",
+                users.get(0));
+        assertEquals(7, summaryService.getSummary(users.get(0)).getOrderCount());
+
+        assertEquals(2, rebuilder.rebuild());
+
+        assertEquals(new OrderSummaryDTO(users.get(0), 3, new BigDecimal("30.75"), date.plusDays(2)), summaryService.getSummary(users.get(0)));
+        assertEquals(new OrderSummaryDTO(users.get(1), 1, new BigDecimal("99.99"), date), summaryService.getSummary(users.get(1)));
+    }
+
+    @Test
+    void rebuildRetriesChunkWhenSummaryIsInsertedConcurrently() {
+        OrderSummaryRepository repository = mock(OrderSummaryRepository.class);
+        when(repository.maxUserId()).thenReturn(1L);
+        // Первая попытка сталкивается со сводкой, которую вставил параллельный заказ
+        when(repository.rebuildRange(1, 1, GUEST_USER_ID))
+                .thenThrow(new DuplicateKeyException("order_summaries_pkey"))
+                .thenReturn(1);
+        OrderSummaryRebuilder concurrent = new OrderSummaryRebuilder(repository, mock(OrderRepository.class),
+                summaryService, 1, 1, false);
+
+        assertEquals(1, concurrent.rebuild());
+        verify(repository, times(2)).rebuildRange(1, 1, GUEST_USER_ID);
+    }
+
+    private void persistOrder(User user, BigDecimal total, LocalDateTime date) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setTotalPrice(total);
+        order.setOrderDate(date);
+        entityManager.persist(order);
+    }
+}
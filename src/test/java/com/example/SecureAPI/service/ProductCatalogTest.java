@@ -0,0 +1,134 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.ProductPageDTO;
+import com.example.SecureAPI.dto.ProductSort;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для ProductCatalog.
+ * Проверяет постраничное чтение из снимка, подмену снимка при записи и обращение к базе при промахе.
+ */
+public class ProductCatalogTest {
+
+    private ProductRepository productRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private ProductSearchIndex searchIndex;
+    private ProductCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findAll()).thenReturn(List.of(
+                product(3L, "Phone", 499.99),
+                product(1L, "Laptop", 999.99),
+                product(2L, "Tablet", 299.99)));
+        meterRegistry = new SimpleMeterRegistry();
+        searchIndex = new ProductSearchIndex(productRepository, true);
+        catalog = new ProductCatalog(productRepository, searchIndex, meterRegistry);
+        catalog.init();
+    }
+
+    /**
+     * Обход по курсорам возвращает все продукты в порядке цены ровно один раз.
+     */
+    @Test
+    void page_ShouldWalkCatalogByCursor() {
+        ProductPageDTO first = catalog.page(ProductSort.PRICE, null, 2, true);
+        assertEquals(List.of(2L, 3L), first.getItems().stream().map(Product::getId).toList());
+        assertEquals(3L, first.getTotal());
+
+        ProductCursor cursor = ProductCursor.decode(first.getNextCursor(), ProductSort.PRICE);
+        ProductPageDTO second = catalog.page(ProductSort.PRICE, cursor, 2, false);
+        assertEquals(List.of(1L), second.getItems().stream().map(Product::getId).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    /**
+     * Добавленный продукт виден следующим читателям, а уже выданный список не меняется.
+     */
+    @Test
+    void add_ShouldSwapSnapshot() {
+        List<Product> before = catalog.getAll();
+
+        catalog.add(product(4L, "Monitor", 199.99));
+
+        assertEquals(3, before.size());
+        assertEquals(List.of(1L, 2L, 3L, 4L), catalog.getAll().stream().map(Product::getId).toList());
+        assertEquals("Monitor", catalog.page(ProductSort.NAME, null, 2, false).getItems().get(1).getName());
+    }
+
+    /**
+     * Перезагрузка каталога перестраивает поисковый индекс: продукт, добавленный в базу
+     * в обход этого экземпляра, становится доступен поиску.
+     */
+    @Test
+    void refresh_ShouldRebuildSearchIndex() {
+        assertArrayEquals(new long[]{3L}, searchIndex.search("phone", 10));
+        assertArrayEquals(new long[0], searchIndex.search("monitor", 10));
+
+        when(productRepository.findAll()).thenReturn(List.of(
+                product(1L, "Laptop", 999.99),
+                product(4L, "Monitor", 199.99)));
+        catalog.refresh();
+
+        assertArrayEquals(new long[]{4L}, searchIndex.search("monitor", 10));
+        assertArrayEquals(new long[0], searchIndex.search("phone", 10));
+    }
+
+    /**
+     * Продукт, которого нет в снимке, ищется в базе и после этого читается из каталога.
+     */
+    @Test
+    void findById_ShouldFallBackToDatabaseOnMiss() {
+        when(productRepository.findById(5L)).thenReturn(Optional.of(product(5L, "Mouse", 19.99)));
+
+        assertEquals("Mouse", catalog.findById(5L).orElseThrow().getName());
+        assertEquals("Mouse", catalog.findById(5L).orElseThrow().getName());
+
+        verify(productRepository, times(1)).findById(5L);
+        assertEquals(1.0, meterRegistry.counter("products.catalog.misses").count());
+    }
+
+    /**
+     * Остаток, списанный заказом, попадает в снимок при синхронизации: меняется версия,
+     * порядок списков сохраняется, а непомеченные продукты из базы не перечитываются.
+     */
+    @Test
+    void syncStock_ShouldApplyChangedStockToSnapshot() {
+        long version = catalog.version();
+        Product soldOut = product(2L, "Tablet", 299.99);
+        soldOut.setStock(0);
+        when(productRepository.findAllById(List.of(2L))).thenReturn(List.of(soldOut));
+
+        catalog.syncStock();
+        assertEquals(version, catalog.version());
+
+        catalog.markStockChanged(List.of(2L));
+        catalog.syncStock();
+
+        assertEquals(version + 1, catalog.version());
+        assertEquals(0, catalog.findById(2L).orElseThrow().getStock());
+        assertEquals(List.of(2L, 3L, 1L),
+                catalog.page(ProductSort.PRICE, null, 10, false).getItems().stream().map(Product::getId).toList());
+        assertEquals(0, catalog.page(ProductSort.PRICE, null, 10, false).getItems().get(0).getStock());
+        verify(productRepository, times(1)).findAllById(any());
+    }
+
+    private static Product product(Long id, String name, double price) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setPrice(price);
+        return product;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.ImportReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для ProductImportService на H2: остаток из JSON и необязательного столбца CSV
+ * сохраняется вместе с продуктом. Импорт сам открывает транзакции пачек, поэтому тест
+ * работает без общей транзакции и сам очищает таблицу.
+ */
+@DataJpaTest
+@Import({ProductImportService.class, ProductSearchIndex.class, JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductImportServiceTest {
+
+    @Autowired
+    private ProductImportService importService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from products");
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, Object> stockByName() {
+        Map<String, Object> stock = new HashMap<>();
+        jdbcTemplate.query("select name, stock from products",
+                (RowCallbackHandler) rs -> stock.put(rs.getString("name"), rs.getObject("stock")));
+        return stock;
+    }
+
+    @Test
+    void jsonImportPersistsStock() throws Exception {
+        ImportReport report = importService.importJson(body(
+                "[{\"name\": \"Tracked\", \"price\": 1.5, \"stock\": 25}, {\"name\": \"Untracked\", \"price\": 2.0}," +
+                " {\"name\": \"Negative\", \"price\": 3.0, \"stock\": -1}]"), null);
+
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getFailed());
+        Map<String, Object> stock = stockByName();
+        assertEquals(25, stock.get("Tracked"));
+        assertTrue(stock.containsKey("Untracked"));
+        assertNull(stock.get("Untracked"));
+    }
+
+    @Test
+    void csvImportReadsOptionalStockColumn() throws Exception {
+        ImportReport report = importService.importCsv(body(
+                "name,price,stock\nTracked,1.5,7\nUntracked,2.0,\nBroken,3.0,many\n"), null);
+
+        assertEquals(2, report.getImported());
+        assertEquals(List.of(new ImportReport.RowError(3, "stock: not an integer 'many'")), report.getErrors());
+        Map<String, Object> stock = stockByName();
+        assertEquals(7, stock.get("Tracked"));
+        assertNull(stock.get("Untracked"));
+
+        // Без столбца stock остаток не учитывается
+        importService.importCsv(body("name,price\nPlain,4.0\n"), null);
+        assertNull(stockByName().get("Plain"));
+        assertTrue(stockByName().containsKey("Plain"));
+    }
+}
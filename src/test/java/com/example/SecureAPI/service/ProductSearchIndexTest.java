@@ -0,0 +1,63 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для ProductSearchIndex.
+ * Проверяет нормализацию слов, пересечение списков с ранжированием и добавление продуктов без перестройки.
+ */
+public class ProductSearchIndexTest {
+
+    /**
+     * Регистр (включая кириллицу) и «ё» не влияют на слова, повторы убираются.
+     */
+    @Test
+    void tokenize_ShouldFoldCaseAndYo() {
+        assertEquals(List.of("елка", "зеленая", "2025"),
+                ProductSearchIndex.tokenize("ЁЛКА Зелёная, 2025 ёлка!"));
+    }
+
+    /**
+     * Находятся только продукты со всеми словами запроса, короткие названия выше.
+     */
+    @Test
+    void search_ShouldIntersectAndRankShorterNamesFirst() {
+        ProductSearchIndex index = new ProductSearchIndex(null, true);
+        index.rebuild(List.of(
+                product(1L, "Ноутбук Lenovo ThinkPad X1 Carbon"),
+                product(2L, "Ноутбук Lenovo"),
+                product(3L, "Смартфон Lenovo"),
+                product(4L, "Ноутбук Apple MacBook")));
+
+        assertArrayEquals(new long[]{2L, 1L}, index.search("lenovo НОУТБУК", 10));
+        assertArrayEquals(new long[]{2L}, index.search("ноутбук lenovo", 1));
+        assertArrayEquals(new long[0], index.search("ноутбук samsung", 10));
+    }
+
+    /**
+     * Продукт, добавленный после построения индекса, сразу находится поиском.
+     */
+    @Test
+    void add_ShouldMakeProductSearchable() {
+        ProductSearchIndex index = new ProductSearchIndex(null, true);
+        index.rebuild(List.of(product(1L, "Телефон Samsung")));
+
+        index.add(product(2L, "Телефон Xiaomi"));
+        index.add(product(3L, "Чехол для телефона"));
+
+        assertArrayEquals(new long[]{1L, 2L}, index.search("телефон", 10));
+        assertArrayEquals(new long[]{2L}, index.search("xiaomi", 10));
+    }
+
+    private static Product product(Long id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        return product;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.exception.OutOfStockException;
+import com.example.SecureAPI.model.Cart;
+import com.example.SecureAPI.model.CartItem;
+import com.example.SecureAPI.model.Product;
+import com.example.SecureAPI.model.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Списание остатков при оформлении заказа на H2: параллельные заказы одного продукта
+ * не продают больше остатка, а заказ с нехваткой одного продукта не списывает и остальные.
+ * Каждое оформление — отдельная транзакция, поэтому тест работает без общей транзакции
+ * и сам очищает таблицы.
+ */
+@DataJpaTest
+@Import({OrderService.class, OrderSummaryService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockReservationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationTest.class);
+
+    private static final int BUYERS = 300;
+    private static final int STOCK = 100;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        for (String table : List.of("order_summaries", "order_items", "orders", "cart_items", "carts", "products", "users")) {
+            jdbcTemplate.update("delete from " + table);
+        }
+    }
+
+    private Product newProduct(Integer stock) {
+        Product product = new Product();
+        product.setName("Product");
+        product.setPrice(10.0);
+        product.setStock(stock);
+        entityManager.persist(product);
+        return product;
+    }
+
+    /**
+     * Создаёт покупателя с корзиной из переданных продуктов (по одной единице каждого).
+     */
+    private Long newBuyer(int number, Product... products) {
+        User user = new User();
+        user.setEmail("buyer" + number + "@example.com");
+        user.setName("Buyer " + number);
+        user.setRole("CLIENT");
+        entityManager.persist(user);
+        Cart cart = new Cart();
+        cart.setUser(user);
+        for (Product product : products) {
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct(product);
+            item.setQuantity(1);
+            cart.getItems().add(item);
+        }
+        entityManager.persist(cart);
+        return user.getId();
+    }
+
+    private Integer stockOf(Long productId) {
+        return jdbcTemplate.queryForObject("select stock from products where id = ?", Integer.class, productId);
+    }
+
+    @Test
+    void parallelCheckoutsNeverOversell() throws Exception {
+        List<Long> buyers = new ArrayList<>();
+        Long productId = new TransactionTemplate(transactionManager).execute(status -> {
+            Product hot = newProduct(STOCK);
+            for (int i = 0; i < BUYERS; i++) {
+                buyers.add(newBuyer(i, hot));
+            }
+            return hot.getId();
+        });
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> checkouts = new ArrayList<>();
+        for (Long buyer : buyers) {
+            checkouts.add(executor.submit(() -> {
+                start.await();
+                try {
+                    orderService.createOrderFromCart(buyer);
+                    sold.incrementAndGet();
+                } catch (OutOfStockException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> checkout : checkouts) {
+            checkout.get(1, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        logger.info("{} parallel checkouts of one product in {} ms ({} checkouts/s): {} sold, {} rejected",
+                BUYERS, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                Math.round(BUYERS * 1e9 / elapsedNanos), sold.get(), rejected.get());
+        assertEquals(STOCK, sold.get());
+        assertEquals(BUYERS - STOCK, rejected.get());
+        assertEquals(0, stockOf(productId));
+        assertEquals(STOCK, jdbcTemplate.queryForObject("select count(*) from orders", Integer.class));
+    }
+
+    @Test
+    void checkoutWithOneMissingProductReservesNothing() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Product[] products = new Product[3];
+        Long buyer = transaction.execute(status -> {
+            products[0] = newProduct(5);
+            products[1] = newProduct(0);
+            products[2] = newProduct(null);
+            return newBuyer(0, products);
+        });
+
+        OutOfStockException error = assertThrows(OutOfStockException.class, () -> orderService.createOrderFromCart(buyer));
+
+        assertTrue(error.getMessage().contains(String.valueOf(products[1].getId())));
+        assertEquals(5, stockOf(products[0].getId()));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from orders", Integer.class));
+        assertEquals(3, jdbcTemplate.queryForObject("select count(*) from cart_items", Integer.class));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.SecureAPI.service;
+
+import com.example.SecureAPI.dto.RegisterRequest;
+import com.example.SecureAPI.exception.UserAlreadyExistsException;
+import com.example.SecureAPI.model.User;
+import com.example.SecureAPI.repository.UserRepository;
+import com.example.SecureAPI.security.JwtUtils;
+import com.example.SecureAPI.security.PasswordHasher;
+import com.example.SecureAPI.security.TokenRevocationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для UserServiceImpl.
+ * Проверяет, что работа с базой после хэширования пароля идёт не в пуле BCrypt,
+ * а повторная регистрация email отклоняется и при гонке.
+ */
+public class UserServiceImplTest {
+
+    private UserRepository userRepository;
+    private GuestCartService guestCartService;
+    private PasswordHasher passwordHasher;
+    private ExecutorService taskExecutor;
+    private UserServiceImpl userService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        guestCartService = mock(GuestCartService.class);
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(4), new SimpleMeterRegistry(), 4, 1, 10);
+        taskExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "task-1"));
+        userService = new UserServiceImpl(userRepository, passwordHasher, new JwtUtils(100),
+                mock(TokenRevocationService.class), guestCartService, taskExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskExecutor.shutdown();
+    }
+
+    /**
+     * Корзина гостя переносится при входе в пуле задач, а не в потоке, проверявшем пароль.
+     */
+    @Test
+    void login_ShouldMergeGuestCartOutsideHashingPool() {
+        User user = new User();
+        user.setId(7L);
+        user.setEmail("user@example.com");
+        user.setRole("CLIENT");
+        user.setPasswordHash(passwordHasher.encode("secret").join());
+        when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.of(user));
+        AtomicReference<String> mergeThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            mergeThread.set(Thread.currentThread().getName());
+            return null;
+        }).when(guestCartService).mergeInto(7L, "guest-token");
+
+        assertEquals(7L, userService.login("user@example.com", "secret", "guest-token").join().getUserId());
+
+        assertEquals("task-1", mergeThread.get());
+    }
+
+    /**
+     * Пользователь сохраняется в пуле задач; если параллельная регистрация того же email
+     * успела раньше, нарушение уникального индекса отдаётся как UserAlreadyExistsException.
+     */
+    @Test
+    void register_ShouldSaveOutsideHashingPoolAndMapDuplicateEmail() {
+        RegisterRequest request = new RegisterRequest();
+        request.setEmail("user@example.com");
+        request.setPassword("secret");
+        request.setName("User");
+        when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.empty());
+        AtomicReference<String> saveThread = new AtomicReference<>();
+        when(userRepository.save(any(User.class)))
+                .thenAnswer(invocation -> {
+                    saveThread.set(Thread.currentThread().getName());
+                    return invocation.getArgument(0);
+                })
+                .thenThrow(new DataIntegrityViolationException("uk_users_email"));
+
+        userService.register(request).join();
+        assertEquals("task-1", saveThread.get());
+
+        CompletionException duplicate = assertThrows(CompletionException.class, () -> userService.register(request).join());
+        assertInstanceOf(UserAlreadyExistsException.class, duplicate.getCause());
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.SecureAPI.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Счётчик SQL-запросов для тестов на H2.
+ *
+ * Hibernate передаёт инспектору каждый подготавливаемый запрос (пачка JDBC batch — один запрос).
+ * Подключается свойством PROPERTY, например:
+ * {@code @DataJpaTest(properties = SqlStatementCounter.PROPERTY)}.
+ * Запросы собираются по потокам, поэтому тесты не мешают друг другу.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    public static final String PROPERTY =
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.example.SecureAPI.support.SqlStatementCounter";
+
+    private static final ThreadLocal<List<String>> statements = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public String inspect(String sql) {
+        statements.get().add(sql);
+        return sql;
+    }
+
+    /**
+     * Начинает подсчёт заново.
+     */
+    public static void reset() {
+        statements.get().clear();
+    }
+
+    /**
+     * @return запросы, выполненные текущим потоком после reset()
+     */
+    public static List<String> statements() {
+        return List.copyOf(statements.get());
+    }
+
+    /**
+     * Проверяет общее число запросов; при несовпадении сообщение содержит сами запросы.
+     */
+    public static void assertStatementCount(int expected) {
+        List<String> executed = statements();
+        assertEquals(expected, executed.size(), () -> "Unexpected SQL statements:\n" + String.join("\n", executed));
+    }
+
+    /**
+     * Проверяет число SELECT-запросов — именно они растут при N+1. Запросы к последовательностям
+     * не считаются: их число зависит от того, сколько ID осталось в уже выделенном блоке.
+     */
+    public static void assertSelectCount(int expected) {
+        List<String> selects = statements().stream()
+                .map(sql -> sql.stripLeading().toLowerCase(Locale.ROOT))
+                .filter(sql -> sql.startsWith("select") && !sql.startsWith("select next value for"))
+                .toList();
+        assertEquals(expected, selects.size(), () -> "Unexpected SELECT statements:\n" + String.join("\n", selects));
+    }
+}